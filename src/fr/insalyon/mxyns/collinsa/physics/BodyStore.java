@@ -0,0 +1,182 @@
+package fr.insalyon.mxyns.collinsa.physics;
+
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+import java.util.Arrays;
+
+/**
+ * Stockage en colonnes (Structure of Arrays) de l'état cinématique des entités : une colonne de primitifs par grandeur, indexée par le numéro du corps.
+ * Utilisé par l'intégrateur du ProcessingThread lorsqu'il est activé (Physics.setBodyStoreEnabled) :
+ *  1. gather : l'état de chaque entité est copié dans sa ligne
+ *  2. integrate : chaque colonne est parcourue d'un bout à l'autre, en mémoire contiguë, sans passer par les Vec2f des entités
+ *  3. scatter : l'état intégré est recopié dans l'entité
+ * Les lignes d'un même bloc ne sont touchées que par un seul thread
+ */
+public class BodyStore {
+
+    /**
+     * Etat d'une ligne : ignorée (non chargée), à intégrer, expirée (durée de vie dépassée, à supprimer)
+     */
+    public static final byte SKIPPED = 0, INTEGRATED = 1, EXPIRED = 2;
+
+    /**
+     * Position, vitesse, accélération
+     */
+    public float[] x = new float[0], y = new float[0], vx = new float[0], vy = new float[0], ax = new float[0], ay = new float[0];
+
+    /**
+     * Angle, vitesse angulaire, accélération angulaire
+     */
+    public float[] rot = new float[0], angVel = new float[0], angAcc = new float[0];
+
+    /**
+     * Inverse de la masse et du moment d'inertie, pour les solveurs travaillant sur les colonnes
+     */
+    public float[] invMass = new float[0], invJ = new float[0];
+
+    /**
+     * Durée vécue et durée de vie
+     */
+    public double[] lived = new double[0], lifespan = new double[0];
+
+    /**
+     * Etat de chaque ligne
+     */
+    public byte[] state = new byte[0];
+
+    /**
+     * Entité de chaque ligne
+     */
+    private Entity[] entities = new Entity[0];
+
+    /**
+     * Agrandit les colonnes si elles sont trop petites
+     * @param capacity nombre de corps à pouvoir stocker
+     */
+    public void ensureCapacity(int capacity) {
+
+        if (entities.length >= capacity)
+            return;
+
+        int newCapacity = Math.max(capacity, Math.max(64, 2 * entities.length));
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        vx = Arrays.copyOf(vx, newCapacity);
+        vy = Arrays.copyOf(vy, newCapacity);
+        ax = Arrays.copyOf(ax, newCapacity);
+        ay = Arrays.copyOf(ay, newCapacity);
+        rot = Arrays.copyOf(rot, newCapacity);
+        angVel = Arrays.copyOf(angVel, newCapacity);
+        angAcc = Arrays.copyOf(angAcc, newCapacity);
+        invMass = Arrays.copyOf(invMass, newCapacity);
+        invJ = Arrays.copyOf(invJ, newCapacity);
+        lived = Arrays.copyOf(lived, newCapacity);
+        lifespan = Arrays.copyOf(lifespan, newCapacity);
+        state = Arrays.copyOf(state, newCapacity);
+        entities = Arrays.copyOf(entities, newCapacity);
+    }
+
+    /**
+     * Copie l'état d'une entité dans la ligne i et la marque à intégrer
+     * @param i ligne
+     * @param entity entité
+     */
+    public void gather(int i, Entity entity) {
+
+        entities[i] = entity;
+        x[i] = entity.getPos().x;
+        y[i] = entity.getPos().y;
+        vx[i] = entity.getVel().x;
+        vy[i] = entity.getVel().y;
+        ax[i] = entity.getAcc().x;
+        ay[i] = entity.getAcc().y;
+        rot[i] = entity.getRot();
+        angVel[i] = entity.getAngVel();
+        angAcc[i] = entity.getAngAcc();
+        invMass[i] = entity.getInertia().getMassInv();
+        invJ[i] = entity.getInertia().getJInv();
+        lived[i] = entity.lived;
+        lifespan[i] = entity.lifespan;
+        state[i] = INTEGRATED;
+    }
+
+    /**
+     * Marque la ligne i comme ignorée par l'intégration
+     * @param i ligne
+     */
+    public void skip(int i) {
+
+        entities[i] = null;
+        state[i] = SKIPPED;
+    }
+
+    /**
+     * Intègre les lignes [from, to[ marquées à intégrer (Euler semi-implicite, comme Entity.update). Les lignes dont la durée de vie est dépassée
+     * sont marquées expirées et ne sont pas intégrées. Chaque grandeur est mise à jour par une boucle sur sa colonne
+     *
+     * @param from première ligne
+     * @param to ligne suivant la dernière
+     * @param dt durée de l'intégration en secondes
+     */
+    public void integrate(int from, int to, double dt) {
+
+        for (int i = from; i < to; ++i)
+            if (state[i] == INTEGRATED && (lived[i] += dt) > lifespan[i])
+                state[i] = EXPIRED;
+
+        for (int i = from; i < to; ++i)
+            if (state[i] == INTEGRATED) {
+                vx[i] += ax[i] * dt;
+                vy[i] += ay[i] * dt;
+            }
+
+        for (int i = from; i < to; ++i)
+            if (state[i] == INTEGRATED) {
+                x[i] += vx[i] * dt;
+                y[i] += vy[i] * dt;
+            }
+
+        for (int i = from; i < to; ++i)
+            if (state[i] == INTEGRATED) {
+                angVel[i] += angAcc[i] * dt;
+                rot[i] += angVel[i] * dt;
+            }
+    }
+
+    /**
+     * Recopie l'état de la ligne i dans son entité et met à jour son AABB. Une ligne expirée ne recopie que sa durée vécue
+     * @param i ligne
+     * @return false si la durée de vie de l'entité est dépassée (comme Entity.update)
+     */
+    public boolean scatter(int i) {
+
+        Entity entity = entities[i];
+        entities[i] = null;
+
+        entity.lived = lived[i];
+        if (state[i] == EXPIRED)
+            return false;
+
+        entity.getPos().set(x[i], y[i]);
+        entity.getVel().set(vx[i], vy[i]);
+        entity.setRot(rot[i]);
+        entity.setAngVel(angVel[i]);
+        entity.updateAABB();
+
+        return true;
+    }
+
+    /**
+     * Renvoie le nombre de lignes disponibles
+     * @return capacité des colonnes
+     */
+    public int getCapacity() {
+
+        return entities.length;
+    }
+
+    public String toString() {
+
+        return "BodyStore[capacity=" + entities.length + "]";
+    }
+}
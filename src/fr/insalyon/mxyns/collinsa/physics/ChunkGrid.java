@@ -0,0 +1,683 @@
+package fr.insalyon.mxyns.collinsa.physics;
+
+import fr.insalyon.mxyns.collinsa.physics.collisions.AABB;
+import fr.insalyon.mxyns.collinsa.physics.collisions.Broadphase;
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Grille uniforme de [n_x * n_y] chunks partitionnant le monde, reconstruite entièrement une fois par tick.
+ *
+ * Au lieu d'un Set d'entités par chunk, le contenu de tous les chunks est rangé dans un unique tableau d'entiers grâce à un tri par dénombrement (counting sort) :
+ * les indices des entités du chunk c sont cellEntities[cellStart[c]] ... cellEntities[cellStart[c] + cellCounts[c] - 1]
+ * Les tableaux ne sont réalloués que lorsqu'ils deviennent trop petits, une reconstruction n'alloue donc rien par entité.
+ *
+ * En mode incrémental (setIncremental), chaque chunk garde de la place libre après ses entités et la grille n'est plus reconstruite à chaque tick :
+ * seules les entités dont la plage de chunks a changé sont retirées des chunks qu'elles quittent et ajoutées à ceux où elles entrent.
+ * Une entité supprimée de la simulation laisse un emplacement vide (null) dans bodies, les indices des autres ne changent donc pas.
+ * La grille n'est reconstruite que si un chunk est plein ou si plus de la moitié des emplacements sont vides.
+ *
+ * Le hash d'un chunk est le même que celui de Physics.getPositionHash : x + n_x * y
+ */
+public class ChunkGrid implements Broadphase {
+
+    /**
+     * Nombre de chunks à l'horizontale et à la verticale
+     */
+    private int countX, countY;
+
+    /**
+     * Taille d'un chunk en mètres
+     */
+    private float cellWidth, cellHeight;
+
+    /**
+     * Indice de début de chaque chunk dans cellEntities. Contient n_x * n_y + 1 valeurs, la dernière étant la taille utilisée de cellEntities.
+     * La place réservée au chunk c va de cellStart[c] à cellStart[c + 1], elle peut être plus grande que son nombre d'entités en mode incrémental
+     */
+    private int[] cellStart = new int[1];
+
+    /**
+     * Nombre d'entités de chaque chunk
+     */
+    private int[] cellCounts = new int[0];
+
+    /**
+     * Curseur d'écriture de chaque chunk, utilisé uniquement pendant la reconstruction
+     */
+    private int[] cellCursor = new int[0];
+
+    /**
+     * Indices (dans bodies) des entités de chaque chunk, rangés chunk par chunk
+     */
+    private int[] cellEntities = new int[0];
+
+    /**
+     * Entités placées dans la grille lors de la dernière reconstruction
+     */
+    private Entity[] bodies = new Entity[0];
+
+    /**
+     * Plage de chunks couverte par l'AABB de chaque entité : 4 valeurs par entité (minX, minY, maxX, maxY)
+     */
+    private int[] bodyRanges = new int[0];
+
+    /**
+     * Nombre d'emplacements utilisés dans bodies (entités placées dans la grille et emplacements vides)
+     */
+    private int bodyCount;
+
+    /**
+     * Nombre d'entités placées dans la grille
+     */
+    private int liveCount;
+
+    /**
+     * Dernier tampon de requête ayant visité chaque entité. Une entité couvrant plusieurs chunks n'est ainsi rendue qu'une fois par requête, sans HashSet
+     */
+    private int[] visitStamps = new int[0];
+
+    /**
+     * Tampon de la requête en cours, incrémenté à chaque requête
+     */
+    private int stamp;
+
+    /**
+     * Détermine si la grille est mise à jour incrémentalement plutôt que reconstruite à chaque tick
+     */
+    private boolean incremental = false;
+
+    /**
+     * Nombre d'entités déplacées d'un chunk à l'autre lors de la dernière mise à jour, -1 si la grille a été reconstruite
+     */
+    private int movedCount = -1;
+
+    /**
+     * Plage de chunks d'une entité, calculée pendant une mise à jour incrémentale
+     */
+    private final int[] newRange = new int[4];
+
+    /**
+     * Poids relatifs, dans les estimations de coût, d'une référence rangée (comptée puis rangée) et d'une paire testée (appel de la narrow phase et test des AABB)
+     * par rapport au parcours d'un chunk
+     */
+    private static final int REFERENCE_COST = 2, PAIR_COST = 4;
+
+    /**
+     * Tableaux de travail des estimations de coût (comptes par chunk d'une grille candidate, tailles des entités)
+     */
+    private int[] scratchCounts = new int[0];
+    private float[] scratchSizes = new float[0];
+
+    /**
+     * Redimensionne la grille et la vide
+     * @param n_x nombre de chunks à l'horizontale
+     * @param n_y nombre de chunks à la verticale
+     * @param w largeur d'un chunk
+     * @param h hauteur d'un chunk
+     */
+    public void resize(int n_x, int n_y, float w, float h) {
+
+        countX = Math.max(1, n_x);
+        countY = Math.max(1, n_y);
+        cellWidth = w;
+        cellHeight = h;
+
+        cellStart = new int[countX * countY + 1];
+        cellCounts = new int[countX * countY];
+        cellCursor = new int[countX * countY];
+
+        clear();
+    }
+
+    /**
+     * Vide la grille
+     */
+    @Override
+    public void clear() {
+
+        Arrays.fill(cellStart, 0);
+        Arrays.fill(cellCounts, 0);
+        Arrays.fill(bodies, 0, bodyCount, null);
+        bodyCount = liveCount = 0;
+    }
+
+    /**
+     * Met à jour la grille à partir des entités données : incrémentalement si possible en mode incrémental, par reconstruction sinon
+     * @param entities entités à placer dans la grille
+     */
+    @Override
+    public void update(Iterable<Entity> entities) {
+
+        if (incremental && moveBodies(entities))
+            return;
+
+        movedCount = -1;
+        rebuild(entities);
+    }
+
+    /**
+     * Reconstruit la grille à partir des entités données
+     *  1. on relève la plage de chunks de chaque entité et on compte le nombre de références par chunk
+     *  2. une somme cumulée des comptes (plus la place libre en mode incrémental) donne le début de chaque chunk dans cellEntities
+     *  3. on range les indices des entités chunk par chunk
+     *
+     * @param entities entités à placer dans la grille
+     */
+    private void rebuild(Iterable<Entity> entities) {
+
+        int previousCount = bodyCount;
+
+        Arrays.fill(cellCounts, 0);
+        bodyCount = 0;
+
+        // 1. Comptage (décalé d'un chunk pour que la somme cumulée donne directement les débuts)
+        for (Entity entity : entities) {
+
+            ensureBodyCapacity(bodyCount + 1);
+
+            int base = 4 * bodyCount;
+            computeRange(entity.getAABB(), bodyRanges, base);
+            bodies[bodyCount++] = entity;
+
+            for (int y = bodyRanges[base + 1]; y <= bodyRanges[base + 3]; ++y)
+                for (int x = bodyRanges[base]; x <= bodyRanges[base + 2]; ++x)
+                    ++cellCounts[x + countX * y];
+        }
+
+        // On libère les entités qui ne sont plus dans la simulation
+        if (previousCount > bodyCount)
+            Arrays.fill(bodies, bodyCount, previousCount, null);
+        liveCount = bodyCount;
+
+        // 2. Somme cumulée
+        int cellCount = countX * countY;
+        for (int c = 0; c < cellCount; ++c)
+            cellStart[c + 1] = cellStart[c] + cellCounts[c] + (incremental ? cellCounts[c] / 2 + 2 : 0);
+
+        if (cellEntities.length < cellStart[cellCount])
+            cellEntities = new int[Math.max(cellStart[cellCount], 2 * cellEntities.length)];
+
+        // 3. Rangement
+        System.arraycopy(cellStart, 0, cellCursor, 0, cellCount);
+        for (int i = 0; i < bodyCount; ++i) {
+
+            int base = 4 * i;
+            for (int y = bodyRanges[base + 1]; y <= bodyRanges[base + 3]; ++y)
+                for (int x = bodyRanges[base]; x <= bodyRanges[base + 2]; ++x)
+                    cellEntities[cellCursor[x + countX * y]++] = i;
+        }
+    }
+
+    /**
+     * Met à jour la grille sans la reconstruire : les entités déjà présentes gardent leur indice et seules celles dont la plage de chunks a changé
+     * sont déplacées. Les entités absentes de 'entities' sont retirées (leur emplacement reste vide) et les nouvelles sont ajoutées à la fin.
+     * La liste des entités étant parcourue dans le même ordre que bodies, une entité introuvable parmi les emplacements suivants est considérée comme nouvelle.
+     * S'arrête dès qu'un chunk est plein, la grille est alors à reconstruire
+     *
+     * @param entities entités à placer dans la grille
+     * @return true si la grille est à jour, false s'il faut la reconstruire
+     */
+    private boolean moveBodies(Iterable<Entity> entities) {
+
+        int i = 0;
+        movedCount = 0;
+
+        for (Entity entity : entities) {
+
+            // Les entités sautées ont été supprimées de la simulation
+            while (i < bodyCount && bodies[i] != entity)
+                releaseBody(i++);
+
+            computeRange(entity.getAABB(), newRange, 0);
+
+            if (i == bodyCount) {
+
+                ensureBodyCapacity(bodyCount + 1);
+                bodies[bodyCount++] = entity;
+                ++liveCount;
+
+                if (!addToCells(i, newRange[0], newRange[1], newRange[2], newRange[3], null, 0))
+                    return false;
+
+            } else {
+
+                int base = 4 * i;
+                if (newRange[0] == bodyRanges[base] && newRange[1] == bodyRanges[base + 1] && newRange[2] == bodyRanges[base + 2] && newRange[3] == bodyRanges[base + 3]) {
+                    ++i;
+                    continue;
+                }
+
+                // On retire l'entité des chunks qu'elle quitte, puis on l'ajoute à ceux où elle entre
+                for (int y = bodyRanges[base + 1]; y <= bodyRanges[base + 3]; ++y)
+                    for (int x = bodyRanges[base]; x <= bodyRanges[base + 2]; ++x)
+                        if (!inRange(newRange, 0, x, y))
+                            removeFromCell(x + countX * y, i);
+
+                if (!addToCells(i, newRange[0], newRange[1], newRange[2], newRange[3], bodyRanges, base))
+                    return false;
+
+                ++movedCount;
+            }
+
+            System.arraycopy(newRange, 0, bodyRanges, 4 * i, 4);
+            ++i;
+        }
+
+        while (i < bodyCount)
+            releaseBody(i++);
+
+        // Trop d'emplacements vides : on reconstruit pour les compacter
+        return 2 * liveCount >= bodyCount;
+    }
+
+    /**
+     * Retire une entité de tous ses chunks et libère son emplacement. Sans effet sur un emplacement déjà vide
+     * @param index indice de l'entité
+     */
+    private void releaseBody(int index) {
+
+        if (bodies[index] == null)
+            return;
+
+        int base = 4 * index;
+        for (int y = bodyRanges[base + 1]; y <= bodyRanges[base + 3]; ++y)
+            for (int x = bodyRanges[base]; x <= bodyRanges[base + 2]; ++x)
+                removeFromCell(x + countX * y, index);
+
+        bodies[index] = null;
+        --liveCount;
+    }
+
+    /**
+     * Ajoute l'entité d'indice 'index' aux chunks de la plage [minX, maxX] * [minY, maxY] qui ne sont pas dans son ancienne plage
+     * @param oldRange ancienne plage de l'entité, null si elle n'était dans aucun chunk
+     * @param offset position de l'ancienne plage dans 'oldRange'
+     * @return false si un des chunks est plein
+     */
+    private boolean addToCells(int index, int minX, int minY, int maxX, int maxY, int[] oldRange, int offset) {
+
+        for (int y = minY; y <= maxY; ++y)
+            for (int x = minX; x <= maxX; ++x) {
+
+                if (oldRange != null && inRange(oldRange, offset, x, y))
+                    continue;
+
+                int cell = x + countX * y;
+                if (cellStart[cell] + cellCounts[cell] == cellStart[cell + 1])
+                    return false;
+
+                cellEntities[cellStart[cell] + cellCounts[cell]++] = index;
+            }
+
+        return true;
+    }
+
+    /**
+     * Retire l'entité d'indice 'index' d'un chunk en la remplaçant par la dernière entité du chunk
+     * @param cell hash du chunk
+     * @param index indice de l'entité
+     */
+    private void removeFromCell(int cell, int index) {
+
+        int last = cellStart[cell] + cellCounts[cell] - 1;
+        for (int k = cellStart[cell]; k <= last; ++k)
+            if (cellEntities[k] == index) {
+                cellEntities[k] = cellEntities[last];
+                --cellCounts[cell];
+                return;
+            }
+    }
+
+    /**
+     * Informe si le chunk (x, y) est dans la plage range[offset ... offset + 3]
+     */
+    private static boolean inRange(int[] range, int offset, int x, int y) {
+
+        return x >= range[offset] && x <= range[offset + 2] && y >= range[offset + 1] && y <= range[offset + 3];
+    }
+
+    /**
+     * Agrandit (en doublant leur taille) les tableaux relatifs aux entités s'ils sont trop petits
+     * @param capacity nombre d'entités à pouvoir stocker
+     */
+    private void ensureBodyCapacity(int capacity) {
+
+        if (bodies.length >= capacity)
+            return;
+
+        int newCapacity = Math.max(capacity, Math.max(16, 2 * bodies.length));
+        bodies = Arrays.copyOf(bodies, newCapacity);
+        bodyRanges = Arrays.copyOf(bodyRanges, 4 * newCapacity);
+        visitStamps = Arrays.copyOf(visitStamps, newCapacity);
+    }
+
+    /**
+     * Appelle 'consumer' avec (entity, voisine) pour chaque entité voisine de 'entity', c'est-à-dire présente dans un des chunks couverts par l'AABB de 'entity'.
+     * Chaque voisine n'est donnée qu'une seule fois et 'entity' n'est jamais sa propre voisine.
+     * N'alloue rien : les doublons sont éliminés grâce au tampon de la requête
+     *
+     * @param entity entité dont on cherche les voisines
+     * @param consumer action à effectuer sur chaque couple (entity, voisine)
+     */
+    @Override
+    public void forEachNearby(Entity entity, BiConsumer<Entity, Entity> consumer) {
+
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(visitStamps, 0);
+            stamp = 1;
+        }
+
+        AABB aabb = entity.getAABB();
+        int minX = getCellX(aabb.x), maxX = getCellX(aabb.x + aabb.w);
+        int minY = getCellY(aabb.y), maxY = getCellY(aabb.y + aabb.h);
+
+        for (int y = minY; y <= maxY; ++y)
+            for (int x = minX; x <= maxX; ++x) {
+
+                int cell = x + countX * y;
+                for (int k = cellStart[cell], end = k + cellCounts[cell]; k < end; ++k) {
+
+                    int index = cellEntities[k];
+                    if (visitStamps[index] == stamp)
+                        continue;
+
+                    visitStamps[index] = stamp;
+                    if (bodies[index] != entity)
+                        consumer.accept(entity, bodies[index]);
+                }
+            }
+    }
+
+    /**
+     * Appelle 'consumer' une seule fois pour chaque paire non-ordonnée d'entités partageant au moins un chunk.
+     * La règle d'ordre est l'indice des entités dans la grille : la paire (A, B) n'est émise que depuis A si indice(A) < indice(B),
+     * ce qui évite de tester (A, B) puis (B, A). Les doublons dus aux entités couvrant plusieurs chunks sont éliminés par tampon, sans allocation
+     *
+     * @param consumer action à effectuer sur chaque paire
+     */
+    @Override
+    public void forEachPair(BiConsumer<Entity, Entity> consumer) {
+
+        for (int i = 0; i < bodyCount; ++i) {
+
+            if (bodies[i] == null)
+                continue;
+
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(visitStamps, 0);
+                stamp = 1;
+            }
+
+            int base = 4 * i;
+            for (int y = bodyRanges[base + 1]; y <= bodyRanges[base + 3]; ++y)
+                for (int x = bodyRanges[base]; x <= bodyRanges[base + 2]; ++x) {
+
+                    int cell = x + countX * y;
+                    for (int k = cellStart[cell], end = k + cellCounts[cell]; k < end; ++k) {
+
+                        int index = cellEntities[k];
+                        if (index <= i || visitStamps[index] == stamp)
+                            continue;
+
+                        visitStamps[index] = stamp;
+                        consumer.accept(bodies[i], bodies[index]);
+                    }
+                }
+        }
+    }
+
+    /**
+     * Estime le coût d'un tick avec la grille actuelle à partir de l'histogramme d'occupation des chunks :
+     * somme cumulée sur tous les chunks + références rangées + paires testées dans chaque chunk
+     *
+     * @return coût estimé, en nombre d'opérations élémentaires
+     */
+    public long estimateCost() {
+
+        int cellCount = countX * countY;
+        long cost = cellCount;
+        for (int c = 0; c < cellCount; ++c) {
+
+            long k = cellCounts[c];
+            cost += REFERENCE_COST * k + PAIR_COST * (k * (k - 1) / 2);
+        }
+
+        return cost;
+    }
+
+    /**
+     * Estime le coût d'un tick si les entités de la dernière reconstruction étaient rangées dans une grille de [n_x * n_y] chunks de taille [w * h].
+     * Ne fait que compter les références par chunk, la grille n'est pas modifiée
+     *
+     * @param n_x nombre de chunks à l'horizontale
+     * @param n_y nombre de chunks à la verticale
+     * @param w largeur d'un chunk
+     * @param h hauteur d'un chunk
+     * @return coût estimé, comparable à estimateCost()
+     */
+    public long estimateCost(int n_x, int n_y, float w, float h) {
+
+        int cellCount = n_x * n_y;
+        if (scratchCounts.length < cellCount)
+            scratchCounts = new int[cellCount];
+        else
+            Arrays.fill(scratchCounts, 0, cellCount, 0);
+
+        for (int i = 0; i < bodyCount; ++i) {
+
+            if (bodies[i] == null)
+                continue;
+
+            AABB aabb = bodies[i].getAABB();
+            int minX = clampedCell(aabb.x, w, n_x), maxX = clampedCell(aabb.x + aabb.w, w, n_x);
+            int minY = clampedCell(aabb.y, h, n_y), maxY = clampedCell(aabb.y + aabb.h, h, n_y);
+
+            for (int y = minY; y <= maxY; ++y)
+                for (int x = minX; x <= maxX; ++x)
+                    ++scratchCounts[x + n_x * y];
+        }
+
+        long cost = cellCount;
+        for (int c = 0; c < cellCount; ++c) {
+
+            long k = scratchCounts[c];
+            cost += REFERENCE_COST * k + PAIR_COST * (k * (k - 1) / 2);
+        }
+
+        return cost;
+    }
+
+    /**
+     * Renvoie la taille médiane (plus grand côté de l'AABB) des entités de la dernière reconstruction
+     * @return taille médiane en mètres, 0 si la grille est vide
+     */
+    public float getMedianBodySize() {
+
+        if (liveCount == 0)
+            return 0;
+
+        if (scratchSizes.length < liveCount)
+            scratchSizes = new float[bodies.length];
+
+        int count = 0;
+        for (int i = 0; i < bodyCount; ++i) {
+
+            if (bodies[i] == null)
+                continue;
+
+            AABB aabb = bodies[i].getAABB();
+            scratchSizes[count++] = Math.max(aabb.w, aabb.h);
+        }
+
+        Arrays.sort(scratchSizes, 0, liveCount);
+        return scratchSizes[liveCount / 2];
+    }
+
+    /**
+     * Renvoie la taille moyenne (plus grand côté de l'AABB) des entités de la dernière reconstruction
+     * @return taille moyenne en mètres, 0 si la grille est vide
+     */
+    public float getMeanBodySize() {
+
+        if (liveCount == 0)
+            return 0;
+
+        double sum = 0;
+        for (int i = 0; i < bodyCount; ++i) {
+
+            if (bodies[i] == null)
+                continue;
+
+            AABB aabb = bodies[i].getAABB();
+            sum += Math.max(aabb.w, aabb.h);
+        }
+
+        return (float) (sum / liveCount);
+    }
+
+    /**
+     * Calcule la plage de chunks couverte par une AABB, contrainte aux bornes de la grille
+     * @param aabb AABB dont il faut calculer la plage
+     * @param range tableau dans lequel écrire (minX, minY, maxX, maxY)
+     * @param offset position d'écriture dans 'range'
+     */
+    public void computeRange(AABB aabb, int[] range, int offset) {
+
+        range[offset] = getCellX(aabb.x);
+        range[offset + 1] = getCellY(aabb.y);
+        range[offset + 2] = getCellX(aabb.x + aabb.w);
+        range[offset + 3] = getCellY(aabb.y + aabb.h);
+    }
+
+    /**
+     * Renvoie la colonne de chunks contenant l'abscisse x, contrainte aux bornes de la grille
+     * @param x abscisse en mètres
+     * @return colonne entre 0 et n_x - 1
+     */
+    public int getCellX(float x) {
+
+        return clampedCell(x, cellWidth, countX);
+    }
+
+    /**
+     * Renvoie la ligne de chunks contenant l'ordonnée y, contrainte aux bornes de la grille
+     * @param y ordonnée en mètres
+     * @return ligne entre 0 et n_y - 1
+     */
+    public int getCellY(float y) {
+
+        return clampedCell(y, cellHeight, countY);
+    }
+
+    /**
+     * Renvoie l'indice du chunk contenant la coordonnée v sur un axe découpé en 'count' chunks de taille 'size'
+     * @return indice entre 0 et count - 1
+     */
+    private static int clampedCell(float v, float size, int count) {
+
+        int c = (int) (v / size);
+        return c < 0 ? 0 : (c >= count ? count - 1 : c);
+    }
+
+    /**
+     * Renvoie le hash du chunk (x, y)
+     * @return x + n_x * y
+     */
+    public int getCellIndex(int x, int y) {
+
+        return x + countX * y;
+    }
+
+    /**
+     * Renvoie l'indice, dans le rangement, de la première entité du chunk
+     * @param cell hash du chunk
+     * @return début du chunk
+     */
+    public int getCellStart(int cell) {
+
+        return cellStart[cell];
+    }
+
+    /**
+     * Renvoie l'indice, dans le rangement, suivant la dernière entité du chunk
+     * @param cell hash du chunk
+     * @return fin (exclue) du chunk
+     */
+    public int getCellEnd(int cell) {
+
+        return cellStart[cell] + cellCounts[cell];
+    }
+
+    /**
+     * Renvoie l'entité rangée à l'indice k
+     * @param k indice entre getCellStart(c) et getCellEnd(c) d'un chunk c
+     * @return entité
+     */
+    public Entity getCellEntity(int k) {
+
+        return bodies[cellEntities[k]];
+    }
+
+    /**
+     * Renvoie le nombre d'entités placées dans la grille lors de la dernière mise à jour
+     * @return liveCount
+     */
+    public int getBodyCount() {
+
+        return liveCount;
+    }
+
+    /**
+     * Renvoie le nombre de chunks à l'horizontale
+     * @return n_x
+     */
+    public int getCountX() {
+
+        return countX;
+    }
+
+    /**
+     * Renvoie le nombre de chunks à la verticale
+     * @return n_y
+     */
+    public int getCountY() {
+
+        return countY;
+    }
+
+    /**
+     * Informe si la grille est mise à jour incrémentalement
+     * @return incremental
+     */
+    public boolean isIncremental() {
+
+        return incremental;
+    }
+
+    /**
+     * Active ou désactive la mise à jour incrémentale. La grille est vidée et sera reconstruite lors de la prochaine mise à jour
+     * @param incremental true pour ne déplacer que les entités qui changent de chunk
+     */
+    public void setIncremental(boolean incremental) {
+
+        this.incremental = incremental;
+        clear();
+    }
+
+    /**
+     * Renvoie le nombre d'entités qui ont changé de chunk lors de la dernière mise à jour incrémentale
+     * @return movedCount, -1 si la grille a été reconstruite
+     */
+    public int getMovedCount() {
+
+        return movedCount;
+    }
+
+    public String toString() {
+
+        return "ChunkGrid[" + countX + "x" + countY + ", cellSize=(" + cellWidth + ", " + cellHeight + "), bodies=" + liveCount + (incremental ? ", moved=" + movedCount : "") + "]";
+    }
+}
@@ -2,19 +2,27 @@ package fr.insalyon.mxyns.collinsa.physics;
 
 import fr.insalyon.mxyns.collinsa.Collinsa;
 import fr.insalyon.mxyns.collinsa.clocks.MillisClock;
+import fr.insalyon.mxyns.collinsa.physics.collisions.AABB;
 import fr.insalyon.mxyns.collinsa.physics.collisions.Collider;
 import fr.insalyon.mxyns.collinsa.physics.collisions.Collision;
 import fr.insalyon.mxyns.collinsa.physics.collisions.CollisionAdapter;
+import fr.insalyon.mxyns.collinsa.physics.collisions.StaticTree;
+import fr.insalyon.mxyns.collinsa.physics.constraints.DistanceConstraints;
 import fr.insalyon.mxyns.collinsa.physics.entities.Circle;
 import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
 import fr.insalyon.mxyns.collinsa.physics.entities.Polygon;
 import fr.insalyon.mxyns.collinsa.physics.entities.Rect;
+import fr.insalyon.mxyns.collinsa.physics.forces.FieldForce;
 import fr.insalyon.mxyns.collinsa.physics.forces.Force;
 import fr.insalyon.mxyns.collinsa.threads.ProcessingThread;
+import fr.insalyon.mxyns.collinsa.threads.WorkerPool;
 import fr.insalyon.mxyns.collinsa.utils.geo.Geometry;
 import fr.insalyon.mxyns.collinsa.utils.geo.Vec2f;
+import fr.insalyon.mxyns.collinsa.utils.geo.Vec2fPool;
+import fr.insalyon.mxyns.collinsa.utils.monitoring.ChunkMonitoring;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -34,33 +42,114 @@ public class Physics {
     private ProcessingThread processingThread;
 
     /**
-     * ArrayList des différents Chunks partitionnant le monde
-     * La façon dont sont gérés les chunks permet quand même de garantir l'unicité de chaque chunk ajouté même si on n'a pas un 'Set'
-     * L'ArrayList permet d'accéder aléatoirement à un Chunk avec une complexité O(1) ce qui est nécessaire pour une simulation dense ou très vaste (à grand nombre de Chunks).
+     * Threads auxquels le ProcessingThread répartit les étapes parallélisables d'un tick (narrow phase, ...). Un seul thread par défaut, tout est alors calculé sur le ProcessingThread
+     */
+    private final WorkerPool workerPool = new WorkerPool(1);
+
+    /**
+     * Stockage en colonnes de l'état des entités, utilisé par l'intégrateur si useBodyStore est vrai
+     * @see BodyStore
+     */
+    private final BodyStore bodyStore = new BodyStore();
+
+    /**
+     * Détermine si l'intégration passe par le BodyStore (colonnes de primitifs) plutôt que par les Vec2f de chaque entité
+     */
+    private boolean useBodyStore = false;
+
+    /**
+     * Détermine si les îlots d'entités au repos sont endormis (ni intégrés, ni testés entre eux) jusqu'à ce qu'ils soient touchés
+     * @see Physics#updateSleeping(double)
+     */
+    private boolean sleepingEnabled = false;
+
+    /**
+     * Vitesse (m/s) et vitesse angulaire (rad/s) en dessous desquelles une entité est considérée au repos
+     */
+    private float sleepLinearThreshold = 0.05f, sleepAngularThreshold = 0.05f;
+
+    /**
+     * Durée (s) pendant laquelle toutes les entités d'un îlot doivent rester au repos pour que l'îlot s'endorme
+     */
+    private float timeToSleep = 0.5f;
+
+    /**
+     * Grille de Chunks partitionnant le monde
      * Les Chunks sont organisés grâce au SpatialHashing qui est performant dans les simulations où la répartition des éléments est plutôt homogène.
+     * La grille est reconstruite une fois par tick par un tri par dénombrement dans des tableaux d'entiers plats, ce qui évite les copies des CopyOnWriteArraySet utilisés auparavant par chaque Chunk.
      * Un Oct-Tree serait moins couteux en mémoire mais plus difficile à implémenter et pas forcément plus performant.
      *
-     * ArrayList Complexity:
-     * | Add  | Remove | Get  | Contains | Next |
-     * | O(1) |  O(n)  | O(1) |   O(n)   | O(1) |
+     * ChunkGrid Complexity:
+     * | Rebuild | Get chunk content |
+     * |  O(n)   |        O(1)       |
      */
-    private final ArrayList<Chunk> chunks = new ArrayList<>();
+    private final ChunkGrid chunkGrid = new ChunkGrid();
 
     /**
-     * Permet de stocker la taille des Chunks sans avoir à accéder au Set des chunks à chaque fois
+     * Permet de stocker la taille des Chunks sans avoir à accéder à la grille des chunks à chaque fois
      */
     private final Vec2f chunkSize = Vec2f.zero();
 
     /**
-     * Permet de stocker le nombre de Chunks sans avoir à accéder au Set des chunks à chaque fois
+     * Permet de stocker le nombre de Chunks sans avoir à accéder à la grille des chunks à chaque fois
      */
     private final Vec2f chunkCount = Vec2f.zero();
 
     /**
-     * Permet de stocker le nombre total de Chunks sans avoir à accéder au Set des chunks ni à multiplier chunkCount.x par chunkCount.y à chaque fois
+     * Permet de stocker le nombre total de Chunks sans avoir à accéder à la grille des chunks ni à multiplier chunkCount.x par chunkCount.y à chaque fois
      */
     private int totalChunkCount;
 
+    /**
+     * Détermine si la grille de chunks est redimensionnée automatiquement à partir de la taille et de la répartition des entités
+     * @see Physics#adaptChunks()
+     */
+    private boolean adaptiveChunks = false;
+
+    /**
+     * Nombre de ticks entre deux évaluations de la grille en mode adaptatif
+     */
+    private int chunkAdaptationInterval = 60;
+
+    /**
+     * Nombre de ticks écoulés depuis la dernière évaluation de la grille
+     */
+    private int ticksSinceChunkAdaptation;
+
+    /**
+     * Tailles des entités, pour la médiane lors de l'évaluation de la grille non bornée. Réutilisé d'une évaluation à l'autre
+     */
+    private float[] entitySizes = new float[0];
+
+    /**
+     * Rapport de coût à atteindre pour reconstruire la grille : la grille candidate doit coûter moins de CHUNK_ADAPTATION_GAIN fois la grille actuelle.
+     * Evite de redimensionner pour un gain négligeable et d'osciller entre deux grilles proches
+     */
+    private static final float CHUNK_ADAPTATION_GAIN = 0.8f;
+
+    /**
+     * Taille visée pour un chunk, relativement à la taille médiane des entités
+     */
+    private static final float CHUNK_SIZE_PER_MEDIAN = 2f;
+
+    /**
+     * Tolérances relative et absolue (m) lors du choix de la face de référence entre deux polygones : la face du premier polygone est gardée
+     * tant que celle du second n'est pas nettement meilleure. Sans elles, deux faces presque parallèles (objets empilés) sont choisies
+     * alternativement d'un tick à l'autre et les contacts ne peuvent pas être retrouvés par le ContactCache
+     */
+    private static final float REFERENCE_FACE_RELATIVE_TOLERANCE = 0.95f, REFERENCE_FACE_ABSOLUTE_TOLERANCE = 0.01f;
+
+    /**
+     * Marge ajoutée aux AABB élargies (fattenAABBs), en fraction du plus petit côté de l'AABB : couvre les changements de vitesse pendant le tick
+     * et le trajet des entités endormies réveillées en cours de tick
+     */
+    private static final float FATTENING_MARGIN_RATIO = 0.1f;
+
+    /**
+     * Durée (s) du trajet couvert par les AABB des entités si elles sont élargies (fattenAABBs), 0 si elles sont exactes
+     */
+    private double fattening;
+
     /**
      * Temps fixé en en millisecondes dont la simulation doit avancer à chaque tour si on n'est pas en mode real-time
      */
@@ -71,8 +160,20 @@ public class Physics {
      */
     private boolean isRealtime;
 
+    /**
+     * Nombre de sous-pas par tick. Au-delà de 1, la simulation avance par pas fixes de fixedDeltaTime / subSteps (en mode real-time,
+     * autant de pas que le temps écoulé accumulé en contient) et la broad phase n'est mise à jour qu'une fois par tick
+     */
+    private int subSteps = 1;
+
     public double totalElapsedTime = 0;
 
+    /**
+     * Détermine si le monde est ouvert : les entités sortant de [0, width] x [0, height] ne sont plus supprimées.
+     * La taille du monde ne sert alors plus qu'à dimensionner les chunks
+     */
+    private boolean openWorld = false;
+
     /**
      * ArrayList des entités présentes dans la simulation.
      * Obligatoire pour pouvoir garder un accès des instances existantes puisqu'elles sont enregistrées temporairement dans les Chunk
@@ -86,7 +187,36 @@ public class Physics {
     // FIXME: change this slow bs
     final private CopyOnWriteArrayList<Entity> entities = new CopyOnWriteArrayList<>();
 
-    final public ArrayList<Force> forces = new ArrayList<>(), globalForces = new ArrayList<>();
+    /**
+     * Entités statiques (murs, sols, décor) : elles ne bougent jamais et ne font pas partie de 'entities'.
+     * Elles ne sont ni intégrées ni placées dans la broad phase, mais rangées une fois pour toutes dans staticTree
+     */
+    final private CopyOnWriteArrayList<Entity> staticEntities = new CopyOnWriteArrayList<>();
+
+    /**
+     * Arbre des entités statiques, reconstruit seulement lorsqu'elles changent
+     * @see StaticTree
+     */
+    private final StaticTree staticTree = new StaticTree();
+
+    /**
+     * Détermine si staticTree doit être reconstruit lors de la prochaine mise à jour de la broad phase (spatialHashing)
+     */
+    private boolean staticTreeOutdated = false;
+
+    final public ArrayList<Force> forces = new ArrayList<>();
+
+    /**
+     * Forces de champ (pesanteur, ...), évaluées pour toutes les entités éveillées en parallèle à chaque tick. Peut être modifiée pendant la simulation
+     * @see FieldForce
+     */
+    final public CopyOnWriteArrayList<FieldForce> fieldForces = new CopyOnWriteArrayList<>();
+
+    /**
+     * Contraintes de distance entre entités (cordes, tissus), résolues après l'intégration
+     * @see DistanceConstraints
+     */
+    private final DistanceConstraints constraints = new DistanceConstraints();
 
     /**
      * Largeur et hauteur de la simulation en mètres
@@ -121,6 +251,7 @@ public class Physics {
 
         processingThread = new ProcessingThread(this, new MillisClock(), refreshRate);
         buildChunks(horizontalChunkCount, verticalChunkCount, width * 1.0f / horizontalChunkCount, height * 1.0f / verticalChunkCount);
+        collider.setBroadphase(chunkGrid);
     }
 
     /**
@@ -149,16 +280,42 @@ public class Physics {
     }
 
     /**
-     * Ajoute une entité au monde.
-     * TODO: (Vérifier par la même occasion s'il faut redimensionner les Chunks ou non pas pour l'instant)
+     * Ajoute une entité au monde. Elle sera placée dans les Chunks lors de la prochaine reconstruction de la grille (spatialHashing)
+     * La taille des Chunks est réévaluée périodiquement si le mode adaptatif est activé (voir adaptChunks)
      */
     public void addEntity(Entity e) {
 
         entities.add(e);
+    }
+
+    /**
+     * Ajoute une entité statique au monde : elle ne sera jamais intégrée et ne subira pas les collisions (comme une entité cinématique immobile).
+     * Ses vitesses et accélérations sont annulées et elle devient cinématique si elle était classique.
+     * Si elle est déplacée par la suite, il faut appeler updateStaticEntities
+     *
+     * @param entity entité statique à ajouter
+     */
+    public void addStaticEntity(Entity entity) {
+
+        if (entity.getCollisionType() == Collision.CollisionType.CLASSIC)
+            entity.setCollisionType(Collision.CollisionType.KINEMATIC);
+
+        entity.setVel(0, 0);
+        entity.setAcc(0, 0);
+        entity.setAngVel(0);
+        entity.setAngAcc(0);
+
+        staticEntities.add(entity);
+        updateStaticEntities();
+    }
+
+    /**
+     * Informe que les entités statiques ont changé (ajout, suppression, déplacement) : leur arbre sera reconstruit lors de la prochaine mise à jour
+     * de la broad phase, et les entités endormies seront réveillées
+     */
+    public void updateStaticEntities() {
 
-        for (int a : collider.getChunksContaining(e))
-            if (a >= 0 && a < totalChunkCount)
-                chunks.get(a).entities.add(e);
+        staticTreeOutdated = true;
     }
 
     /**
@@ -167,33 +324,250 @@ public class Physics {
      */
     public void removeEntity(Entity entity) {
 
+        // Les entités qui reposaient sur elle doivent pouvoir tomber
+        entity.wakeUp();
         entity.setActivated(false);
 
-        entities.remove(entity);
+        if (staticEntities.remove(entity))
+            updateStaticEntities();
+        else {
+
+            // Une entité cinématique n'appartient à aucun îlot endormi, on réveille donc les entités endormies qui la touchent
+            if (entity.isKinematic())
+                wakeUpTouching(entity);
+            entities.remove(entity);
+        }
         forces.removeIf(force -> force.affects(entity));
+        fieldForces.removeIf(field -> field.affects(entity));
+        constraints.remove(entity);
         Collinsa.INSTANCE.getMonitoring().entityMonitoring.stopMonitoring(entity);
     }
 
     /**
-     * Replace une entité dans les Chunk auxquels il appartient
-     * @param entity entité à replacer
+     * Réveille (avec leur îlot) les entités endormies dont l'AABB touche celle de 'entity', à une petite marge près pour les entités posées dessus.
+     * Parcourt les entités plutôt que la broad phase, removeEntity pouvant être appelée depuis un autre thread que le ProcessingThread
+     *
+     * @param entity entité dont il faut réveiller les voisines
+     */
+    private void wakeUpTouching(Entity entity) {
+
+        AABB aabb = entity.getAABB();
+        float margin = .05f * Math.min(aabb.w, aabb.h);
+        float minX = aabb.x - margin, minY = aabb.y - margin, maxX = aabb.x + aabb.w + margin, maxY = aabb.y + aabb.h + margin;
+
+        for (Entity other : entities) {
+
+            if (!other.isSleeping())
+                continue;
+
+            AABB box = other.getAABB();
+            if (box.x <= maxX && box.x + box.w >= minX && box.y <= maxY && box.y + box.h >= minY)
+                other.wakeUp();
+        }
+    }
+
+    /**
+     * Met à jour l'état de sommeil des entités à la fin d'un tick, une fois les collisions résolues :
+     *  1. la durée de repos de chaque entité éveillée (non cinématique) est prolongée si ses vitesses sont sous les seuils, remise à zéro sinon
+     *  2. les îlots (entités reliées par les collisions du tick ou par des forces) dont toutes les entités sont au repos depuis timeToSleep s'endorment
+     *
+     * @param elapsed durée du tick en secondes
      */
-    public void spatialHashing(Entity entity) {
+    public void updateSleeping(double elapsed) {
+
+        if (!sleepingEnabled)
+            return;
+
+        float linearThresholdSqrd = sleepLinearThreshold * sleepLinearThreshold;
+        for (Entity entity : entities) {
+
+            if (entity.isSleeping() || entity.isKinematic() || !entity.isActivated())
+                continue;
 
-        for (int a : collider.getChunksContaining(entity))
-            if (a >= 0 && a < totalChunkCount)
-                chunks.get(a).entities.add(entity);
+            Vec2f vel = entity.getVel();
+            if (vel.x * vel.x + vel.y * vel.y > linearThresholdSqrd || Math.abs(entity.getAngVel()) > sleepAngularThreshold)
+                entity.setSleepTime(0);
+            else
+                entity.setSleepTime(entity.getSleepTime() + (float) elapsed);
+        }
+
+        collider.getIslandSolver().sleep(collider.getRegisteredCollision(), forces, constraints, entities, timeToSleep);
     }
 
     /**
-     * Replace toutes les entités dans les Chunks
+     * Réveille toutes les entités, par exemple lorsque les forces globales changent
+     */
+    public void wakeUpAll() {
+
+        for (Entity entity : entities)
+            entity.wakeUp();
+    }
+
+    /**
+     * Met à jour la broad phase du Collider (par défaut : replace toutes les entités dans les Chunks en reconstruisant la grille,
+     * ou ne déplace que celles qui ont changé de chunk si la grille est incrémentale).
+     * Les entités statiques n'y sont pas placées, leur arbre n'est reconstruit que si elles ont changé
      */
     public void spatialHashing() {
 
-        for (Entity e : entities)
-            for (int a : collider.getChunksContaining(e))
-                if (a >= 0 && a < totalChunkCount)
-                    chunks.get(a).entities.add(e);
+        if (staticTreeOutdated) {
+            staticTreeOutdated = false;
+            staticTree.build(staticEntities);
+
+            // Des entités endormies peuvent reposer sur une entité statique supprimée ou déplacée
+            wakeUpAll();
+        }
+
+        collider.getBroadphase().update(entities);
+    }
+
+    /**
+     * Elargit l'AABB de chaque entité du trajet qu'elle peut parcourir pendant 'duration' (|vel| * duration, plus une marge).
+     * A appeler avant la mise à jour de la broad phase du premier sous-pas : les paires qu'elle donne (y compris avec les entités statiques),
+     * gardées pour tout le tick, couvrent alors aussi les contacts qui n'apparaissent qu'aux sous-pas suivants.
+     * Les AABB exactes sont rendues par restoreAABBs, avant la narrow phase
+     *
+     * @param duration durée du tick en secondes
+     */
+    public void fattenAABBs(double duration) {
+
+        fattening = duration;
+        for (Entity entity : entities)
+            fattenAABB(entity);
+    }
+
+    /**
+     * Elargit l'AABB d'une entité comme fattenAABBs, si les AABB sont élargies. A appeler après avoir recalculé l'AABB d'une entité (updateAABB)
+     * @param entity entité dont l'AABB vient d'être recalculée
+     */
+    public void fattenAABB(Entity entity) {
+
+        if (fattening == 0)
+            return;
+
+        AABB aabb = entity.getAABB();
+        Vec2f vel = entity.getVel();
+        float margin = (float) (Math.sqrt(vel.x * vel.x + vel.y * vel.y) * fattening) + FATTENING_MARGIN_RATIO * Math.min(aabb.w, aabb.h);
+        aabb.x -= margin;
+        aabb.y -= margin;
+        aabb.w += 2 * margin;
+        aabb.h += 2 * margin;
+    }
+
+    /**
+     * Rend leur AABB exacte aux entités après fattenAABBs
+     */
+    public void restoreAABBs() {
+
+        if (fattening == 0)
+            return;
+
+        fattening = 0;
+        for (Entity entity : entities)
+            entity.updateAABB();
+    }
+
+    /**
+     * En mode adaptatif, tous les 'chunkAdaptationInterval' ticks, évalue la grille de chunks et la reconstruit si cela en vaut la peine :
+     *  1. on mesure la taille médiane des entités et on en déduit une taille de chunk cible (CHUNK_SIZE_PER_MEDIAN fois la médiane)
+     *  2. on compare le coût estimé de la grille actuelle (histogramme d'occupation) à celui de la grille candidate
+     *  3. si le gain est suffisant on redimensionne la grille et on y replace les entités
+     * Chaque évaluation est enregistrée dans le monitoring (ChunkMonitoring). Sans effet si la broad phase active n'est pas une grille de chunks.
+     * La grille non bornée (monde ouvert) n'ayant pas d'histogramme d'occupation, sa taille de chunk est simplement ramenée vers la cible (adaptSparseChunks)
+     * A appeler juste après spatialHashing, pour que l'occupation de la grille soit à jour
+     *
+     * @return true si la grille a été reconstruite
+     */
+    public boolean adaptChunks() {
+
+        boolean sparse = collider.getBroadphase() instanceof SparseChunkGrid;
+        if (!adaptiveChunks || collider.getBroadphase() != chunkGrid && !sparse || ++ticksSinceChunkAdaptation < chunkAdaptationInterval)
+            return false;
+
+        ticksSinceChunkAdaptation = 0;
+
+        if (sparse)
+            return adaptSparseChunks();
+
+        int bodyCount = chunkGrid.getBodyCount();
+        float median = chunkGrid.getMedianBodySize();
+        if (bodyCount == 0 || median <= 0)
+            return false;
+
+        float target = CHUNK_SIZE_PER_MEDIAN * median;
+        int n_x = Math.max(1, (int) Math.ceil(width / target));
+        int n_y = Math.max(1, (int) Math.ceil(height / target));
+
+        // On limite le nombre de chunks à quelques chunks par entité, la somme cumulée de la grille parcourt tous les chunks à chaque tick
+        long maxCells = Math.max(64, 4L * bodyCount);
+        if ((long) n_x * n_y > maxCells) {
+
+            double shrink = Math.sqrt((double) maxCells / ((long) n_x * n_y));
+            n_x = Math.max(1, (int) (n_x * shrink));
+            n_y = Math.max(1, (int) (n_y * shrink));
+        }
+
+        int oldX = chunkGrid.getCountX(), oldY = chunkGrid.getCountY();
+        long currentCost = chunkGrid.estimateCost();
+        long candidateCost = n_x == oldX && n_y == oldY ? currentCost : chunkGrid.estimateCost(n_x, n_y, width / n_x, height / n_y);
+        boolean apply = candidateCost < CHUNK_ADAPTATION_GAIN * currentCost;
+
+        Collinsa.INSTANCE.getMonitoring().chunkMonitoring.logDecision(new ChunkMonitoring.Decision(totalElapsedTime, median, chunkGrid.getMeanBodySize(), oldX, oldY, n_x, n_y, currentCost, candidateCost, apply));
+
+        if (apply) {
+
+            buildChunks(n_x, n_y, width / n_x, height / n_y);
+            chunkGrid.update(entities);
+        }
+
+        return apply;
+    }
+
+    /**
+     * Evaluation de la grille non bornée : la taille de chunk cible est déduite de la taille médiane des entités comme pour la grille bornée,
+     * et la grille est reconstruite si la taille actuelle s'en écarte de plus d'un facteur 1 / CHUNK_ADAPTATION_GAIN.
+     * Les coûts ne sont pas estimés (0 dans la décision enregistrée)
+     *
+     * @return true si la grille a été reconstruite
+     */
+    private boolean adaptSparseChunks() {
+
+        int bodyCount = 0;
+        double sum = 0;
+        for (Entity entity : entities) {
+
+            if (bodyCount == entitySizes.length)
+                entitySizes = Arrays.copyOf(entitySizes, Math.max(64, 2 * entitySizes.length));
+
+            entitySizes[bodyCount] = Math.max(entity.getAABB().w, entity.getAABB().h);
+            sum += entitySizes[bodyCount++];
+        }
+
+        if (bodyCount == 0)
+            return false;
+
+        Arrays.sort(entitySizes, 0, bodyCount);
+        float median = entitySizes[bodyCount / 2];
+        if (median <= 0)
+            return false;
+
+        // Même découpage que la grille bornée, pour que la taille des chunks ne dépende pas du mode du monde
+        float target = CHUNK_SIZE_PER_MEDIAN * median;
+        int n_x = Math.max(1, (int) Math.ceil(width / target));
+        int n_y = Math.max(1, (int) Math.ceil(height / target));
+
+        float ratio = (width / n_x) / chunkSize.x;
+        boolean apply = Math.max(ratio, 1 / ratio) > 1 / CHUNK_ADAPTATION_GAIN;
+
+        Collinsa.INSTANCE.getMonitoring().chunkMonitoring.logDecision(new ChunkMonitoring.Decision(totalElapsedTime, median, (float) (sum / bodyCount), (int) chunkCount.x, (int) chunkCount.y, n_x, n_y, 0, 0, apply));
+
+        if (apply) {
+
+            buildChunks(n_x, n_y, width / n_x, height / n_y);
+            collider.getBroadphase().update(entities);
+        }
+
+        return apply;
     }
 
     /**
@@ -202,14 +576,14 @@ public class Physics {
      * @param n_y nombre de chunks à la verticale
      * @param w largeur d'un chunk
      * @param h hauteur d'un chunk
-     * @see Chunk
+     * Si la broad phase active est la grille non bornée, ses chunks prennent la même taille
+     * @see ChunkGrid
      */
     private void buildChunks(int n_x, int n_y, float w, float h) {
 
-        chunks.clear();
-        for (int y = 0; y < n_y; ++y)
-            for (int x = 0; x < n_x; ++x)
-                chunks.add(new Chunk(x * w, y * h, w, h));
+        chunkGrid.resize(n_x, n_y, w, h);
+        if (collider.getBroadphase() instanceof SparseChunkGrid)
+            ((SparseChunkGrid) collider.getBroadphase()).setCellSize(w, h);
 
         chunkSize.set(w, h);
         chunkCount.set(n_x, n_y);
@@ -221,16 +595,7 @@ public class Physics {
      */
     public void clearChunks() {
 
-        chunks.forEach(chunk -> chunk.entities.clear());
-    }
-
-    /**
-     * Crée un hash unique au Chunk permettant de le trier dans le Chunks Set
-     * @return unique hash integer
-     */
-    public int hashChunk(Chunk chunk) {
-
-        return (int)(chunk.bounds.getX() / chunkSize.x) + (int)chunkCount.x * (int)(chunk.bounds.getY() / chunkSize.y);
+        chunkGrid.clear();
     }
 
     /**
@@ -348,22 +713,23 @@ public class Physics {
         Circle circleB = (Circle) toResolve.getIncident();
 
         // la normale de la collision
-        Vec2f normal = circleA.getPos().copy().sub(circleB.getPos());
+        Vec2f normal = toResolve.normal.set(circleA.getPos()).sub(circleB.getPos());
 
-        toResolve.penetrations = new float[] { circleA.getR() + circleB.getR() - normal.mag() };
+        float penetration = circleA.getR() + circleB.getR() - normal.mag();
 
         if (normal.normalize() == null) // résout les pbs d'infini
             return false;
 
-        toResolve.normal = normal;
-        toResolve.centerToContactReference = new Vec2f[] {Vec2f.zero().add(normal, -circleA.getR())};
-        toResolve.centerToContactIncident = new Vec2f[] {Vec2f.zero().add(normal, circleB.getR())};
+        int contact = toResolve.addContact(penetration, 0);
+        toResolve.centerToContactReference[contact].add(normal, -circleA.getR());
+        toResolve.centerToContactIncident[contact].add(normal, circleB.getR());
 
         return true;
     }
 
     /**
      * Calcule la normale et les points de contacts entre un cercle et un rectangle.
+     * Les calculs intermédiaires utilisent les vecteurs temporaires du thread (Vec2fPool), les résultats sont écrits dans le stockage de la collision
      * @param toResolve collision entre les deux objets (cercle en reference et rectangle en incident)
      */
     public static boolean generateCircleRectangleManifold(Collision toResolve) {
@@ -371,38 +737,45 @@ public class Physics {
         Circle circle = (Circle) toResolve.getReference();
         Rect rect = (Rect) toResolve.getIncident();
 
-        // Passage en coordonnées relatives au rectangle
-        Vec2f upos = Geometry.rotatePointAboutCenter(circle.getPos(), rect.getPos(), -rect.getRot()).toFloat();
-        Vec2f clampedPos = Geometry.clampPointToRect(upos.toDouble(), rect).toFloat();
-
-        Vec2f normal; float penetration;
-        if (clampedPos.sqrdDist(upos) == 0.0f) {
-            clampedPos = Geometry.clampPointInsideRect(upos.toDouble(), rect).toFloat();
-            normal = clampedPos.copy().sub(upos);
-            penetration = circle.getR() + clampedPos.dist(upos);
-        } else {
-            normal = upos.copy().sub(clampedPos);
-            penetration = circle.getR() - clampedPos.dist(upos);
-        }
+        Vec2fPool pool = Vec2fPool.get();
+        int mark = pool.mark();
+        try {
+
+            // Passage en coordonnées relatives au rectangle
+            Vec2f upos = Geometry.rotatePointAboutCenter(circle.getPos(), rect.getPos(), -rect.getRot(), pool.take());
+            Vec2f clampedPos = Geometry.clampPointToRect(upos, rect, pool.take());
+
+            Vec2f normal = toResolve.normal; float penetration;
+            if (clampedPos.sqrdDist(upos) == 0.0f) {
+                Geometry.clampPointInsideRect(upos, rect, clampedPos);
+                normal.set(clampedPos).sub(upos);
+                penetration = circle.getR() + clampedPos.dist(upos);
+            } else {
+                normal.set(upos).sub(clampedPos);
+                penetration = circle.getR() - clampedPos.dist(upos);
+            }
 
 
-        // Retour aux coordonnées absolues, pas besoin de centre de rotation puisque normal est la différence de deux vecteurs "relatifs"
-        normal.rotate(rect.getRot());
+            // Retour aux coordonnées absolues, pas besoin de centre de rotation puisque normal est la différence de deux vecteurs "relatifs"
+            normal.rotate(rect.getRot());
 
-        if(normal.normalize() == null) // résout les pbs d'infini
-            return false;
+            if(normal.normalize() == null) // résout les pbs d'infini
+                return false;
 
-        toResolve.penetrations = new float[] { penetration };
-        toResolve.normal = normal;
+            int contact = toResolve.addContact(penetration, 0);
+            Geometry.rotatePointAboutCenter(clampedPos, rect.getPos(), rect.getRot(), toResolve.centerToContactIncident[contact]).sub(rect.getPos());
+            toResolve.centerToContactReference[contact].add(normal, -circle.getR());
 
-        toResolve.centerToContactIncident = new Vec2f[] {Geometry.rotatePointAboutCenter(clampedPos, rect.getPos(), rect.getRot()).toFloat().sub(rect.getPos())};
-        toResolve.centerToContactReference = new Vec2f[] {Vec2f.zero().add(normal, -circle.getR())};
+            return true;
 
-        return true;
+        } finally {
+            pool.release(mark);
+        }
     }
 
     /**
      * Calcule la normale et les points de contacts entre deux polygones.
+     * Les calculs intermédiaires utilisent les vecteurs temporaires du thread (Vec2fPool), les résultats sont écrits dans le stockage de la collision
      * @param toResolve collision entre les deux polygones
      */
     public static boolean generatePolygonPolygonManifold(Collision toResolve) {
@@ -411,12 +784,12 @@ public class Physics {
         Polygon target = (Polygon) toResolve.getIncident();
 
         // Check for a separating axis with A's face planes
-        int[] faceA = { 0 };
-        float penetrationA = Geometry.findAxisOfLeastPenetration( faceA, source, target);
+        int faceA = Geometry.findAxisOfLeastPenetration(source, target);
+        float penetrationA = Geometry.getFaceSeparation(source, target, faceA);
 
         // Check for a separating axis with B's face planes
-        int[] faceB = { 0 };
-        float penetrationB = Geometry.findAxisOfLeastPenetration( faceB, target, source );
+        int faceB = Geometry.findAxisOfLeastPenetration(target, source);
+        float penetrationB = Geometry.getFaceSeparation(target, source, faceB);
 
         int referenceIndex;
         boolean flip = false; // Always point from b to a
@@ -424,85 +797,75 @@ public class Physics {
         Polygon reference, incident;
 
         // Determine which shape contains reference face
-        if (penetrationA < penetrationB) {
+        if (penetrationA < REFERENCE_FACE_RELATIVE_TOLERANCE * penetrationB + REFERENCE_FACE_ABSOLUTE_TOLERANCE) {
             reference = source;
             incident = target;
-            referenceIndex = faceA[0];
+            referenceIndex = faceA;
             flip = true;
         } else {
             reference = target;
             incident = source;
-            referenceIndex = faceB[0];
+            referenceIndex = faceB;
         }
 
-        Vec2f[] incidentFace = Vec2f.arrayOf(2);
-        Geometry.findIncidentFace(incidentFace, reference, incident, referenceIndex);
+        Vec2fPool pool = Vec2fPool.get();
+        int mark = pool.mark();
+        try {
 
-        Vec2f v1 = reference.getVertices()[referenceIndex];
+            Vec2f incident1 = pool.take(), incident2 = pool.take();
+            int incidentFace = Geometry.copyIncidentFace(incident1, incident2, reference, incident, referenceIndex);
 
-        Vec2f referenceFaceTangent = Geometry.getEdge(reference.getVertices(), referenceIndex);
-        Vec2f refFaceNormal = new Vec2f(referenceFaceTangent.y, -referenceFaceTangent.x).neg();
-        
-        referenceIndex = (referenceIndex + 1) % reference.getVertices().length;
-        Vec2f v2 = reference.getVertices()[referenceIndex];
+            // Identifiants des contacts pour le cache de contacts : face de référence (et son polygone), sommet incident
+            int feature = (flip ? 1 << 30 : 0) | referenceIndex << 16;
 
-        if (refFaceNormal.normalize() == null) {
-            System.out.println("[Physics.generatePolygonPolygonManifold] null faceNormal");
-            return false;
-        }
-
-        float refC = Vec2f.dot(refFaceNormal, v2);
-        float negSide = -Vec2f.dot(referenceFaceTangent, v1);
-        float posSide = Vec2f.dot(referenceFaceTangent, v2);
+            Vec2f v1 = reference.getVertices()[referenceIndex];
 
-        int clipped = 0;
-        //FIXME, use doubles ?
-        if ((clipped += Geometry.clip(referenceFaceTangent, posSide, incidentFace)) < 2 || (clipped += Geometry.clip(referenceFaceTangent.multOut(-1), negSide, incidentFace)) < 4) {
+            Vec2f referenceFaceTangent = Geometry.getEdge(reference.getVertices(), referenceIndex, pool.take());
+            Vec2f refFaceNormal = toResolve.normal.set(referenceFaceTangent.y, -referenceFaceTangent.x).neg();
 
-            System.out.println("[Physics.generatePolygonPolygonManifold] skip, clipped="+clipped);
-            return false;
-        }
+            referenceIndex = (referenceIndex + 1) % reference.getVertices().length;
+            Vec2f v2 = reference.getVertices()[referenceIndex];
 
-        Vec2f[] contactPoints = new Vec2f[2];
-        float[] penetrations = new float[2];
+            if (refFaceNormal.normalize() == null) {
+                System.out.println("[Physics.generatePolygonPolygonManifold] null faceNormal");
+                return false;
+            }
 
-        int cp = 0;
-        float separation = Vec2f.dot(refFaceNormal, incidentFace[0]) - refC;
-        if (separation <= 0f) {
+            float refC = Vec2f.dot(refFaceNormal, v2);
+            float negSide = -Vec2f.dot(referenceFaceTangent, v1);
+            float posSide = Vec2f.dot(referenceFaceTangent, v2);
 
-            penetrations[cp] = -separation;
-            contactPoints[cp++] = incidentFace[0];
+            int clipped = 0;
+            //FIXME, use doubles ?
+            if ((clipped += Geometry.clip(referenceFaceTangent.x, referenceFaceTangent.y, posSide, incident1, incident2)) < 2 || (clipped += Geometry.clip(-referenceFaceTangent.x, -referenceFaceTangent.y, negSide, incident1, incident2)) < 4) {
 
-        } else
-            penetrations[cp] = 0;
+                System.out.println("[Physics.generatePolygonPolygonManifold] skip, clipped="+clipped);
+                return false;
+            }
 
-        separation = Vec2f.dot(refFaceNormal, incidentFace[1]) - refC;
-        if (separation <= 0f) {
+            float separation1 = Vec2f.dot(refFaceNormal, incident1) - refC;
+            float separation2 = Vec2f.dot(refFaceNormal, incident2) - refC;
 
-            penetrations[cp] = -separation;
-            contactPoints[cp++] = incidentFace[1];
-        }
+            // Normal must be from B to A (target -> source)
+            if (flip)
+                refFaceNormal.neg();
 
-        // Normal must be from B to A (target -> source)
-        if (flip)
-            refFaceNormal.neg();
+            if (separation1 <= 0f)
+                addPolygonContact(toResolve, incident1, -separation1, feature | incidentFace);
 
-        toResolve.normal = refFaceNormal;
-        toResolve.penetrations = penetrations;
-        toResolve.centerToContactReference = new Vec2f[cp];
-        toResolve.centerToContactIncident = new Vec2f[cp];
+            if (separation2 <= 0f)
+                addPolygonContact(toResolve, incident2, -separation2, feature | (incidentFace + 1) % incident.getVertices().length);
 
-        for (int i = 0; i < cp; ++i) {
+            return true;
 
-            toResolve.centerToContactReference[i] = contactPoints[i].copy().sub(reference.getPos());
-            toResolve.centerToContactIncident[i] = contactPoints[i].copy().sub(incident.getPos());
+        } finally {
+            pool.release(mark);
         }
-
-        return true;
     }
 
     /**
      * Calcule la normale et les points de contacts entre un cercle et un polygone.
+     * Les calculs intermédiaires utilisent les vecteurs temporaires du thread (Vec2fPool), les résultats sont écrits dans le stockage de la collision
      * @param toResolve collision entre le cercle et le polygone
      */
     public static boolean generateCirclePolygonManifold(Collision toResolve) {
@@ -510,87 +873,110 @@ public class Physics {
         Circle circle = (Circle) toResolve.getIncident();
         Polygon polygon = (Polygon) toResolve.getReference();
 
-        Vec2f circlePos = Geometry.rotatePointAboutCenter(circle.getPos(), polygon.getPos(), -polygon.getRot()).toFloat().sub(polygon.getPos());
+        Vec2fPool pool = Vec2fPool.get();
+        int mark = pool.mark();
+        try {
 
-        Vec2f[] local_vertices = polygon.getLocalVertices();
-        Vec2f[] normals = Geometry.getNormals(local_vertices);
+            Vec2f circlePos = Geometry.rotatePointAboutCenter(circle.getPos(), polygon.getPos(), -polygon.getRot(), pool.take()).sub(polygon.getPos());
 
-        float separation = Float.NEGATIVE_INFINITY;
-        int faceNormal = 0;
-        for (int i = 0; i < polygon.getVertices().length; ++i) {
+            Vec2f[] local_vertices = polygon.getLocalVertices();
+            Vec2f localNormal = pool.take(), tmp = pool.take(), edge = pool.take();
 
-            Vec2f normal = normals[i];
-            float s = Vec2f.dot(normal, local_vertices[i].copy().sub(circlePos));
+            float separation = Float.NEGATIVE_INFINITY;
+            int faceNormal = 0;
+            for (int i = 0; i < polygon.getVertices().length; ++i) {
 
-            if (s > circle.getR())
-                return false;
+                Geometry.getNormal(local_vertices, i, localNormal);
+                float s = Vec2f.dot(localNormal, tmp.set(local_vertices[i]).sub(circlePos));
+
+                if (s > circle.getR())
+                    return false;
 
-            if (s > separation) {
-                separation = s;
-                faceNormal = i;
+                if (s > separation) {
+                    separation = s;
+                    faceNormal = i;
+                }
             }
-        }
 
-        Vec2f normal = polygon.getNormals()[faceNormal];
+            Vec2f normal = toResolve.normal.set(polygon.getNormals()[faceNormal]);
 
-        Vec2f v1 = local_vertices[faceNormal];
-        Vec2f v2 = local_vertices[(faceNormal + 1) % polygon.getVertices().length];
+            Vec2f v1 = local_vertices[faceNormal];
+            Vec2f v2 = local_vertices[(faceNormal + 1) % polygon.getVertices().length];
 
-        if (separation < 0) { // Center inside polygon
+            if (separation < 0) { // Center inside polygon
 
-            toResolve.normal = normal;
-            toResolve.penetrations = new float[] {Math.abs(separation - circle.getR())};
-            Vec2f contact = circle.getPos().copy().add(normal, -Math.abs(separation - circle.getR()) + circle.getR());
-            toResolve.centerToContactIncident = new Vec2f[] {normal.multOut(circle.getR())};
-            toResolve.centerToContactReference = new Vec2f[] {contact.sub(polygon.getPos())};
+                addCirclePolygonContact(toResolve, circle, polygon, separation, faceNormal);
+                return true;
+            }
 
-            return true;
-        }
+            float dot1 = Vec2f.dot( tmp.set(circlePos).sub( v1 ), edge.set(v2).sub( v1 ) );
+            float dot2 = Vec2f.dot( tmp.set(circlePos).sub( v2 ), edge.set(v1).sub( v2 ) );
 
-        float dot1 = Vec2f.dot( circlePos.copy().sub( v1 ), v2.copy().sub( v1 ) );
-        float dot2 = Vec2f.dot( circlePos.copy().sub( v2 ), v1.copy().sub( v2 ) );
+            if (dot1 <= 0) { // Closer to v1
+                if (circlePos.sqrdDist(v1) > circle.getR()*circle.getR())
+                    return false;
 
-        if (dot1 <= 0) { // Closer to v1
-            if (circlePos.sqrdDist(v1) > circle.getR()*circle.getR())
-                return false;
+                normal.set(polygon.getVertices()[faceNormal]).sub(circle.getPos()).normalize();
+                addCirclePolygonContact(toResolve, circle, polygon, separation, 1 << 16 | faceNormal);
 
-            normal = polygon.getVertices()[faceNormal].copy().sub(circle.getPos()).normalize();
-            toResolve.normal = normal;
-            toResolve.penetrations = new float[] {Math.abs(separation - circle.getR())};
-            Vec2f contact = circle.getPos().copy().add(normal, -Math.abs(separation - circle.getR()) + circle.getR());
-            toResolve.centerToContactIncident = new Vec2f[] {normal.multOut(circle.getR())};
-            toResolve.centerToContactReference = new Vec2f[] {contact.sub(polygon.getPos())};
+                return true;
 
-            return true;
+            } else if (dot2 <= 0) { // Closer to v2
 
-        } else if (dot2 <= 0) { // Closer to v2
+                if (circlePos.sqrdDist(v2) > circle.getR()*circle.getR())
+                    return false;
 
-            if (circlePos.sqrdDist(v2) > circle.getR()*circle.getR())
-                return false;
+                normal.set(polygon.getVertices()[(faceNormal + 1) % polygon.getVertices().length]).sub(circle.getPos()).normalize();
+                addCirclePolygonContact(toResolve, circle, polygon, separation, 1 << 16 | (faceNormal + 1) % polygon.getVertices().length);
 
-            normal = polygon.getVertices()[(faceNormal + 1) % polygon.getVertices().length].copy().sub(circle.getPos()).normalize();
-            toResolve.normal = normal;
-            toResolve.penetrations = new float[] {Math.abs(separation - circle.getR())};
-            Vec2f contact = circle.getPos().copy().add(normal, -Math.abs(separation - circle.getR()) + circle.getR());
-            toResolve.centerToContactIncident = new Vec2f[] {normal.multOut(circle.getR())};
-            toResolve.centerToContactReference = new Vec2f[] {contact.sub(polygon.getPos())};
+                return true;
 
-            return true;
+            } else { // Closer to face
 
-        } else { // Closer to face
+                if (Math.abs(Vec2f.dot(tmp.set(circlePos).sub(v2), Geometry.getNormal(local_vertices, faceNormal, localNormal))) >= circle.getR())
+                    return false;
 
-            if (Math.abs(Vec2f.dot(circlePos.copy().sub(v2), normals[faceNormal])) >= circle.getR())
-                return false;
+            }
+
+            addCirclePolygonContact(toResolve, circle, polygon, separation, faceNormal);
+
+            return true;
 
+        } finally {
+            pool.release(mark);
         }
+    }
 
-        toResolve.normal = normal;
-        toResolve.penetrations = new float[] {Math.abs(separation - circle.getR())};
-        Vec2f contact = circle.getPos().copy().add(normal, -Math.abs(separation - circle.getR()) + circle.getR());
-        toResolve.centerToContactIncident = new Vec2f[] {normal.multOut(circle.getR())};
-        toResolve.centerToContactReference = new Vec2f[] {contact.sub(polygon.getPos())};
+    /**
+     * Ajoute à une collision entre deux polygones un point de contact donné en coordonnées absolues.
+     * Les bras de levier sont toujours calculés depuis la référence et l'incident de la collision, quel que soit le polygone portant la face de référence
+     * @param toResolve collision entre les deux polygones
+     * @param contactPoint point de contact
+     * @param penetration pénétration au point de contact
+     * @param feature identifiant du contact (face de référence, sommet incident)
+     */
+    private static void addPolygonContact(Collision toResolve, Vec2f contactPoint, float penetration, int feature) {
 
-        return true;
+        int contact = toResolve.addContact(penetration, feature);
+        toResolve.centerToContactReference[contact].set(contactPoint).sub(toResolve.getReference().getPos());
+        toResolve.centerToContactIncident[contact].set(contactPoint).sub(toResolve.getIncident().getPos());
+    }
+
+    /**
+     * Ajoute à une collision entre un cercle et un polygone son point de contact, à partir de la normale de la collision
+     * @param toResolve collision entre le cercle et le polygone, dont la normale est calculée
+     * @param circle cercle
+     * @param polygon polygone
+     * @param separation distance signée entre le centre du cercle et la face du polygone
+     * @param feature identifiant du contact (face ou sommet du polygone le plus proche)
+     */
+    private static void addCirclePolygonContact(Collision toResolve, Circle circle, Polygon polygon, float separation, int feature) {
+
+        Vec2f normal = toResolve.normal;
+        int contact = toResolve.addContact(Math.abs(separation - circle.getR()), feature);
+
+        toResolve.centerToContactIncident[contact].set(normal).mult(circle.getR());
+        toResolve.centerToContactReference[contact].set(circle.getPos()).add(normal, -Math.abs(separation - circle.getR()) + circle.getR()).sub(polygon.getPos());
     }
 
     /**
@@ -635,19 +1021,16 @@ public class Physics {
         float rBCrossNSqrd = Vec2f.cross(rB, normalBtoA)*Vec2f.cross(rB, normalBtoA);
         float inverseMassSum = entityA.getInertia().getMassInv() + entityB.getInertia().getMassInv() + rACrossNSqrd * entityA.getInertia().getJInv() + rBCrossNSqrd * entityB.getInertia().getJInv();
 
-        Vec2f speedA = entityA.getVel().copy().add(Vec2f.cross(entityA.getAngVel(), rA));
-        Vec2f speedB = entityB.getVel().copy().add(Vec2f.cross(entityB.getAngVel(), rB));
-
-        Vec2f relativeSpeed = speedA.sub(speedB);
+        float normalSpeed = relativeSpeed(entityA, entityB, rA, rB, normalBtoA.x, normalBtoA.y);
 
-        if (relativeSpeed.dot(normalBtoA) > 0 || inverseMassSum == 0) return 0;
+        if (normalSpeed > 0 || inverseMassSum == 0) return 0;
 
         // la restitution est la plus petite des deux
         float e = Math.min(entityB.getMaterial().restitution, entityA.getMaterial().restitution);
 
         // coefficient d'impulsion en fonction des masses et de la restitution
         // impulsion normale = k * vitesseRelative.normale
-        return (1 + e) * Math.abs(relativeSpeed.dot(normalBtoA)) / inverseMassSum;
+        return (1 + e) * Math.abs(normalSpeed) / inverseMassSum;
     }
 
     /**
@@ -707,6 +1090,55 @@ public class Physics {
         entity.setAngVel(entity.getAngVel() + entity.getInertia().getJInv() * Vec2f.cross(centerToContact, impulse));
     }
 
+    /**
+     * Comme applyImpulse(Entity, Vec2f, Vec2f) mais sans vecteur d'impulsion à allouer
+     * @param entity entité sur laquelle appliqué l'impulse
+     * @param centerToContact vecteur partant du centre de rotation de l'entité jusqu'au point où est appliqué l'impulsion
+     * @param impulseX coordonnée x de l'impulsion
+     * @param impulseY coordonnée y de l'impulsion
+     */
+    public static void applyImpulse(Entity entity, Vec2f centerToContact, float impulseX, float impulseY) {
+
+        entity.getVel().add(impulseX * entity.getInertia().getMassInv(), impulseY * entity.getInertia().getMassInv());
+        entity.setAngVel(entity.getAngVel() + entity.getInertia().getJInv() * (centerToContact.x * impulseY - impulseX * centerToContact.y));
+    }
+
+    /**
+     * Calcule la vitesse relative de A par rapport à B au point de contact, projetée sur un axe (même calcul que dans bounceImpulseAmplitude, sans allocation)
+     * @param entityA première entité
+     * @param entityB deuxième entité
+     * @param rA vecteur partant du centre de rotation de l'entité A vers son point de contact
+     * @param rB vecteur partant du centre de rotation de l'entité B vers son point de contact
+     * @param axisX coordonnée x de l'axe (unitaire)
+     * @param axisY coordonnée y de l'axe (unitaire)
+     * @return (vA + ωA x rA - vB - ωB x rB) . axe
+     */
+    public static float relativeSpeed(Entity entityA, Entity entityB, Vec2f rA, Vec2f rB, float axisX, float axisY) {
+
+        float speedX = entityA.getVel().x - rA.y * entityA.getAngVel() - (entityB.getVel().x - rB.y * entityB.getAngVel());
+        float speedY = entityA.getVel().y + rA.x * entityA.getAngVel() - (entityB.getVel().y + rB.x * entityB.getAngVel());
+
+        return speedX * axisX + speedY * axisY;
+    }
+
+    /**
+     * Calcule l'inverse de la masse effective d'une entité au point de contact le long d'un axe (termes de inverseMassSum dans bounceImpulseAmplitude).
+     * Une entité cinématique ne subit pas les impulsions : sa masse est considérée infinie
+     * @param entity entité
+     * @param r vecteur partant du centre de rotation de l'entité vers son point de contact
+     * @param axisX coordonnée x de l'axe (unitaire)
+     * @param axisY coordonnée y de l'axe (unitaire)
+     * @return 1/m + (r x axe)² / J, 0 si l'entité est cinématique
+     */
+    public static float inverseEffectiveMass(Entity entity, Vec2f r, float axisX, float axisY) {
+
+        if (entity.isKinematic())
+            return 0;
+
+        float rCrossAxis = r.x * axisY - axisX * r.y;
+        return entity.getInertia().getMassInv() + rCrossAxis * rCrossAxis * entity.getInertia().getJInv();
+    }
+
     /**
      * Renvoie l'instance du moteur de collisions associé à cette instance du moteur physique
      * @return l'instance du Collider associé au moteur physique
@@ -727,13 +1159,40 @@ public class Physics {
     }
 
     /**
-     * Renvoie l'array list des chunks du monde
-     * @return array list des chunks découpant le monde
-     * @see Chunk
+     * Renvoie la liste des entités statiques de la simulation
+     * @return entités statiques
+     */
+    public CopyOnWriteArrayList<Entity> getStaticEntities() {
+
+        return staticEntities;
+    }
+
+    /**
+     * Renvoie les contraintes de distance entre entités
+     * @return constraints
      */
-    public ArrayList<Chunk> getChunks() {
+    public DistanceConstraints getConstraints() {
 
-        return chunks;
+        return constraints;
+    }
+
+    /**
+     * Renvoie l'arbre des entités statiques
+     * @return staticTree
+     */
+    public StaticTree getStaticTree() {
+
+        return staticTree;
+    }
+
+    /**
+     * Renvoie la grille des chunks du monde
+     * @return grille des chunks découpant le monde
+     * @see ChunkGrid
+     */
+    public ChunkGrid getChunkGrid() {
+
+        return chunkGrid;
     }
 
     /**
@@ -773,7 +1232,7 @@ public class Physics {
     }
 
     /**
-     * Redimensionne le monde. Mieux vaut le faire pendant que la simulation est en pause pour éviter les ConcurrentModificationException liées à l'ArrayList des Chunks
+     * Redimensionne le monde. Mieux vaut le faire pendant que la simulation est en pause pour éviter que la grille des Chunks soit reconstruite pendant une détection de collisions
      * @param newSize nouvelle taille du monde
      */
     public void resize(Vec2f newSize) {
@@ -810,6 +1269,64 @@ public class Physics {
         this.chunkCount.set((int)chunkCount.x, (int)chunkCount.y);
     }
 
+    /**
+     * Informe si la grille de chunks est redimensionnée automatiquement
+     * @return adaptiveChunks
+     */
+    public boolean isAdaptiveChunks() {
+
+        return adaptiveChunks;
+    }
+
+    /**
+     * Active ou désactive le redimensionnement automatique de la grille de chunks
+     * @param adaptiveChunks true pour activer
+     * @see Physics#adaptChunks()
+     */
+    public void setAdaptiveChunks(boolean adaptiveChunks) {
+
+        this.adaptiveChunks = adaptiveChunks;
+        this.ticksSinceChunkAdaptation = 0;
+    }
+
+    /**
+     * Informe si la grille de chunks est mise à jour incrémentalement
+     * @return true si seules les entités qui changent de chunk sont déplacées
+     */
+    public boolean isIncrementalChunks() {
+
+        return chunkGrid.isIncremental();
+    }
+
+    /**
+     * Active ou désactive la mise à jour incrémentale de la grille de chunks : au lieu de reconstruire la grille à chaque tick,
+     * seules les entités dont l'AABB a franchi la limite d'un chunk sont déplacées
+     * @param incrementalChunks true pour activer
+     * @see ChunkGrid#setIncremental(boolean)
+     */
+    public void setIncrementalChunks(boolean incrementalChunks) {
+
+        chunkGrid.setIncremental(incrementalChunks);
+    }
+
+    /**
+     * Renvoie le nombre de ticks entre deux évaluations de la grille en mode adaptatif
+     * @return chunkAdaptationInterval
+     */
+    public int getChunkAdaptationInterval() {
+
+        return chunkAdaptationInterval;
+    }
+
+    /**
+     * Change le nombre de ticks entre deux évaluations de la grille en mode adaptatif
+     * @param chunkAdaptationInterval nouvel intervalle (au moins 1)
+     */
+    public void setChunkAdaptationInterval(int chunkAdaptationInterval) {
+
+        this.chunkAdaptationInterval = Math.max(1, chunkAdaptationInterval);
+    }
+
     /**
      * Renvoie le nombre actuel de chunks au total
      * @return totalChunkCount nombre de chunks
@@ -819,6 +1336,100 @@ public class Physics {
         return totalChunkCount;
     }
 
+    /**
+     * Renvoie le groupe de threads utilisé pour paralléliser les étapes d'un tick
+     * @return workerPool
+     */
+    public WorkerPool getWorkerPool() {
+
+        return workerPool;
+    }
+
+    /**
+     * Change le nombre de threads utilisés pour paralléliser les étapes d'un tick
+     * @param threadCount nombre de threads, 1 pour tout calculer sur le ProcessingThread
+     */
+    public void setThreadCount(int threadCount) {
+
+        workerPool.setParallelism(threadCount);
+    }
+
+    /**
+     * Renvoie le stockage en colonnes de l'état des entités
+     * @return bodyStore
+     */
+    public BodyStore getBodyStore() {
+
+        return bodyStore;
+    }
+
+    /**
+     * Informe si l'intégration passe par le stockage en colonnes
+     * @return useBodyStore
+     */
+    public boolean isBodyStoreEnabled() {
+
+        return useBodyStore;
+    }
+
+    /**
+     * Active ou désactive l'intégration par le stockage en colonnes
+     * @param useBodyStore true pour intégrer les entités dans le BodyStore
+     */
+    public void setBodyStoreEnabled(boolean useBodyStore) {
+
+        this.useBodyStore = useBodyStore;
+    }
+
+    /**
+     * Informe si les îlots au repos sont endormis
+     * @return sleepingEnabled
+     */
+    public boolean isSleepingEnabled() {
+
+        return sleepingEnabled;
+    }
+
+    /**
+     * Active ou désactive la mise en sommeil des îlots au repos. Les entités endormies sont réveillées lorsqu'elle est désactivée
+     * @param sleepingEnabled true pour endormir les îlots au repos
+     */
+    public void setSleepingEnabled(boolean sleepingEnabled) {
+
+        this.sleepingEnabled = sleepingEnabled;
+        if (!sleepingEnabled)
+            wakeUpAll();
+    }
+
+    /**
+     * Redéfinit les vitesses en dessous desquelles une entité est considérée au repos
+     * @param linearThreshold vitesse en m/s
+     * @param angularThreshold vitesse angulaire en rad/s
+     */
+    public void setSleepThresholds(float linearThreshold, float angularThreshold) {
+
+        this.sleepLinearThreshold = linearThreshold;
+        this.sleepAngularThreshold = angularThreshold;
+    }
+
+    /**
+     * Renvoie la durée de repos nécessaire à un îlot pour s'endormir
+     * @return timeToSleep en secondes
+     */
+    public float getTimeToSleep() {
+
+        return timeToSleep;
+    }
+
+    /**
+     * Redéfinit la durée de repos nécessaire à un îlot pour s'endormir
+     * @param timeToSleep durée en secondes
+     */
+    public void setTimeToSleep(float timeToSleep) {
+
+        this.timeToSleep = timeToSleep;
+    }
+
     /**
      * Renvoie le Thread de calcul associé à la simulation
      * @return thread de rendu
@@ -855,6 +1466,58 @@ public class Physics {
         this.fixedDeltaTime = fixedDeltaTime;
     }
 
+    /**
+     * Renvoie le nombre de sous-pas par tick
+     * @return subSteps
+     */
+    public int getSubSteps() {
+
+        return subSteps;
+    }
+
+    /**
+     * Change le nombre de sous-pas par tick : l'intégration, les contraintes, les forces, la narrow phase et la résolution des collisions
+     * sont faites à chaque sous-pas, la broad phase (et la détection continue), le sommeil et le monitoring une seule fois par tick
+     * @param subSteps nombre de sous-pas (au moins 1), 1 pour avancer d'un seul pas par tick comme avant
+     */
+    public void setSubSteps(int subSteps) {
+
+        this.subSteps = Math.max(1, subSteps);
+    }
+
+    /**
+     * Grille non bornée installée à l'ouverture du monde, null si le monde est fermé ou si une autre broad phase était active
+     */
+    private SparseChunkGrid openWorldGrid;
+
+    /**
+     * Informe si le monde est ouvert (les entités peuvent sortir de ses bornes)
+     * @return openWorld
+     */
+    public boolean isOpenWorld() {
+
+        return openWorld;
+    }
+
+    /**
+     * Ouvre ou ferme le monde. En ouvrant le monde, si la broad phase active est la grille de chunks (bornée), elle est remplacée
+     * par une grille non bornée (SparseChunkGrid) de chunks de même taille, dont la mémoire ne dépend que de la surface occupée.
+     * En fermant le monde, la grille non bornée installée ainsi est remplacée par la grille bornée
+     * @param openWorld true pour que les entités sortant du monde ne soient plus supprimées
+     */
+    public void setOpenWorld(boolean openWorld) {
+
+        this.openWorld = openWorld;
+
+        if (openWorld && collider.getBroadphase() == chunkGrid)
+            collider.setBroadphase(openWorldGrid = new SparseChunkGrid(chunkSize.x, chunkSize.y));
+        else if (!openWorld && openWorldGrid != null && collider.getBroadphase() == openWorldGrid)
+            collider.setBroadphase(chunkGrid);
+
+        if (!openWorld)
+            openWorldGrid = null;
+    }
+
     /**
      * Informe si la simulation est en mode temps-réel
      * @return isRealtime = true si on est en temps-réel
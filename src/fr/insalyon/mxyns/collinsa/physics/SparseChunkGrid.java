@@ -0,0 +1,481 @@
+package fr.insalyon.mxyns.collinsa.physics;
+
+import fr.insalyon.mxyns.collinsa.physics.collisions.AABB;
+import fr.insalyon.mxyns.collinsa.physics.collisions.Broadphase;
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Grille de chunks non bornée : seuls les chunks occupés existent. Ils sont retrouvés par une table de hachage à adressage ouvert
+ * dont la clé est un long (x << 32 | y), sans objet ni boxing. Un chunk est créé lorsqu'une entité y entre et recyclé dès qu'il est vide.
+ * La mémoire dépend donc de la surface occupée et non de la taille du monde, ce qui permet des mondes ouverts (Physics.setOpenWorld).
+ *
+ * Le rangement des entités se fait comme dans ChunkGrid, par tri par dénombrement, les chunks occupés étant numérotés par leur emplacement (slot)
+ *
+ * SparseChunkGrid Complexity:
+ * | Rebuild | Get chunk content |
+ * |  O(n)   |        O(1)       |
+ */
+public class SparseChunkGrid implements Broadphase {
+
+    /**
+     * Emplacement vide dans la table de hachage / chunk libre
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * Taille d'un chunk en mètres
+     */
+    private float cellWidth, cellHeight;
+
+    /**
+     * Table de hachage (adressage ouvert, sondage linéaire) : clés des chunks et emplacement (slot) associé, EMPTY si la case est vide.
+     * La capacité est une puissance de 2 et la table est remplie au plus à moitié
+     */
+    private long[] tableKeys = new long[16];
+    private int[] tableSlots = filledWith(16, EMPTY);
+
+    /**
+     * Nombre de chunks présents dans la table
+     */
+    private int tableSize;
+
+    /**
+     * Clé, nombre de références (EMPTY pour un emplacement libre) et début dans cellEntities de chaque chunk occupé
+     */
+    private long[] slotKeys = new long[0];
+    private int[] slotCounts = new int[0], slotStarts = new int[0], slotCursors = new int[0];
+
+    /**
+     * Emplacements libres, réutilisés avant d'en créer de nouveaux
+     */
+    private int[] freeSlots = new int[0];
+    private int freeSlotCount;
+
+    /**
+     * Nombre d'emplacements déjà utilisés au moins une fois
+     */
+    private int slotHighWater;
+
+    /**
+     * Indices (dans bodies) des entités de chaque chunk, rangés chunk par chunk
+     */
+    private int[] cellEntities = new int[0];
+
+    /**
+     * Emplacement du chunk de chaque référence, dans l'ordre des entités. Les références de l'entité i sont refSlots[bodyRefStart[i]] ... refSlots[bodyRefStart[i + 1] - 1]
+     */
+    private int[] refSlots = new int[0];
+    private int[] bodyRefStart = new int[1];
+
+    /**
+     * Nombre de références rangées
+     */
+    private int refCount;
+
+    /**
+     * Entités placées dans la grille lors de la dernière reconstruction
+     */
+    private Entity[] bodies = new Entity[0];
+
+    /**
+     * Nombre d'entités placées dans la grille
+     */
+    private int bodyCount;
+
+    /**
+     * Dernier tampon de requête ayant visité chaque entité
+     */
+    private int[] visitStamps = new int[0];
+
+    /**
+     * Tampon de la requête en cours
+     */
+    private int stamp;
+
+    /**
+     * Crée une grille non bornée de chunks de taille [w * h]
+     * @param w largeur d'un chunk
+     * @param h hauteur d'un chunk
+     */
+    public SparseChunkGrid(float w, float h) {
+
+        setCellSize(w, h);
+    }
+
+    /**
+     * Change la taille des chunks et vide la grille
+     * @param w largeur d'un chunk
+     * @param h hauteur d'un chunk
+     */
+    public void setCellSize(float w, float h) {
+
+        cellWidth = w;
+        cellHeight = h;
+
+        clear();
+    }
+
+    /**
+     * Vide la grille et recycle tous les chunks
+     */
+    @Override
+    public void clear() {
+
+        Arrays.fill(tableSlots, EMPTY);
+        tableSize = 0;
+
+        Arrays.fill(slotCounts, EMPTY);
+        freeSlotCount = 0;
+        slotHighWater = 0;
+
+        Arrays.fill(bodies, 0, bodyCount, null);
+        bodyCount = 0;
+        refCount = 0;
+    }
+
+    /**
+     * Reconstruit la grille à partir des entités données
+     *  1. on compte les références de chaque chunk couvert, en créant les chunks manquants
+     *  2. les chunks restés vides sont retirés de la table et recyclés
+     *  3. une somme cumulée sur les chunks occupés donne leur début dans cellEntities, puis on range les entités
+     *
+     * @param entities entités à placer dans la grille
+     */
+    @Override
+    public void update(Iterable<Entity> entities) {
+
+        int previousCount = bodyCount;
+
+        for (int slot = 0; slot < slotHighWater; ++slot)
+            if (slotCounts[slot] != EMPTY)
+                slotCounts[slot] = 0;
+
+        bodyCount = 0;
+        refCount = 0;
+
+        // 1. Comptage
+        for (Entity entity : entities) {
+
+            ensureBodyCapacity(bodyCount + 1);
+            bodies[bodyCount] = entity;
+            bodyRefStart[bodyCount] = refCount;
+
+            AABB aabb = entity.getAABB();
+            int minX = getCellX(aabb.x), maxX = getCellX(aabb.x + aabb.w);
+            int minY = getCellY(aabb.y), maxY = getCellY(aabb.y + aabb.h);
+
+            for (int y = minY; y <= maxY; ++y)
+                for (int x = minX; x <= maxX; ++x) {
+
+                    int slot = getOrCreateSlot(key(x, y));
+                    ++slotCounts[slot];
+
+                    if (refCount == refSlots.length)
+                        refSlots = Arrays.copyOf(refSlots, Math.max(16, 2 * refSlots.length));
+                    refSlots[refCount++] = slot;
+                }
+
+            ++bodyCount;
+        }
+        bodyRefStart[bodyCount] = refCount;
+
+        if (previousCount > bodyCount)
+            Arrays.fill(bodies, bodyCount, previousCount, null);
+
+        // 2. Recyclage des chunks vides, 3. somme cumulée
+        int start = 0;
+        for (int slot = 0; slot < slotHighWater; ++slot) {
+
+            if (slotCounts[slot] == 0)
+                releaseSlot(slot);
+
+            if (slotCounts[slot] == EMPTY)
+                continue;
+
+            slotStarts[slot] = slotCursors[slot] = start;
+            start += slotCounts[slot];
+        }
+
+        if (cellEntities.length < refCount)
+            cellEntities = new int[Math.max(refCount, 2 * cellEntities.length)];
+
+        // 3. Rangement
+        for (int i = 0; i < bodyCount; ++i)
+            for (int r = bodyRefStart[i], end = bodyRefStart[i + 1]; r < end; ++r)
+                cellEntities[slotCursors[refSlots[r]]++] = i;
+    }
+
+    /**
+     * Appelle 'consumer' avec (entity, voisine) pour chaque entité voisine de 'entity', c'est-à-dire présente dans un des chunks couverts par l'AABB de 'entity'
+     *
+     * @param entity entité dont on cherche les voisines
+     * @param consumer action à effectuer sur chaque couple (entity, voisine)
+     */
+    @Override
+    public void forEachNearby(Entity entity, BiConsumer<Entity, Entity> consumer) {
+
+        nextStamp();
+
+        AABB aabb = entity.getAABB();
+        int minX = getCellX(aabb.x), maxX = getCellX(aabb.x + aabb.w);
+        int minY = getCellY(aabb.y), maxY = getCellY(aabb.y + aabb.h);
+
+        for (int y = minY; y <= maxY; ++y)
+            for (int x = minX; x <= maxX; ++x) {
+
+                int slot = findSlot(key(x, y));
+                if (slot == EMPTY)
+                    continue;
+
+                for (int k = slotStarts[slot], end = k + slotCounts[slot]; k < end; ++k) {
+
+                    int index = cellEntities[k];
+                    if (visitStamps[index] == stamp)
+                        continue;
+
+                    visitStamps[index] = stamp;
+                    if (bodies[index] != entity)
+                        consumer.accept(entity, bodies[index]);
+                }
+            }
+    }
+
+    /**
+     * Appelle 'consumer' une seule fois pour chaque paire non-ordonnée d'entités partageant au moins un chunk, avec la même règle d'ordre que ChunkGrid.
+     * Les chunks de chaque entité sont relus depuis refSlots, sans repasser par la table de hachage
+     *
+     * @param consumer action à effectuer sur chaque paire
+     */
+    @Override
+    public void forEachPair(BiConsumer<Entity, Entity> consumer) {
+
+        for (int i = 0; i < bodyCount; ++i) {
+
+            nextStamp();
+
+            for (int r = bodyRefStart[i], refEnd = bodyRefStart[i + 1]; r < refEnd; ++r) {
+
+                int slot = refSlots[r];
+                for (int k = slotStarts[slot], end = k + slotCounts[slot]; k < end; ++k) {
+
+                    int index = cellEntities[k];
+                    if (index <= i || visitStamps[index] == stamp)
+                        continue;
+
+                    visitStamps[index] = stamp;
+                    consumer.accept(bodies[i], bodies[index]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Passe au tampon de requête suivant
+     */
+    private void nextStamp() {
+
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(visitStamps, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Cherche le chunk de clé 'key' dans la table
+     * @param key clé du chunk
+     * @return emplacement du chunk, EMPTY s'il n'existe pas
+     */
+    private int findSlot(long key) {
+
+        int mask = tableKeys.length - 1;
+        for (int i = hash(key) & mask; tableSlots[i] != EMPTY; i = (i + 1) & mask)
+            if (tableKeys[i] == key)
+                return tableSlots[i];
+
+        return EMPTY;
+    }
+
+    /**
+     * Cherche le chunk de clé 'key' dans la table et le crée (en recyclant un emplacement libre si possible) s'il n'existe pas
+     * @param key clé du chunk
+     * @return emplacement du chunk
+     */
+    private int getOrCreateSlot(long key) {
+
+        int mask = tableKeys.length - 1;
+        int i = hash(key) & mask;
+        for (; tableSlots[i] != EMPTY; i = (i + 1) & mask)
+            if (tableKeys[i] == key)
+                return tableSlots[i];
+
+        int slot;
+        if (freeSlotCount > 0)
+            slot = freeSlots[--freeSlotCount];
+        else {
+            if (slotHighWater == slotKeys.length) {
+                int capacity = Math.max(16, 2 * slotKeys.length);
+                slotKeys = Arrays.copyOf(slotKeys, capacity);
+                slotCounts = Arrays.copyOf(slotCounts, capacity);
+                slotStarts = Arrays.copyOf(slotStarts, capacity);
+                slotCursors = Arrays.copyOf(slotCursors, capacity);
+                freeSlots = Arrays.copyOf(freeSlots, capacity);
+            }
+            slot = slotHighWater++;
+        }
+
+        slotKeys[slot] = key;
+        slotCounts[slot] = 0;
+
+        tableKeys[i] = key;
+        tableSlots[i] = slot;
+        if (++tableSize * 2 > tableKeys.length)
+            rehash(2 * tableKeys.length);
+
+        return slot;
+    }
+
+    /**
+     * Retire un chunk de la table et rend son emplacement à la liste des emplacements libres.
+     * La case libérée est comblée en décalant les clés suivantes de la même séquence de sondage (pas de marqueur de suppression)
+     *
+     * @param slot emplacement du chunk à recycler
+     */
+    private void releaseSlot(int slot) {
+
+        int mask = tableKeys.length - 1;
+        int i = hash(slotKeys[slot]) & mask;
+        while (tableSlots[i] != slot)
+            i = (i + 1) & mask;
+
+        for (int j = (i + 1) & mask; tableSlots[j] != EMPTY; j = (j + 1) & mask) {
+
+            int home = hash(tableKeys[j]) & mask;
+            // La clé en j peut combler le trou en i si sa position idéale n'est pas dans ]i, j]
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                tableKeys[i] = tableKeys[j];
+                tableSlots[i] = tableSlots[j];
+                i = j;
+            }
+        }
+        tableSlots[i] = EMPTY;
+        --tableSize;
+
+        slotCounts[slot] = EMPTY;
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    /**
+     * Recrée la table avec une nouvelle capacité
+     * @param capacity nouvelle capacité (puissance de 2)
+     */
+    private void rehash(int capacity) {
+
+        long[] oldKeys = tableKeys;
+        int[] oldSlots = tableSlots;
+
+        tableKeys = new long[capacity];
+        tableSlots = filledWith(capacity, EMPTY);
+
+        int mask = capacity - 1;
+        for (int k = 0; k < oldKeys.length; ++k) {
+
+            if (oldSlots[k] == EMPTY)
+                continue;
+
+            int i = hash(oldKeys[k]) & mask;
+            while (tableSlots[i] != EMPTY)
+                i = (i + 1) & mask;
+
+            tableKeys[i] = oldKeys[k];
+            tableSlots[i] = oldSlots[k];
+        }
+    }
+
+    /**
+     * Agrandit (en doublant leur taille) les tableaux relatifs aux entités s'ils sont trop petits
+     * @param capacity nombre d'entités à pouvoir stocker
+     */
+    private void ensureBodyCapacity(int capacity) {
+
+        if (bodies.length >= capacity)
+            return;
+
+        int newCapacity = Math.max(capacity, Math.max(16, 2 * bodies.length));
+        bodies = Arrays.copyOf(bodies, newCapacity);
+        bodyRefStart = Arrays.copyOf(bodyRefStart, newCapacity + 1);
+        visitStamps = Arrays.copyOf(visitStamps, newCapacity);
+    }
+
+    /**
+     * Renvoie la colonne de chunks contenant l'abscisse x (non bornée, éventuellement négative)
+     */
+    public int getCellX(float x) {
+
+        return (int) Math.floor(x / cellWidth);
+    }
+
+    /**
+     * Renvoie la ligne de chunks contenant l'ordonnée y (non bornée, éventuellement négative)
+     */
+    public int getCellY(float y) {
+
+        return (int) Math.floor(y / cellHeight);
+    }
+
+    /**
+     * Clé du chunk (x, y) : x dans les 32 bits de poids fort, y dans ceux de poids faible
+     */
+    private static long key(int x, int y) {
+
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Mélange les bits d'une clé pour la répartir dans la table (étape finale de MurmurHash3)
+     */
+    private static int hash(long key) {
+
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+
+        return (int) key;
+    }
+
+    /**
+     * Crée un tableau d'entiers rempli d'une valeur
+     */
+    private static int[] filledWith(int length, int value) {
+
+        int[] array = new int[length];
+        Arrays.fill(array, value);
+
+        return array;
+    }
+
+    /**
+     * Renvoie le nombre de chunks occupés
+     * @return nombre de chunks dans la table
+     */
+    public int getOccupiedCellCount() {
+
+        return tableSize;
+    }
+
+    /**
+     * Renvoie le nombre d'entités placées dans la grille lors de la dernière reconstruction
+     * @return bodyCount
+     */
+    public int getBodyCount() {
+
+        return bodyCount;
+    }
+
+    public String toString() {
+
+        return "SparseChunkGrid[cellSize=(" + cellWidth + ", " + cellHeight + "), occupied=" + tableSize + ", bodies=" + bodyCount + "]";
+    }
+}
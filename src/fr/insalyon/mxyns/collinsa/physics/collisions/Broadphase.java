@@ -0,0 +1,83 @@
+package fr.insalyon.mxyns.collinsa.physics.collisions;
+
+import fr.insalyon.mxyns.collinsa.physics.Physics;
+import fr.insalyon.mxyns.collinsa.physics.SparseChunkGrid;
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Broad phase du Collider : structure mise à jour une fois par tick qui élimine rapidement les paires d'entités qui ne peuvent pas être en collision.
+ * Seules les paires qu'elle renvoie sont testées par la narrow phase (checkForCollision)
+ */
+public interface Broadphase {
+
+    /**
+     * Met à jour la structure à partir des entités de la simulation, en début de détection
+     * @param entities entités de la simulation
+     */
+    void update(Iterable<Entity> entities);
+
+    /**
+     * Vide la structure
+     */
+    void clear();
+
+    /**
+     * Appelle 'consumer' avec (entity, voisine) pour chaque entité voisine de 'entity' lors de la dernière mise à jour.
+     * Chaque voisine n'est donnée qu'une seule fois et 'entity' n'est jamais sa propre voisine
+     *
+     * @param entity entité dont on cherche les voisines
+     * @param consumer action à effectuer sur chaque couple (entity, voisine)
+     */
+    void forEachNearby(Entity entity, BiConsumer<Entity, Entity> consumer);
+
+    /**
+     * Appelle 'consumer' une seule fois pour chaque paire non-ordonnée d'entités potentiellement en collision
+     * @param consumer action à effectuer sur chaque paire
+     */
+    void forEachPair(BiConsumer<Entity, Entity> consumer);
+
+    /**
+     * Enum listant les broad phases disponibles et permettant de les choisir à partir de leur nom (paramètre --broadphase)
+     */
+    enum EBroadphase {
+
+        GRID(Physics::getChunkGrid),
+        SAP(physics -> new SweepAndPrune()),
+        TREE(physics -> new DynamicTree()),
+        SPARSE(physics -> new SparseChunkGrid(physics.getChunkSize().x, physics.getChunkSize().y));
+
+        private final Function<Physics, Broadphase> factory;
+
+        EBroadphase(Function<Physics, Broadphase> factory) {
+
+            this.factory = factory;
+        }
+
+        /**
+         * Crée (ou récupère) la broad phase pour une simulation
+         * @param physics simulation à laquelle la broad phase est destinée
+         * @return broad phase
+         */
+        public Broadphase create(Physics physics) {
+
+            return factory.apply(physics);
+        }
+
+        /**
+         * Trouve une broad phase à partir de son nom, sans tenir compte de la casse
+         * @param name nom de la broad phase
+         * @return la broad phase correspondante, null si elle n'existe pas
+         */
+        public static EBroadphase fromName(String name) {
+
+            for (EBroadphase broadphase : EBroadphase.values())
+                if (broadphase.name().toLowerCase().equals(name.toLowerCase()))
+                    return broadphase;
+
+            return null;
+        }
+    }
+}
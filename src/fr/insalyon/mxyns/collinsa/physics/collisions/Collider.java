@@ -5,14 +5,16 @@ import fr.insalyon.mxyns.collinsa.physics.entities.Circle;
 import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
 import fr.insalyon.mxyns.collinsa.physics.entities.Polygon;
 import fr.insalyon.mxyns.collinsa.physics.entities.Rect;
+import fr.insalyon.mxyns.collinsa.threads.WorkerPool;
 import fr.insalyon.mxyns.collinsa.utils.geo.Geometry;
 
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
-import java.util.Set;
-import java.util.TreeSet;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 
 /**
  * Moteur de collisions, détecte et calcule les conséquences des collisions entre objets
@@ -36,8 +38,53 @@ public class Collider {
 
     /**
      * Liste des dernières collisions détectées
+     * Une simple ArrayList suffit puisque la broad phase ne donne chaque paire d'entités qu'une seule fois par tick, et qu'elle n'est remplie que par le thread appelant (les threads de la narrow phase écrivent dans leurs propres tampons)
      */
-    private final LinkedHashSet<Collision> collisions;
+    private final ArrayList<Collision> collisions;
+
+    /**
+     * Réserve des collisions détectées par le thread appelant. Chaque bloc de la narrow phase parallèle a sa propre réserve
+     */
+    private final CollisionPool collisionPool = new CollisionPool();
+
+    /**
+     * Plus grand nombre de collisions détectées lors d'un tick
+     */
+    private int collisionHighWaterMark;
+
+    /**
+     * Détermine si les collisions sont résolues avec des impulsions accumulées, initialisées avec celles du tick précédent (warm starting)
+     * @see ContactCache
+     */
+    private boolean warmStarting = false;
+
+    /**
+     * Impulsions accumulées aux points de contact lors du tick précédent
+     */
+    private final ContactCache contactCache = new ContactCache();
+
+    /**
+     * Nombre de passes du solveur à impulsions séquentielles sur toutes les collisions d'un tick.
+     * 0 <=> pas d'impulsions accumulées : une seule impulsion de rebond et de frottements par contact
+     */
+    private int solverIterations = 4;
+
+    /**
+     * Détermine si les entités rapides sont traitées par la détection continue des collisions, pour qu'elles ne traversent pas les entités fines
+     * @see ContinuousDetection
+     */
+    private boolean continuousDetection = false;
+
+    /**
+     * Détection continue des collisions des entités rapides
+     */
+    private final ContinuousDetection continuous = new ContinuousDetection();
+
+    /**
+     * Résolution chronologique des collisions, utilisée si preciseResolution
+     * @see EventSolver
+     */
+    private final EventSolver eventSolver = new EventSolver();
 
     /**
      * Tableau regroupant les méthodes à utiliser pour checker les collisions entre chaque type d'entité. La position dans la table est donnée par le cardinal de la classe de l'entité
@@ -49,6 +96,67 @@ public class Collider {
         { (p, c) -> checkForCirclePolyCollision(c, p), this::checkForPolyPolyCollision, this::checkForPolyPolyCollision } // Polygon
     };
 
+    /**
+     * Référence unique vers checkForCollision, pour ne pas créer de nouvelle lambda à chaque parcours des paires
+     */
+    private final BiConsumer<Entity, Entity> narrowPhase = this::checkForCollision;
+
+    /**
+     * Nombre de paires testées par bloc de la narrow phase parallèle
+     */
+    private static final int NARROW_PHASE_GRAIN = 256;
+
+    /**
+     * Paires données par la broad phase, rangées à la suite (entité A, entité B, ...) pour être réparties entre les threads. Réutilisé d'un tick à l'autre
+     */
+    private Entity[] pairs = new Entity[0];
+
+    /**
+     * Nombre de paires dans 'pairs'
+     */
+    private int pairCount;
+
+    /**
+     * Détermine si les paires de 'pairs' sont gardées pour être testées à nouveau (sous-pas, checkForRetainedPairs)
+     */
+    private boolean pairsRetained;
+
+    /**
+     * Référence unique vers la méthode qui range une paire dans 'pairs'
+     */
+    private final BiConsumer<Entity, Entity> pairCollector = this::collectPair;
+
+    /**
+     * Référence unique vers la méthode qui range une paire dans 'pairs' sans l'écarter, pour les paires gardées
+     */
+    private final BiConsumer<Entity, Entity> pairRetainer = this::retainPair;
+
+    /**
+     * Tampons de la narrow phase parallèle, un par bloc de paires. Fusionnés dans l'ordre des blocs, le résultat est donc le même qu'en séquentiel
+     */
+    private NarrowPhaseBuffer[] blockBuffers = new NarrowPhaseBuffer[0];
+
+    /**
+     * Tampon du bloc traité par le thread courant, null en dehors de la narrow phase parallèle
+     */
+    private final ThreadLocal<NarrowPhaseBuffer> currentBuffer = new ThreadLocal<>();
+
+    /**
+     * Référence unique vers le traitement d'un bloc de paires
+     */
+    private final IntConsumer narrowPhaseBlock = this::checkBlock;
+
+    /**
+     * Solveur répartissant la résolution des collisions en îlots indépendants, résolus en parallèle
+     */
+    private final IslandSolver islandSolver = new IslandSolver();
+
+    /**
+     * Broad phase utilisée pour trouver les paires d'entités à tester. Par défaut la grille de chunks de la simulation
+     * @see Broadphase
+     */
+    private Broadphase broadphase;
+
     /**
      * Crée un Collider et lui associe une simulation (Physics)
      *
@@ -57,42 +165,281 @@ public class Collider {
     public Collider(Physics physics) {
 
         this.physics = physics;
-        this.collisions = new LinkedHashSet<>();
+        this.collisions = new ArrayList<>();
+    }
+
+    /**
+     * Trouve la plage de chunks couverte par l'AABB d'une entité, sans allocation
+     *
+     * @param e entité pour laquelle trouver les chunks
+     * @param range tableau d'au moins 4 cases dans lequel écrire (minX, minY, maxX, maxY)
+     *
+     * @return range
+     */
+    public int[] getChunksContaining(Entity e, int[] range) {
+
+        physics.getChunkGrid().computeRange(e.getAABB(), range, 0);
+        return range;
+    }
+
+    /**
+     * Appelle 'consumer' avec (e, voisine) pour chaque entité proche (proches <=> avec lesquelles une collision est
+     * envisageable <=> dans un des chunks couverts par l'AABB de 'e') de l'entité 'e', ainsi que pour chaque entité statique qui la touche.
+     * Chaque voisine n'est donnée qu'une fois.
+     * N'alloue rien, à condition de ne pas créer de lambda à chaque appel
+     *
+     * @param e entité pour laquelle il faut trouver les entités voisines
+     * @param consumer action à effectuer sur chaque couple (e, voisine)
+     */
+    public void forEachNearby(Entity e, BiConsumer<Entity, Entity> consumer) {
+
+        broadphase.forEachNearby(e, consumer);
+        physics.getStaticTree().forEachNearby(e, consumer);
+    }
+
+    /**
+     * Détermine s'il y a collision pour chaque paire d'entités proches. Chaque paire non-ordonnée n'est testée qu'une fois par tick
+     * Les collisions détectées sont enregistrées dans le registre des collisions
+     *
+     * Si la simulation dispose de plusieurs threads, les paires sont d'abord rangées dans un tableau puis découpées en blocs testés en parallèle.
+     * Chaque bloc écrit dans son propre tampon (collisions détectées, événements aabbCollided à envoyer), les tampons sont ensuite fusionnés
+     * dans l'ordre des blocs sur le thread appelant : les listeners sont donc toujours appelés depuis ce thread, dans le même ordre qu'en séquentiel.
+     * Les couleurs de debug étant écrites sur les entités au fil des tests, la narrow phase reste séquentielle lorsqu'elles sont affichées.
+     *
+     * Les entités statiques ne sont pas dans la broad phase : chaque entité éveillée cherche les entités statiques qu'elle touche dans leur arbre,
+     * les paires statique / statique ne sont donc jamais générées.
+     * Les paires dont aucune entité ne peut bouger (endormies, ou endormie et cinématique immobile) ne sont pas testées.
+     * Une fois toutes les paires testées, les entités endormies touchées par une entité éveillée sont réveillées avec leur îlot
+     */
+    public void checkForCollisions() {
+
+        checkForCollisions(false);
+    }
+
+    /**
+     * Détermine s'il y a collision pour chaque paire d'entités proches, comme checkForCollisions().
+     * Si 'retainPairs' est vrai, les paires données par la broad phase sont gardées jusqu'à releasePairs : les sous-pas suivants du tick
+     * les testent à nouveau (checkForRetainedPairs) sans repasser par la broad phase.
+     * Les paires gardées viennent des AABB élargies au trajet du tick (Physics.fattenAABBs), qui sont rendues exactes avant la narrow phase.
+     * Elles sont toutes gardées, y compris celles des entités endormies qui peuvent être réveillées en cours de tick :
+     * les paires au repos ou résolues en mode précis sont écartées à chaque sous-pas par la narrow phase
+     *
+     * @param retainPairs true pour garder les paires
+     */
+    public void checkForCollisions(boolean retainPairs) {
+
+        if (retainPairs) {
+
+            pairCount = 0;
+            broadphase.forEachPair(pairRetainer);
+            forEachStaticPair(pairRetainer, true);
+            pairsRetained = true;
+            physics.restoreAABBs();
+            checkCollectedPairs();
+
+        } else if (!physics.getWorkerPool().isParallel() || displayCollisionColor) {
+            broadphase.forEachPair(narrowPhase);
+            forEachStaticPair(narrowPhase, false);
+        } else {
+
+            pairCount = 0;
+            broadphase.forEachPair(pairCollector);
+            forEachStaticPair(pairCollector, false);
+            checkCollectedPairs();
+            Arrays.fill(pairs, 0, 2 * pairCount, null);
+        }
+
+        wakeUpCollided();
+    }
+
+    /**
+     * Teste à nouveau les paires gardées par checkForCollisions(true), sans broad phase. Les paires dont une entité a été retirée de la simulation sont oubliées
+     */
+    public void checkForRetainedPairs() {
+
+        if (!pairsRetained)
+            return;
+
+        int kept = 0;
+        for (int p = 0; p < pairCount; ++p)
+            if (pairs[2 * p].isActivated() && pairs[2 * p + 1].isActivated()) {
+                pairs[2 * kept] = pairs[2 * p];
+                pairs[2 * kept + 1] = pairs[2 * p + 1];
+                ++kept;
+            }
+        Arrays.fill(pairs, 2 * kept, 2 * pairCount, null);
+        pairCount = kept;
+
+        checkCollectedPairs();
+        wakeUpCollided();
+    }
+
+    /**
+     * Oublie les paires gardées par checkForCollisions(true)
+     */
+    public void releasePairs() {
+
+        Arrays.fill(pairs, 0, 2 * pairCount, null);
+        pairCount = 0;
+        pairsRetained = false;
+    }
+
+    /**
+     * Réveille les entités endormies touchées lors de la narrow phase, avec leur îlot
+     */
+    private void wakeUpCollided() {
+
+        for (int c = 0, count = collisions.size(); c < count; ++c) {
+            collisions.get(c).getReference().wakeUp();
+            collisions.get(c).getIncident().wakeUp();
+        }
+    }
+
+    /**
+     * Narrow phase des paires rangées dans 'pairs', en parallèle si la simulation dispose de plusieurs threads
+     */
+    private void checkCollectedPairs() {
+
+        if (!physics.getWorkerPool().isParallel() || displayCollisionColor) {
+            for (int p = 0; p < pairCount; ++p)
+                checkForCollision(pairs[2 * p], pairs[2 * p + 1]);
+            return;
+        }
+
+        int blockCount = WorkerPool.blockCount(pairCount, NARROW_PHASE_GRAIN);
+        if (blockBuffers.length < blockCount) {
+            int oldLength = blockBuffers.length;
+            blockBuffers = Arrays.copyOf(blockBuffers, blockCount);
+            for (int b = oldLength; b < blockCount; ++b)
+                blockBuffers[b] = new NarrowPhaseBuffer();
+        }
+
+        physics.getWorkerPool().forEachBlock(blockCount, narrowPhaseBlock);
+
+        for (int b = 0; b < blockCount; ++b) {
+
+            NarrowPhaseBuffer buffer = blockBuffers[b];
+            collisions.addAll(buffer.collisions);
+
+            for (int e = 0; e < buffer.aabbCollided.size(); e += 2)
+                notifyAabbCollided(buffer.aabbCollided.get(e), buffer.aabbCollided.get(e + 1));
+
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Appelle 'consumer' avec (entité, statique) pour chaque entité éveillée (ou endormie si 'withSleeping') dont l'AABB chevauche celle d'une entité statique
+     * @param consumer action à effectuer sur chaque paire
+     * @param withSleeping true pour inclure les entités endormies
+     */
+    private void forEachStaticPair(BiConsumer<Entity, Entity> consumer, boolean withSleeping) {
+
+        StaticTree staticTree = physics.getStaticTree();
+        if (staticTree.getEntityCount() == 0)
+            return;
+
+        for (Entity entity : physics.getEntities())
+            if (withSleeping || !entity.isSleeping())
+                staticTree.forEachOverlapping(entity, consumer);
+    }
+
+    /**
+     * Range une paire donnée par la broad phase dans 'pairs', sauf si elle n'a pas besoin d'être testée
+     * @param entity 1ère entité
+     * @param target 2ème entité
+     */
+    private void collectPair(Entity entity, Entity target) {
+
+        if (isResting(entity, target) || isHandledByEvents(entity, target))
+            return;
+
+        retainPair(entity, target);
+    }
+
+    /**
+     * Range une paire donnée par la broad phase dans 'pairs'
+     * @param entity 1ère entité
+     * @param target 2ème entité
+     */
+    private void retainPair(Entity entity, Entity target) {
+
+        if (2 * pairCount + 2 > pairs.length)
+            pairs = Arrays.copyOf(pairs, Math.max(64, 2 * pairs.length));
+
+        pairs[2 * pairCount] = entity;
+        pairs[2 * pairCount + 1] = target;
+        ++pairCount;
+    }
+
+    /**
+     * Teste les paires d'un bloc, en écrivant dans le tampon de ce bloc. Exécuté par un des threads de la simulation
+     * @param block numéro du bloc
+     */
+    private void checkBlock(int block) {
+
+        currentBuffer.set(blockBuffers[block]);
+
+        for (int p = block * NARROW_PHASE_GRAIN, end = Math.min(pairCount, p + NARROW_PHASE_GRAIN); p < end; ++p)
+            checkForCollision(pairs[2 * p], pairs[2 * p + 1]);
+
+        currentBuffer.remove();
     }
 
     /**
-     * Trouve tous les chunks contenant une entité
+     * Renvoie le solveur par îlots du Collider
      *
-     * @param e entité pour laquelle trouver dans les chunks
+     * @return islandSolver
+     */
+    public IslandSolver getIslandSolver() {
+
+        return islandSolver;
+    }
+
+    /**
+     * Renvoie la broad phase utilisée par le Collider
      *
-     * @return Set of Chunk ids
+     * @return broadphase
      */
-    public Set<Integer> getChunksContaining(Entity e) {
+    public Broadphase getBroadphase() {
 
-        AABB aabb = e.getAABB();
-        Set<Integer> chunksToAddEntityTo = new TreeSet<>();
+        return broadphase;
+    }
 
-        //TopLeft
-        chunksToAddEntityTo.add(physics.getPositionHash(aabb.x, aabb.y));
+    /**
+     * Change la broad phase utilisée par le Collider. La nouvelle broad phase sera remplie lors de la prochaine mise à jour (spatialHashing)
+     *
+     * @param broadphase nouvelle broad phase
+     */
+    public void setBroadphase(Broadphase broadphase) {
 
-        //TopRight
-        chunksToAddEntityTo.add(physics.getPositionHash(aabb.x + aabb.w, aabb.y));
+        if (this.broadphase != null)
+            this.broadphase.clear();
 
-        //BottomRight
-        chunksToAddEntityTo.add(physics.getPositionHash(aabb.x + aabb.w, aabb.y + aabb.h));
+        this.broadphase = broadphase;
+    }
 
-        //BottomLeft
-        chunksToAddEntityTo.add(physics.getPositionHash(aabb.x, aabb.y + aabb.h));
+    /**
+     * Change la broad phase utilisée par le Collider à partir de son nom (paramètre --broadphase)
+     * @see Broadphase.EBroadphase
+     *
+     * @param name nom de la broad phase (grid, sap, tree, sparse)
+     */
+    public void setBroadphase(String name) {
 
-        // Center
-        chunksToAddEntityTo.add(physics.getPositionHash(e.getPos()));
+        Broadphase.EBroadphase type = Broadphase.EBroadphase.fromName(name);
+        if (type == null) {
+            System.out.println("Unknown broadphase : " + name + ". Keeping " + broadphase);
+            return;
+        }
 
-        return chunksToAddEntityTo;
+        setBroadphase(type.create(physics));
     }
 
     /**
-     * Trouve toutes les entités proches (proches <=> avec lesquelles une collision est envisageable <=> dans un chunk
-     * voisin de celui de 'e') de l'entité 'e'
+     * Trouve toutes les entités proches de l'entité 'e' et les renvoie dans un Set
+     * Alloue un Set à chaque appel, à réserver aux usages ponctuels (outils de l'interface par exemple)
+     * @see Collider#forEachNearby
      *
      * @param e entité pour laquelle il faut trouver les entités voisines
      *
@@ -100,17 +447,8 @@ public class Collider {
      */
     public LinkedHashSet<Entity> getNearbyEntities(Entity e) {
 
-        // On ne veut pas de doublons, et on parcourera la liste sans accès aléatoire
-        // LinkedHashSet est donc un bon candidat
-        // Il faut trouver une bonne fonction de hashing encore une fois. Sinon c'est pas rapide.
         LinkedHashSet<Entity> nearby = new LinkedHashSet<>();
-        Set<Integer> chunksId = getChunksContaining(e);
-
-        for (int chunkId : chunksId)
-            if (chunkId >= 0 && chunkId < physics.getTotalChunkCount())
-                nearby.addAll(physics.getChunks().get(chunkId).entities);
-
-        nearby.remove(e);
+        forEachNearby(e, (self, other) -> nearby.add(other));
 
         return nearby;
     }
@@ -143,6 +481,9 @@ public class Collider {
      */
     public void checkForCollision(Entity entity, Entity target) {
 
+        if (isResting(entity, target) || isHandledByEvents(entity, target))
+            return;
+
         if (entity.getCollisionType() == Collision.CollisionType.IGNORE || target.getCollisionType() == Collision.CollisionType.IGNORE) {
 
             if (displayCollisionColor) {
@@ -163,8 +504,18 @@ public class Collider {
 
         } else {
 
-            for (CollisionListener listener : entity.getCollisionListeners())
-                listener.aabbCollided(entity, target);
+            // Chaque paire n'est testée qu'une fois, on prévient donc les listeners des deux entités
+            // On évite de créer un itérateur pour rien, la plupart des entités n'ont pas de listeners
+            if (!entity.getCollisionListeners().isEmpty() || !target.getCollisionListeners().isEmpty()) {
+
+                // Dans la narrow phase parallèle, l'événement est envoyé plus tard depuis le thread appelant
+                NarrowPhaseBuffer buffer = currentBuffer.get();
+                if (buffer != null) {
+                    buffer.aabbCollided.add(entity);
+                    buffer.aabbCollided.add(target);
+                } else
+                    notifyAabbCollided(entity, target);
+            }
 
             if (displayCollisionColor) {
                 entity.setOutlineColor(Color.pink);
@@ -176,6 +527,48 @@ public class Collider {
         }
     }
 
+    /**
+     * Détermine si la paire a déjà été résolue pendant le tick par la résolution chronologique
+     * @param entity 1ère entité
+     * @param target 2ème entité
+     * @return true si la paire n'a pas besoin d'être testée
+     */
+    private boolean isHandledByEvents(Entity entity, Entity target) {
+
+        return preciseResolution && eventSolver.handles(entity, target);
+    }
+
+    /**
+     * Détermine si aucune des deux entités ne peut bouger : l'une est endormie et l'autre est endormie ou cinématique et immobile
+     * @param entity 1ère entité
+     * @param target 2ème entité
+     * @return true si la paire n'a pas besoin d'être testée
+     */
+    private static boolean isResting(Entity entity, Entity target) {
+
+        if (entity.isSleeping())
+            return target.isSleeping() || target.isKinematic() && target.getVel().x == 0 && target.getVel().y == 0 && target.getAngVel() == 0;
+
+        if (target.isSleeping())
+            return entity.isKinematic() && entity.getVel().x == 0 && entity.getVel().y == 0 && entity.getAngVel() == 0;
+
+        return false;
+    }
+
+    /**
+     * Prévient les listeners des deux entités que leurs AABB sont en intersection
+     * @param entity 1ère entité
+     * @param target 2ème entité
+     */
+    private void notifyAabbCollided(Entity entity, Entity target) {
+
+        for (CollisionListener listener : entity.getCollisionListeners())
+            listener.aabbCollided(entity, target);
+
+        for (CollisionListener listener : target.getCollisionListeners())
+            listener.aabbCollided(target, entity);
+    }
+
     /**
      * Méthode enregistrant une collision entre deux cercles si elle a bien lieu
      * @param entity premier cercle pour la vérification
@@ -240,14 +633,19 @@ public class Collider {
     }
 
     /**
-     * Ajoute une collision au registre des collisions détectée lors du tick
+     * Ajoute une collision au registre des collisions détectée lors du tick (ou au tampon du bloc en cours dans la narrow phase parallèle)
      * @param reference première entité impliquée dans la collision
      * @param incident deuxième entité impliquée dans la collision
      * @param resolvingFunction fonction qui sera utilisée pour la résolution de la collision
      */
     public void logCollision(Entity reference, Entity incident, Function<Collision, Boolean> resolvingFunction) {
 
-        collisions.add(new Collision(reference, incident, resolvingFunction));
+        NarrowPhaseBuffer buffer = currentBuffer.get();
+        Collision collision = (buffer != null ? buffer.pool : collisionPool).obtain(reference, incident, resolvingFunction);
+        collision.sequentialImpulses = solverIterations > 0;
+        collision.contactCache = warmStarting && solverIterations > 0 ? contactCache : null;
+
+        (buffer != null ? buffer.collisions : collisions).add(collision);
     }
 
     // TODO use for raycasting
@@ -260,17 +658,148 @@ public class Collider {
      * Renvoie le registre des collisions détectées lors du tick
      * @return collisions
      */
-    public LinkedHashSet<Collision> getRegisteredCollision() {
+    public ArrayList<Collision> getRegisteredCollision() {
 
         return this.collisions;
     }
 
     /**
-     * Vide le registre des collisions
+     * Vide le registre des collisions et rend les collisions à leurs réserves
      */
     public void clearCollisions() {
 
+        collisionHighWaterMark = Math.max(collisionHighWaterMark, collisions.size());
+        if (warmStarting)
+            contactCache.store(collisions);
+
         this.collisions.clear();
+
+        collisionPool.reset();
+        for (NarrowPhaseBuffer buffer : blockBuffers)
+            buffer.pool.reset();
+    }
+
+    /**
+     * Informe si les collisions sont résolues avec warm starting
+     * @return warmStarting
+     */
+    public boolean isWarmStarting() {
+
+        return warmStarting;
+    }
+
+    /**
+     * Active ou désactive le warm starting. Sans warm starting, les impulsions accumulées repartent de zéro à chaque tick
+     * @param warmStarting true pour réutiliser les impulsions du tick précédent
+     */
+    public void setWarmStarting(boolean warmStarting) {
+
+        this.warmStarting = warmStarting;
+        contactCache.clear();
+    }
+
+    /**
+     * Renvoie le nombre de passes du solveur à impulsions séquentielles
+     * @return solverIterations
+     */
+    public int getSolverIterations() {
+
+        return solverIterations;
+    }
+
+    /**
+     * Change le nombre de passes du solveur à impulsions séquentielles, pris en compte dès le tick suivant.
+     * Plus de passes donnent des piles plus stables sans augmenter la fréquence de mise à jour, mais coûtent plus cher à chaque tick
+     * @param solverIterations nombre de passes, 0 pour une seule impulsion de rebond et de frottements par contact
+     */
+    public void setSolverIterations(int solverIterations) {
+
+        this.solverIterations = Math.max(0, solverIterations);
+    }
+
+    /**
+     * Informe si les entités rapides sont traitées par la détection continue des collisions
+     * @return continuousDetection
+     */
+    public boolean isContinuousDetection() {
+
+        return continuousDetection;
+    }
+
+    /**
+     * Active ou désactive la détection continue des collisions des entités rapides, prise en compte dès l'intégration suivante
+     * @param continuousDetection true pour chercher l'instant d'impact des entités qui se déplacent de plus d'une fraction de leur taille en un tick
+     */
+    public void setContinuousDetection(boolean continuousDetection) {
+
+        this.continuousDetection = continuousDetection;
+    }
+
+    /**
+     * Renvoie la détection continue des collisions du Collider
+     * @return continuous
+     */
+    public ContinuousDetection getContinuousDetection() {
+
+        return continuous;
+    }
+
+    /**
+     * Informe si les collisions sont résolues dans l'ordre chronologique
+     * @return preciseResolution
+     */
+    public boolean isPreciseResolution() {
+
+        return preciseResolution;
+    }
+
+    /**
+     * Active ou désactive la résolution chronologique des collisions, prise en compte dès le tick suivant
+     * @param preciseResolution true pour résoudre les collisions des cercles dynamiques à l'instant où elles ont lieu pendant le tick
+     */
+    public void setPreciseResolution(boolean preciseResolution) {
+
+        this.preciseResolution = preciseResolution;
+    }
+
+    /**
+     * Renvoie la résolution chronologique des collisions du Collider
+     * @return eventSolver
+     */
+    public EventSolver getEventSolver() {
+
+        return eventSolver;
+    }
+
+    /**
+     * Renvoie le cache des impulsions aux points de contact
+     * @return contactCache
+     */
+    public ContactCache getContactCache() {
+
+        return contactCache;
+    }
+
+    /**
+     * Renvoie le plus grand nombre de collisions détectées lors d'un tick, pour dimensionner les réserves
+     * @return collisionHighWaterMark
+     */
+    public int getCollisionHighWaterMark() {
+
+        return collisionHighWaterMark;
+    }
+
+    /**
+     * Renvoie le nombre de Collision allouées par les réserves du Collider depuis sa création. N'augmente plus une fois les réserves assez grandes
+     * @return nombre d'allocations
+     */
+    public long getCollisionAllocationCount() {
+
+        long allocationCount = collisionPool.getAllocationCount();
+        for (NarrowPhaseBuffer buffer : blockBuffers)
+            allocationCount += buffer.pool.getAllocationCount();
+
+        return allocationCount;
     }
 
     /**
@@ -298,8 +827,35 @@ public class Collider {
         this.displayCollisionColor = displayCollisionColor;
     }
 
+    /**
+     * Tampon d'un bloc de la narrow phase parallèle
+     */
+    private static class NarrowPhaseBuffer {
+
+        /**
+         * Collisions détectées dans le bloc
+         */
+        final ArrayList<Collision> collisions = new ArrayList<>();
+
+        /**
+         * Paires (entité, cible) dont les AABB sont en intersection et dont au moins une entité a des listeners
+         */
+        final ArrayList<Entity> aabbCollided = new ArrayList<>();
+
+        /**
+         * Réserve des collisions du bloc, vidée avec le registre des collisions (elles y restent après la fusion)
+         */
+        final CollisionPool pool = new CollisionPool();
+
+        void clear() {
+
+            collisions.clear();
+            aabbCollided.clear();
+        }
+    }
+
     public String toString() {
 
-        return "Collider[JumpTable=Mat[" + collisionChecksJumpTable.length + "x" + collisionChecksJumpTable[0].length + "], displayCollisionColor=" + this.displayCollisionColor + ", preciseCollisionResolution=" + this.preciseResolution + "]";
+        return "Collider[JumpTable=Mat[" + collisionChecksJumpTable.length + "x" + collisionChecksJumpTable[0].length + "], displayCollisionColor=" + this.displayCollisionColor + ", preciseCollisionResolution=" + this.preciseResolution + ", broadphase=" + broadphase + "]";
     }
 }
\ No newline at end of file
@@ -1,10 +1,12 @@
 package fr.insalyon.mxyns.collinsa.physics.collisions;
 
+import fr.insalyon.mxyns.collinsa.physics.Material;
 import fr.insalyon.mxyns.collinsa.physics.Physics;
 import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
-import fr.insalyon.mxyns.collinsa.utils.Utils;
 import fr.insalyon.mxyns.collinsa.utils.geo.Vec2f;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.function.Function;
 
 /**
@@ -25,20 +27,82 @@ public class Collision {
      */
     Function<Collision, Boolean> manifoldFunction;
 
+    /**
+     * Nombre maximal de points de contact d'une collision
+     */
+    public static final int MAX_CONTACTS = 2;
+
     /**
      * Normale à la surface de la collision de l'incident vers la référence
      */
-    public Vec2f normal;
+    public final Vec2f normal = Vec2f.zero();
 
     /**
-     * Vecteurs allant du centre de l'entité vers le point de contact (pour chaque point de contact).
+     * Vecteurs allant du centre de l'entité vers le point de contact (pour chaque point de contact). Seules les 'contactCount' premières cases sont valides
      */
-    public Vec2f[] centerToContactReference, centerToContactIncident;
+    public final Vec2f[] centerToContactReference = Vec2f.arrayOf(MAX_CONTACTS), centerToContactIncident = Vec2f.arrayOf(MAX_CONTACTS);
 
     /**
      * Tableau des pénétrations (pour chaque point de contact)
      */
-    public float[] penetrations;
+    public final float[] penetrations = new float[MAX_CONTACTS];
+
+    /**
+     * Identifiant de chaque point de contact (face / sommet dont il provient), donné par la fonction de manifold pour retrouver le contact d'un tick à l'autre
+     */
+    public final int[] features = new int[MAX_CONTACTS];
+
+    /**
+     * Nombre de points de contact calculés par la fonction de manifold
+     */
+    public int contactCount;
+
+    /**
+     * Impulsions normales et tangentielles accumulées à chaque point de contact, conservées d'un tick à l'autre par le ContactCache
+     */
+    public final float[] normalImpulses = new float[MAX_CONTACTS], tangentImpulses = new float[MAX_CONTACTS];
+
+    /**
+     * Vitesse normale à atteindre à chaque point de contact (rebond, selon la vitesse avant résolution)
+     */
+    private final float[] velocityBias = new float[MAX_CONTACTS];
+
+    /**
+     * Tangente à la surface de la collision (normale tournée de -90°), direction des impulsions tangentielles
+     */
+    private final Vec2f tangent = Vec2f.zero();
+
+    /**
+     * Coefficients de frottements statique et dynamique entre les deux entités
+     */
+    private float staticFriction, dynamicFriction;
+
+    /**
+     * Détermine si la collision est résolue par impulsions séquentielles (impulsions accumulées, plusieurs passes avec resolveAll).
+     * Sinon, chaque contact reçoit une seule impulsion de rebond et de frottements
+     */
+    boolean sequentialImpulses;
+
+    /**
+     * Cache de contacts utilisé pour le warm starting, null si les impulsions accumulées partent de zéro
+     */
+    ContactCache contactCache;
+
+    /**
+     * Informe si la collision a été préparée et doit être résolue (resolveAll)
+     */
+    private boolean prepared;
+
+    /**
+     * Vitesse d'approche en dessous de laquelle un contact ne rebondit pas (m/s), pour que les objets posés ne sautillent pas
+     */
+    private static final float RESTITUTION_THRESHOLD = 0.5f;
+
+    /**
+     * Avec les impulsions séquentielles (solverIterations > 0), pénétration tolérée (m) et part de la pénétration restante corrigée à chaque tick. Les entités posées restent
+     * légèrement en contact au lieu d'être séparées exactement, leurs points de contact persistent donc d'un tick à l'autre
+     */
+    private static final float PENETRATION_SLOP = 0.01f, POSITION_CORRECTION = 0.8f;
 
     /**
      * Type résultant de la collision, assigné au moment où resolve est appelée, utilisée dans les méthodes de résolutions de collisions
@@ -59,67 +123,130 @@ public class Collision {
     }
 
     /**
-     * Execute la fonction de resolution
+     * Réutilise la collision pour une nouvelle paire d'entités (CollisionPool)
+     * @param reference première entité impliquée dans la collision
+     * @param incident deuxième entité impliquée dans la collision
+     * @param manifoldFunction fonction utilisée pour la résolution de la collision
      */
-    public void resolve() {
+    void set(Entity reference, Entity incident, Function<Collision, Boolean> manifoldFunction) {
 
-        // Une collision entre deux éléments cinématiques ne doit pas être résolue puisqu'ils ignorent les modifications de position/vitesse/accélération/... causées par les autres éléments
-        // On évite donc des calculs inutiles puisque les résultats ne seront pas utilisés. Par contre, on peut réagir à la détection de la collision (utilisation d'objets comme trigger box par exemple)
-        if (reference.isActivated() && incident.isActivated() && (type = CollisionType.resultingType(reference.getCollisionType(), incident.getCollisionType())) != CollisionType.IGNORE) {
+        this.reference = reference;
+        this.incident = incident;
+        this.manifoldFunction = manifoldFunction;
+        this.type = null;
+        this.contactCount = 0;
+        this.sequentialImpulses = false;
+        this.contactCache = null;
+        this.prepared = false;
+    }
 
-            // Generate manifold. If collision detection & resolution fails, apply returns false and collision is skipped
-            if (manifoldFunction.apply(this)) {
+    /**
+     * Ajoute un point de contact, dont les vecteurs centre -> contact sont remis à zéro pour être remplis par la fonction de manifold
+     * @param penetration pénétration au point de contact
+     * @param feature identifiant du point de contact, stable d'un tick à l'autre tant que le contact persiste
+     * @return indice du point de contact
+     */
+    public int addContact(float penetration, int feature) {
 
-                // Notify listeners of collision detection
-                for (CollisionListener listener : reference.getCollisionListeners())
-                    listener.collisionDectected(reference, incident, this);
+        centerToContactReference[contactCount].set(0f, 0f);
+        centerToContactIncident[contactCount].set(0f, 0f);
+        penetrations[contactCount] = penetration;
+        features[contactCount] = feature;
 
-                for (CollisionListener listener : incident.getCollisionListeners())
-                    listener.collisionDectected(incident, reference, this);
+        return contactCount++;
+    }
 
-                // Facteur 2 si un des deux objets est cinématique puisque l'énergie qu'il ne récupère pas en ignorant les effets de la collision doit être transmise à l'autre objet
-                int contactCount = centerToContactIncident.length;
+    /**
+     * Renvoie la plus grande pénétration parmi les points de contact
+     * @return pénétration maximale
+     */
+    public float getMaxPenetration() {
 
-                if (contactCount == 0) {
-                    System.out.println("[Collisions.resolve] no penetration, skip");
-                    return;
-                }
+        float max = penetrations[0];
+        for (int i = 1; i < contactCount; ++i)
+            if (penetrations[i] > max)
+                max = penetrations[i];
+
+        return max;
+    }
+
+    /**
+     * Execute la fonction de resolution
+     */
+    public void resolve() {
 
-                // Push entities away to prevent them from intersecting
-                Physics.displace(reference, incident, normal, Utils.max(penetrations), getType() == CollisionType.KINEMATIC);
+        if (prepare()) {
+            warmStart();
+            solveVelocities();
+            finish();
+        }
+    }
 
-                // Foreach contact
-                for (int i = 0; i < contactCount; ++i) {
+    /**
+     * Résout une liste de collisions en trois phases : toutes les collisions sont préparées (manifold, déplacement, vitesse de rebond visée)
+     * puis les impulsions du tick précédent sont réappliquées, avant que leurs vitesses ne soient résolues. Les vitesses de rebond sont ainsi
+     * calculées avant toute impulsion. Avec warm starting, chaque contact voit ainsi dès le début les impulsions de tous les autres
+     * contacts (une pile transmet son poids jusqu'au sol), ce qui n'est pas le cas en résolvant les collisions une par une.
+     * Les vitesses sont ensuite résolues en 'iterations' passes sur toutes les collisions (Gauss-Seidel) : chaque passe rapproche les impulsions
+     * accumulées de la solution pour l'ensemble des contacts
+     * @param collisions collisions à résoudre, dans l'ordre de résolution
+     * @param iterations nombre de passes de résolution des vitesses (au moins une)
+     */
+    public static void resolveAll(List<Collision> collisions, int iterations) {
 
-                    // Apply bounce-off if non-kinematic
-                    float i_n = Physics.bounceImpulseAmplitude(reference, incident, centerToContactReference[i], centerToContactIncident[i], normal) / contactCount;
+        for (int c = 0, count = collisions.size(); c < count; ++c)
+            collisions.get(c).prepared = collisions.get(c).prepare();
 
-                    if (!reference.isKinematic())
-                        Physics.applyImpulse(reference, centerToContactReference[i], normal.multOut(i_n));
+        for (int c = 0, count = collisions.size(); c < count; ++c)
+            if (collisions.get(c).prepared)
+                collisions.get(c).warmStart();
 
-                    if (!incident.isKinematic())
-                        Physics.applyImpulse(incident, centerToContactIncident[i], normal.multOut(-i_n));
+        for (int k = 0; k < iterations || k == 0; ++k)
+            for (int c = 0, count = collisions.size(); c < count; ++c)
+                if (collisions.get(c).prepared && (k == 0 || collisions.get(c).sequentialImpulses))
+                    collisions.get(c).solveVelocities();
 
-                    // Apply friction
-                    Vec2f frictionImpulse = Physics.frictionImpulseVector(reference, incident, centerToContactReference[i], centerToContactIncident[i], normal, i_n);
-                    if (frictionImpulse != null) {
+        for (int c = 0, count = collisions.size(); c < count; ++c)
+            if (collisions.get(c).prepared)
+                collisions.get(c).finish();
+    }
 
-                        if (!reference.isKinematic())
-                            Physics.applyImpulse(reference, centerToContactReference[i], frictionImpulse);
+    /**
+     * Comme resolveAll(List, int) pour les collisions [from, to[ d'un tableau
+     * @param collisions collisions à résoudre, dans l'ordre de résolution
+     * @param from indice de la première collision
+     * @param to indice suivant la dernière collision
+     * @param iterations nombre de passes de résolution des vitesses (au moins une)
+     */
+    public static void resolveAll(Collision[] collisions, int from, int to, int iterations) {
 
-                        if (!incident.isKinematic())
-                            Physics.applyImpulse(incident, centerToContactIncident[i], frictionImpulse.neg());
-                    }
+        for (int c = from; c < to; ++c)
+            collisions[c].prepared = collisions[c].prepare();
 
-                    // Notify listeners of resolution
-                    for (CollisionListener listener : reference.getCollisionListeners())
-                        listener.collisionResolved(reference, incident, this);
+        for (int c = from; c < to; ++c)
+            if (collisions[c].prepared)
+                collisions[c].warmStart();
 
-                    for (CollisionListener listener : incident.getCollisionListeners())
-                        listener.collisionResolved(incident, reference, this);
-                }
-            }
-        } else {
+        for (int k = 0; k < iterations || k == 0; ++k)
+            for (int c = from; c < to; ++c)
+                if (collisions[c].prepared && (k == 0 || collisions[c].sequentialImpulses))
+                    collisions[c].solveVelocities();
+
+        for (int c = from; c < to; ++c)
+            if (collisions[c].prepared)
+                collisions[c].finish();
+    }
+
+    /**
+     * Première phase de la résolution : calcule le manifold, prévient les listeners de la détection, sépare les entités
+     * et, par impulsions séquentielles, initialise les impulsions accumulées sans les appliquer
+     * @return true si les vitesses doivent être résolues
+     */
+    private boolean prepare() {
+
+        // Une collision entre deux éléments cinématiques ne doit pas être résolue puisqu'ils ignorent les modifications de position/vitesse/accélération/... causées par les autres éléments
+        // On évite donc des calculs inutiles puisque les résultats ne seront pas utilisés. Par contre, on peut réagir à la détection de la collision (utilisation d'objets comme trigger box par exemple)
+        if (!reference.isActivated() || !incident.isActivated() || (type = CollisionType.resultingType(reference.getCollisionType(), incident.getCollisionType())) == CollisionType.IGNORE) {
 
             // Notify listeners of collision ignored
             for (CollisionListener listener : reference.getCollisionListeners())
@@ -127,7 +254,180 @@ public class Collision {
 
             for (CollisionListener listener : incident.getCollisionListeners())
                 listener.collisionIgnored(incident, reference, this);
+
+            return false;
+        }
+
+        // Generate manifold. If collision detection & resolution fails, apply returns false and collision is skipped
+        contactCount = 0;
+        if (!manifoldFunction.apply(this))
+            return false;
+
+        // Notify listeners of collision detection
+        for (CollisionListener listener : reference.getCollisionListeners())
+            listener.collisionDectected(reference, incident, this);
+
+        for (CollisionListener listener : incident.getCollisionListeners())
+            listener.collisionDectected(incident, reference, this);
+
+        if (contactCount == 0) {
+            System.out.println("[Collisions.resolve] no penetration, skip");
+            return false;
+        }
+
+        // Push entities away to prevent them from intersecting
+        if (!sequentialImpulses) {
+            Physics.displace(reference, incident, normal, getMaxPenetration(), getType() == CollisionType.KINEMATIC);
+            return true;
+        }
+
+        Physics.displace(reference, incident, normal, Math.max(getMaxPenetration() - PENETRATION_SLOP, 0f) * POSITION_CORRECTION, getType() == CollisionType.KINEMATIC);
+        prepareImpulses();
+
+        return true;
+    }
+
+    /**
+     * Dernière phase de la résolution : prévient les listeners de la résolution de chaque contact
+     */
+    private void finish() {
+
+        for (int i = 0; i < contactCount; ++i) {
+
+            for (CollisionListener listener : reference.getCollisionListeners())
+                listener.collisionResolved(reference, incident, this);
+
+            for (CollisionListener listener : incident.getCollisionListeners())
+                listener.collisionResolved(incident, reference, this);
+        }
+    }
+
+    /**
+     * Sans impulsions séquentielles : une impulsion de rebond et une impulsion de frottements par contact
+     */
+    private void applyBounceAndFriction() {
+
+        // Foreach contact
+        for (int i = 0; i < contactCount; ++i) {
+
+            // Apply bounce-off if non-kinematic
+            float i_n = Physics.bounceImpulseAmplitude(reference, incident, centerToContactReference[i], centerToContactIncident[i], normal) / contactCount;
+
+            if (!reference.isKinematic())
+                Physics.applyImpulse(reference, centerToContactReference[i], normal.multOut(i_n));
+
+            if (!incident.isKinematic())
+                Physics.applyImpulse(incident, centerToContactIncident[i], normal.multOut(-i_n));
+
+            // Apply friction
+            Vec2f frictionImpulse = Physics.frictionImpulseVector(reference, incident, centerToContactReference[i], centerToContactIncident[i], normal, i_n);
+            if (frictionImpulse != null) {
+
+                if (!reference.isKinematic())
+                    Physics.applyImpulse(reference, centerToContactReference[i], frictionImpulse);
+
+                if (!incident.isKinematic())
+                    Physics.applyImpulse(incident, centerToContactIncident[i], frictionImpulse.neg());
+            }
+        }
+    }
+
+    /**
+     * Prépare la résolution par impulsions séquentielles : calcule la vitesse de rebond visée à chaque contact (avant toute impulsion)
+     * puis initialise les impulsions accumulées, à zéro ou avec celles du tick précédent (ContactCache)
+     */
+    private void prepareImpulses() {
+
+        tangent.set(normal.y, -normal.x);
+        staticFriction = Material.frictionAverage(reference.getMaterial().getStaticFriction(), incident.getMaterial().getStaticFriction());
+        dynamicFriction = Material.frictionAverage(reference.getMaterial().getDynamicFriction(), incident.getMaterial().getDynamicFriction());
+
+        float restitution = Math.min(reference.getMaterial().getRestitution(), incident.getMaterial().getRestitution());
+        for (int i = 0; i < contactCount; ++i) {
+
+            float normalSpeed = Physics.relativeSpeed(reference, incident, centerToContactReference[i], centerToContactIncident[i], normal.x, normal.y);
+            velocityBias[i] = normalSpeed < -RESTITUTION_THRESHOLD ? -restitution * normalSpeed : 0f;
+        }
+
+        if (contactCache == null) {
+            Arrays.fill(normalImpulses, 0f);
+            Arrays.fill(tangentImpulses, 0f);
+            return;
+        }
+
+        contactCache.warmStart(this);
+    }
+
+    /**
+     * Réapplique les impulsions accumulées récupérées du tick précédent (warm starting)
+     */
+    private void warmStart() {
+
+        if (contactCache == null)
+            return;
+
+        for (int i = 0; i < contactCount; ++i)
+            applyContactImpulse(i, normalImpulses[i], tangentImpulses[i]);
+    }
+
+    /**
+     * Une passe de résolution des vitesses sur chaque point de contact (impulsions séquentielles) : l'impulsion calculée est ajoutée
+     * à l'impulsion accumulée, qui est bornée (normale positive, tangentielle dans le cône de Coulomb), seule la différence est appliquée
+     */
+    private void solveVelocities() {
+
+        if (!sequentialImpulses) {
+            applyBounceAndFriction();
+            return;
         }
+
+        for (int i = 0; i < contactCount; ++i) {
+
+            Vec2f rA = centerToContactReference[i], rB = centerToContactIncident[i];
+
+            // Impulsion normale : les entités ne peuvent que se repousser
+            float inverseMassSum = Physics.inverseEffectiveMass(reference, rA, normal.x, normal.y) + Physics.inverseEffectiveMass(incident, rB, normal.x, normal.y);
+            if (inverseMassSum > 0) {
+
+                float lambda = (velocityBias[i] - Physics.relativeSpeed(reference, incident, rA, rB, normal.x, normal.y)) / inverseMassSum;
+                float accumulated = Math.max(normalImpulses[i] + lambda, 0f);
+
+                applyContactImpulse(i, accumulated - normalImpulses[i], 0f);
+                normalImpulses[i] = accumulated;
+            }
+
+            // Impulsion tangentielle : loi de Coulomb F_frottements <= µF_normale(contact)
+            inverseMassSum = Physics.inverseEffectiveMass(reference, rA, tangent.x, tangent.y) + Physics.inverseEffectiveMass(incident, rB, tangent.x, tangent.y);
+            if (inverseMassSum > 0) {
+
+                float accumulated = tangentImpulses[i] - Physics.relativeSpeed(reference, incident, rA, rB, tangent.x, tangent.y) / inverseMassSum;
+                if (Math.abs(accumulated) > staticFriction * normalImpulses[i]) {
+                    float maxFriction = dynamicFriction * normalImpulses[i];
+                    accumulated = Math.max(-maxFriction, Math.min(maxFriction, accumulated));
+                }
+
+                applyContactImpulse(i, 0f, accumulated - tangentImpulses[i]);
+                tangentImpulses[i] = accumulated;
+            }
+        }
+    }
+
+    /**
+     * Applique une impulsion au i-ème point de contact : +impulsion sur la référence, -impulsion sur l'incident (sauf entités cinématiques)
+     * @param i indice du point de contact
+     * @param normalImpulse intensité selon la normale
+     * @param tangentImpulse intensité selon la tangente
+     */
+    private void applyContactImpulse(int i, float normalImpulse, float tangentImpulse) {
+
+        float impulseX = normal.x * normalImpulse + tangent.x * tangentImpulse;
+        float impulseY = normal.y * normalImpulse + tangent.y * tangentImpulse;
+
+        if (!reference.isKinematic())
+            Physics.applyImpulse(reference, centerToContactReference[i], impulseX, impulseY);
+
+        if (!incident.isKinematic())
+            Physics.applyImpulse(incident, centerToContactIncident[i], -impulseX, -impulseY);
     }
 
     /**
@@ -0,0 +1,103 @@
+package fr.insalyon.mxyns.collinsa.physics.collisions;
+
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Réserve de Collision réutilisées d'un tick à l'autre : les collisions ne sont allouées que lorsque la réserve est trop petite.
+ * Une collision obtenue reste valide jusqu'au prochain reset() (Collider.clearCollisions, en fin de tick),
+ * les CollisionListener ne doivent donc pas garder de référence vers les collisions qu'ils reçoivent.
+ * N'est utilisée que par un seul thread à la fois
+ */
+public class CollisionPool {
+
+    /**
+     * Collisions de la réserve, celles d'indice inférieur à 'size' sont utilisées
+     */
+    private Collision[] collisions = new Collision[0];
+
+    /**
+     * Nombre de collisions utilisées depuis le dernier reset
+     */
+    private int size;
+
+    /**
+     * Plus grand nombre de collisions utilisées en même temps
+     */
+    private int highWaterMark;
+
+    /**
+     * Nombre de collisions allouées depuis la création de la réserve
+     */
+    private long allocationCount;
+
+    /**
+     * Renvoie une collision initialisée pour la paire (reference, incident), en réutilisant une collision libre si possible
+     * @param reference première entité impliquée dans la collision
+     * @param incident deuxième entité impliquée dans la collision
+     * @param manifoldFunction fonction utilisée pour la résolution de la collision
+     * @return collision
+     */
+    public Collision obtain(Entity reference, Entity incident, Function<Collision, Boolean> manifoldFunction) {
+
+        if (size == collisions.length)
+            collisions = Arrays.copyOf(collisions, Math.max(64, 2 * collisions.length));
+
+        Collision collision = collisions[size];
+        if (collision == null) {
+            collision = collisions[size] = new Collision(reference, incident, manifoldFunction);
+            ++allocationCount;
+        } else
+            collision.set(reference, incident, manifoldFunction);
+
+        if (++size > highWaterMark)
+            highWaterMark = size;
+
+        return collision;
+    }
+
+    /**
+     * Libère toutes les collisions. Elles oublient leurs entités pour ne pas retenir d'entités supprimées de la simulation
+     */
+    public void reset() {
+
+        for (int i = 0; i < size; ++i)
+            collisions[i].set(null, null, null);
+
+        size = 0;
+    }
+
+    /**
+     * Renvoie le nombre de collisions utilisées depuis le dernier reset
+     * @return size
+     */
+    public int getSize() {
+
+        return size;
+    }
+
+    /**
+     * Renvoie le plus grand nombre de collisions utilisées en même temps
+     * @return highWaterMark
+     */
+    public int getHighWaterMark() {
+
+        return highWaterMark;
+    }
+
+    /**
+     * Renvoie le nombre de collisions allouées depuis la création de la réserve
+     * @return allocationCount
+     */
+    public long getAllocationCount() {
+
+        return allocationCount;
+    }
+
+    public String toString() {
+
+        return "CollisionPool[size=" + size + ", highWaterMark=" + highWaterMark + ", allocations=" + allocationCount + "]";
+    }
+}
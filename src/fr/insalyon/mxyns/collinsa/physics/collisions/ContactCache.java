@@ -0,0 +1,186 @@
+package fr.insalyon.mxyns.collinsa.physics.collisions;
+
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cache des impulsions accumulées aux points de contact d'un tick à l'autre (warm starting) :
+ * une collision qui persiste repart des impulsions normales et tangentielles du tick précédent au lieu de repartir de zéro,
+ * ce qui permet aux piles d'objets de se stabiliser sans augmenter la fréquence de mise à jour.
+ *
+ * Les contacts sont identifiés par la paire (référence, incident) et l'identifiant de contact donné par la fonction de manifold (feature).
+ * Deux tables à adressage ouvert sont utilisées : celle du tick précédent, seulement lue pendant la résolution (éventuellement en parallèle),
+ * et celle du tick courant, remplie par store() sur le thread appelant une fois toutes les collisions résolues. Les deux tables sont alors échangées
+ */
+public class ContactCache {
+
+    /**
+     * Table des contacts du tick précédent (lue) et table en cours de remplissage
+     */
+    private Table previous = new Table(), current = new Table();
+
+    /**
+     * Initialise les impulsions accumulées d'une collision dont le manifold vient d'être calculé : impulsions du tick précédent
+     * pour les contacts retrouvés, zéro pour les autres. N'écrit que dans la collision
+     * @param collision collision à initialiser
+     */
+    public void warmStart(Collision collision) {
+
+        Arrays.fill(collision.normalImpulses, 0f);
+        Arrays.fill(collision.tangentImpulses, 0f);
+
+        int slot = previous.find(collision.getReference(), collision.getIncident());
+        if (slot < 0)
+            return;
+
+        int base = slot * Collision.MAX_CONTACTS;
+        for (int i = 0; i < collision.contactCount; ++i)
+            for (int j = 0; j < previous.counts[slot]; ++j)
+                if (previous.features[base + j] == collision.features[i]) {
+                    collision.normalImpulses[i] = previous.normalImpulses[base + j];
+                    collision.tangentImpulses[i] = previous.tangentImpulses[base + j];
+                    break;
+                }
+    }
+
+    /**
+     * Enregistre les impulsions accumulées des collisions résolues lors du tick, puis en fait la table lue au tick suivant.
+     * Les contacts absents de 'collisions' sont oubliés
+     * @param collisions collisions du tick
+     */
+    public void store(List<Collision> collisions) {
+
+        current.clear(collisions.size());
+
+        for (Collision collision : collisions) {
+
+            if (collision.contactCount == 0 || collision.contactCache != this)
+                continue;
+
+            int slot = current.insert(collision.getReference(), collision.getIncident());
+            int base = slot * Collision.MAX_CONTACTS;
+
+            current.counts[slot] = collision.contactCount;
+            for (int i = 0; i < collision.contactCount; ++i) {
+                current.features[base + i] = collision.features[i];
+                current.normalImpulses[base + i] = collision.normalImpulses[i];
+                current.tangentImpulses[base + i] = collision.tangentImpulses[i];
+            }
+        }
+
+        Table swap = previous;
+        previous = current;
+        current = swap;
+    }
+
+    /**
+     * Oublie tous les contacts
+     */
+    public void clear() {
+
+        previous.clear(0);
+        current.clear(0);
+    }
+
+    /**
+     * Renvoie le nombre de paires d'entités enregistrées lors du dernier tick
+     * @return nombre de paires
+     */
+    public int getSize() {
+
+        return previous.size;
+    }
+
+    public String toString() {
+
+        return "ContactCache[pairs=" + previous.size + "]";
+    }
+
+    /**
+     * Table à adressage ouvert (sondage linéaire) indexée par paire d'entités, les contacts de chaque paire sont rangés à la suite
+     */
+    private static class Table {
+
+        Entity[] references = new Entity[0], incidents = new Entity[0];
+        int[] counts = new int[0], features = new int[0];
+        float[] normalImpulses = new float[0], tangentImpulses = new float[0];
+        int size;
+
+        /**
+         * Vide la table en s'assurant qu'elle puisse contenir 'expected' paires avec un taux de remplissage d'au plus 1/2
+         */
+        void clear(int expected) {
+
+            int capacity = Math.max(16, references.length);
+            while (capacity < 2 * expected)
+                capacity <<= 1;
+
+            if (capacity != references.length) {
+                references = new Entity[capacity];
+                incidents = new Entity[capacity];
+                counts = new int[capacity];
+                features = new int[capacity * Collision.MAX_CONTACTS];
+                normalImpulses = new float[capacity * Collision.MAX_CONTACTS];
+                tangentImpulses = new float[capacity * Collision.MAX_CONTACTS];
+            } else if (size > 0) {
+                Arrays.fill(references, null);
+                Arrays.fill(incidents, null);
+            }
+
+            size = 0;
+        }
+
+        /**
+         * Renvoie la case de la paire, -1 si elle est absente
+         */
+        int find(Entity reference, Entity incident) {
+
+            if (size == 0)
+                return -1;
+
+            int mask = references.length - 1;
+            for (int slot = hash(reference, incident) & mask; references[slot] != null; slot = (slot + 1) & mask)
+                if (references[slot] == reference && incidents[slot] == incident)
+                    return slot;
+
+            return -1;
+        }
+
+        /**
+         * Renvoie la case de la paire, en l'ajoutant si elle est absente
+         */
+        int insert(Entity reference, Entity incident) {
+
+            int mask = references.length - 1;
+            int slot = hash(reference, incident) & mask;
+            while (references[slot] != null) {
+
+                if (references[slot] == reference && incidents[slot] == incident)
+                    return slot;
+
+                slot = (slot + 1) & mask;
+            }
+
+            references[slot] = reference;
+            incidents[slot] = incident;
+            ++size;
+
+            return slot;
+        }
+
+        /**
+         * Hash d'une paire ordonnée d'entités (les entités n'ont pas d'identifiant, on utilise leur hash d'identité)
+         */
+        static int hash(Entity reference, Entity incident) {
+
+            int h = System.identityHashCode(reference) * 31 + System.identityHashCode(incident);
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+
+            return h;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package fr.insalyon.mxyns.collinsa.physics.collisions;
+
+import fr.insalyon.mxyns.collinsa.physics.Physics;
+import fr.insalyon.mxyns.collinsa.physics.entities.Circle;
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+import fr.insalyon.mxyns.collinsa.physics.entities.Polygon;
+import fr.insalyon.mxyns.collinsa.utils.geo.Geometry;
+import fr.insalyon.mxyns.collinsa.utils.geo.Vec2f;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Détection continue des collisions (CCD) des entités rapides : une entité qui se déplace en un tick de plus d'une fraction de sa taille
+ * peut traverser un mur fin sans que la détection discrète ne la voie jamais en intersection avec lui (tunneling).
+ *
+ * Pendant l'intégration, la position de départ de chaque entité est enregistrée. Les entités rapides voient ensuite leur AABB étendue
+ * à tout le trajet du pas (AABB balayée), la broad phase donne donc aussi les entités croisées en chemin.
+ * Avec des sous-pas, la détection a lieu à chaque sous-pas : la broad phase, mise à jour au premier sous-pas avec des AABB élargies au trajet du tick, couvre aussi les suivants.
+ * Avant la narrow phase, on cherche pour chaque entité rapide l'instant du premier impact (TOI) avec ses voisines par avancement conservatif :
+ * on avance le long du trajet d'au plus la distance qui sépare encore les formes, sans jamais pouvoir dépasser le point de contact.
+ * L'entité est alors ramenée à la position de l'impact, légèrement enfoncée dans sa cible, et la détection discrète génère la collision habituelle.
+ * Le temps restant après l'impact est perdu pour l'entité rapide.
+ *
+ * L'entité rapide est représentée par son cercle intérieur (son cercle pour un Circle) et seule sa translation est prise en compte,
+ * les voisines sont considérées immobiles dans leur position de fin de tick.
+ */
+public class ContinuousDetection {
+
+    /**
+     * Nombre maximal de pas d'avancement conservatif par paire, au-delà la paire est considérée comme rasante et ignorée
+     */
+    private static final int MAX_ITERATIONS = 20;
+
+    /**
+     * Enfoncement visé dans la cible à l'instant de l'impact, en fraction du rayon du cercle intérieur, pour que la détection discrète trouve la collision
+     */
+    private static final float PENETRATION = .2f;
+
+    /**
+     * Précision de l'instant d'impact, en fraction du rayon du cercle intérieur
+     */
+    private static final float TOLERANCE = .01f;
+
+    /**
+     * Déplacement au-delà duquel une entité est traitée par la détection continue, en fraction de sa taille (plus petit côté de son AABB)
+     */
+    private float motionThreshold = .5f;
+
+    /**
+     * Positions des entités avant l'intégration, 2 valeurs par entité, dans l'ordre de l'intégration
+     */
+    private float[] startPositions = new float[0];
+
+    /**
+     * Entités rapides du pas et leur position avant l'intégration
+     */
+    private Entity[] fastBodies = new Entity[0];
+    private float[] fastStarts = new float[0];
+
+    /**
+     * Nombre d'entités rapides du pas
+     */
+    private int fastCount;
+
+    /**
+     * Nombre d'entités rapides ramenées à leur instant d'impact lors du dernier pas
+     */
+    private int impactCount;
+
+    /**
+     * Trajet de l'entité rapide en cours : départ, déplacement, rayon de son cercle intérieur, et plus petit instant d'impact trouvé
+     */
+    private float startX, startY, moveX, moveY, moveLength, coreRadius, timeOfImpact;
+
+    /**
+     * Référence unique vers le calcul de l'instant d'impact avec une voisine
+     */
+    private final BiConsumer<Entity, Entity> impactSearch = this::searchImpact;
+
+    /**
+     * Enregistre la position des entités avant leur intégration
+     * @param entities entités qui vont être intégrées
+     * @param count nombre d'entités
+     */
+    public void saveStartPositions(Entity[] entities, int count) {
+
+        if (startPositions.length < 2 * count)
+            startPositions = new float[Math.max(64, 4 * count)];
+
+        for (int i = 0; i < count; ++i) {
+            startPositions[2 * i] = entities[i].getPos().x;
+            startPositions[2 * i + 1] = entities[i].getPos().y;
+        }
+
+        fastCount = 0;
+    }
+
+    /**
+     * Après l'intégration d'une entité, la retient si elle s'est déplacée assez pour risquer de traverser une autre entité
+     * et étend son AABB à tout son trajet du pas
+     * @param entity entité intégrée
+     * @param index indice de l'entité lors de saveStartPositions
+     */
+    public void sweep(Entity entity, int index) {
+
+        if (entity.isKinematic() || entity.getCollisionType() == Collision.CollisionType.IGNORE)
+            return;
+
+        AABB aabb = entity.getAABB();
+        float dx = entity.getPos().x - startPositions[2 * index], dy = entity.getPos().y - startPositions[2 * index + 1];
+        float threshold = motionThreshold * Math.min(aabb.w, aabb.h);
+        if (dx * dx + dy * dy <= threshold * threshold)
+            return;
+
+        if (fastCount == fastBodies.length) {
+            fastBodies = Arrays.copyOf(fastBodies, Math.max(16, 2 * fastBodies.length));
+            fastStarts = Arrays.copyOf(fastStarts, 2 * fastBodies.length);
+        }
+
+        fastBodies[fastCount] = entity;
+        fastStarts[2 * fastCount] = startPositions[2 * index];
+        fastStarts[2 * fastCount + 1] = startPositions[2 * index + 1];
+        ++fastCount;
+
+        // AABB balayée : union des AABB de départ et d'arrivée
+        aabb.x = Math.min(aabb.x, aabb.x - dx);
+        aabb.y = Math.min(aabb.y, aabb.y - dy);
+        aabb.w += Math.abs(dx);
+        aabb.h += Math.abs(dy);
+    }
+
+    /**
+     * Cherche l'instant du premier impact de chaque entité rapide avec les entités croisées sur son trajet et la ramène à cet instant.
+     * A appeler après la mise à jour de la broad phase (qui contient alors les AABB balayées) et avant la narrow phase.
+     * Rend leur AABB habituelle à toutes les entités rapides (élargie si les AABB de la simulation le sont, Physics.fattenAABBs)
+     * @param physics simulation dont il faut traiter les entités rapides
+     */
+    public void advance(Physics physics) {
+
+        impactCount = 0;
+
+        for (int k = 0; k < fastCount; ++k) {
+
+            Entity entity = fastBodies[k];
+            fastBodies[k] = null;
+
+            startX = fastStarts[2 * k];
+            startY = fastStarts[2 * k + 1];
+            moveX = entity.getPos().x - startX;
+            moveY = entity.getPos().y - startY;
+            moveLength = (float) Math.sqrt(moveX * moveX + moveY * moveY);
+            coreRadius = getCoreRadius(entity);
+            timeOfImpact = 1;
+
+            if (coreRadius > 0) {
+                physics.getCollider().getBroadphase().forEachNearby(entity, impactSearch);
+                physics.getStaticTree().forEachOverlapping(entity, impactSearch);
+            }
+
+            if (timeOfImpact < 1) {
+                entity.setPos(startX + timeOfImpact * moveX, startY + timeOfImpact * moveY);
+                ++impactCount;
+            }
+
+            entity.updateAABB();
+            physics.fattenAABB(entity);
+        }
+
+        fastCount = 0;
+    }
+
+    /**
+     * Avancement conservatif du cercle intérieur de l'entité rapide en cours vers 'target', retient l'instant d'impact s'il est plus tôt que les précédents
+     * @param entity entité rapide
+     * @param target voisine sur le trajet
+     */
+    private void searchImpact(Entity entity, Entity target) {
+
+        if (target.getCollisionType() == Collision.CollisionType.IGNORE)
+            return;
+
+        // Déjà en contact au départ : la détection discrète s'en charge
+        float t = 0;
+        float distance = distanceTo(target, startX, startY) - coreRadius;
+        if (distance <= 0)
+            return;
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS; ++iteration) {
+
+            distance += PENETRATION * coreRadius;
+            if (distance <= TOLERANCE * coreRadius) {
+                timeOfImpact = t;
+                return;
+            }
+
+            // La distance ne peut pas diminuer plus vite que l'entité n'avance : on ne peut pas dépasser l'impact
+            t += distance / moveLength;
+            if (t >= timeOfImpact)
+                return;
+
+            distance = distanceTo(target, startX + t * moveX, startY + t * moveY) - coreRadius;
+        }
+    }
+
+    /**
+     * Renvoie la distance signée entre un point et le contour d'une entité dans sa position actuelle, négative à l'intérieur
+     * @param target entité
+     * @param x abscisse du point
+     * @param y ordonnée du point
+     * @return distance, +infini pour les formes non gérées
+     */
+    private static float distanceTo(Entity target, float x, float y) {
+
+        if (target instanceof Circle) {
+
+            Vec2f center = target.getPos();
+            float dx = x - center.x, dy = y - center.y;
+            return (float) Math.sqrt(dx * dx + dy * dy) - ((Circle) target).getR();
+        }
+
+        if (target instanceof Polygon)
+            return Geometry.signedDistanceToPolygon(x, y, ((Polygon) target).getVertices());
+
+        return Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Renvoie le rayon du cercle centré sur l'entité et contenu dans sa forme
+     * @param entity entité
+     * @return rayon du cercle intérieur, 0 pour les formes non gérées
+     */
+    private static float getCoreRadius(Entity entity) {
+
+        if (entity instanceof Circle)
+            return ((Circle) entity).getR();
+
+        if (entity instanceof Polygon)
+            return Math.max(0, -Geometry.signedDistanceToPolygon(entity.getPos().x, entity.getPos().y, ((Polygon) entity).getVertices()));
+
+        return 0;
+    }
+
+    /**
+     * Renvoie le déplacement au-delà duquel une entité est traitée par la détection continue
+     * @return motionThreshold, en fraction de la taille de l'entité
+     */
+    public float getMotionThreshold() {
+
+        return motionThreshold;
+    }
+
+    /**
+     * Change le déplacement au-delà duquel une entité est traitée par la détection continue
+     * @param motionThreshold fraction de la taille de l'entité (plus petit côté de son AABB), plus elle est petite plus la détection est sûre et coûteuse
+     */
+    public void setMotionThreshold(float motionThreshold) {
+
+        this.motionThreshold = Math.max(0, motionThreshold);
+    }
+
+    /**
+     * Renvoie le nombre d'entités rapides ramenées à leur instant d'impact lors du dernier pas
+     * @return impactCount
+     */
+    public int getImpactCount() {
+
+        return impactCount;
+    }
+
+    public String toString() {
+
+        return "ContinuousDetection[motionThreshold=" + motionThreshold + ", impacts=" + impactCount + "]";
+    }
+}
@@ -0,0 +1,598 @@
+package fr.insalyon.mxyns.collinsa.physics.collisions;
+
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Broad phase par arbre dynamique de volumes englobants (Dynamic AABB Tree) : chaque entité est une feuille de l'arbre,
+ * chaque noeud interne englobe ses deux enfants.
+ *
+ * Les feuilles stockent une AABB élargie ("fat") : tant que l'AABB exacte de l'entité reste dedans, la feuille n'est pas touchée.
+ * Elle n'est retirée puis réinsérée que lorsque l'entité en sort. Une grande entité (un sol par exemple) n'occupe qu'une feuille,
+ * au lieu d'être dupliquée dans tous les chunks qu'elle couvre.
+ * L'arbre est rééquilibré par rotations (comme un arbre AVL) à chaque insertion / suppression.
+ *
+ * Les noeuds sont rangés dans des tableaux plats, indexés par leur numéro. Les noeuds libérés sont chaînés et réutilisés.
+ *
+ * DynamicTree Complexity:
+ * | Update (coherent) | Query        | Pairs      |
+ * |       ~O(n)       | O(log n + k) | O(n log n) |
+ */
+public class DynamicTree implements Broadphase {
+
+    /**
+     * Noeud inexistant
+     */
+    private static final int NULL = -1;
+
+    /**
+     * Marge minimale ajoutée de chaque côté de l'AABB d'une feuille, en mètres
+     */
+    private static final float MIN_MARGIN = 0.5f;
+
+    /**
+     * Marge ajoutée de chaque côté de l'AABB d'une feuille, proportionnellement à son plus petit côté
+     */
+    private static final float MARGIN_RATIO = 0.1f;
+
+    /**
+     * AABB (élargie pour les feuilles) de chaque noeud : 4 valeurs par noeud (minX, minY, maxX, maxY)
+     */
+    private float[] bounds = new float[0];
+
+    /**
+     * Parent de chaque noeud. Pour un noeud libre, noeud libre suivant
+     */
+    private int[] parent = new int[0];
+
+    /**
+     * Enfants de chaque noeud. child1 == NULL <=> le noeud est une feuille
+     */
+    private int[] child1 = new int[0], child2 = new int[0];
+
+    /**
+     * Hauteur de chaque noeud (0 pour une feuille, -1 pour un noeud libre)
+     */
+    private int[] height = new int[0];
+
+    /**
+     * Entité de chaque feuille, null pour les noeuds internes et libres
+     */
+    private Entity[] entities = new Entity[0];
+
+    /**
+     * Tampon de la dernière mise à jour ayant vu chaque feuille. Permet de retirer les entités qui ne sont plus dans la simulation
+     */
+    private int[] seen = new int[0];
+
+    /**
+     * Racine de l'arbre
+     */
+    private int root = NULL;
+
+    /**
+     * Premier noeud libre
+     */
+    private int freeList = NULL;
+
+    /**
+     * Nombre de feuilles (d'entités) dans l'arbre
+     */
+    private int leafCount;
+
+    /**
+     * Tampon de la mise à jour en cours
+     */
+    private int stamp;
+
+    /**
+     * Nombre de feuilles réinsérées lors de la dernière mise à jour
+     */
+    private int lastReinsertions;
+
+    /**
+     * Piles de parcours de l'arbre, réutilisées d'une requête à l'autre. Une pile pour les paires (thread de calcul), une pour les requêtes ponctuelles (interface)
+     */
+    private int[] pairStack = new int[64], queryStack = new int[64];
+
+    /**
+     * Met à jour l'arbre :
+     *  1. les nouvelles entités sont insérées, celles dont l'AABB est sortie de sa version élargie sont réinsérées
+     *  2. les feuilles qui n'ont pas été vues (entités supprimées) sont retirées
+     *
+     * @param entities entités de la simulation
+     */
+    @Override
+    public void update(Iterable<Entity> entities) {
+
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0);
+            stamp = 1;
+        }
+
+        lastReinsertions = 0;
+        for (Entity entity : entities) {
+
+            int leaf = entity.getBroadphaseProxy();
+            if (leaf < 0 || leaf >= this.entities.length || this.entities[leaf] != entity) {
+
+                leaf = allocateNode();
+                this.entities[leaf] = entity;
+                entity.setBroadphaseProxy(leaf);
+                fatten(entity.getAABB(), leaf);
+                insertLeaf(leaf);
+                ++leafCount;
+
+            } else if (!contains(leaf, entity.getAABB())) {
+
+                removeLeaf(leaf);
+                fatten(entity.getAABB(), leaf);
+                insertLeaf(leaf);
+                ++lastReinsertions;
+            }
+
+            seen[leaf] = stamp;
+        }
+
+        for (int node = 0; node < this.entities.length; ++node)
+            if (this.entities[node] != null && seen[node] != stamp) {
+
+                if (this.entities[node].getBroadphaseProxy() == node)
+                    this.entities[node].setBroadphaseProxy(-1);
+
+                removeLeaf(node);
+                freeNode(node);
+                --leafCount;
+            }
+    }
+
+    /**
+     * Vide l'arbre
+     */
+    @Override
+    public void clear() {
+
+        for (int node = 0; node < entities.length; ++node)
+            if (entities[node] != null && entities[node].getBroadphaseProxy() == node)
+                entities[node].setBroadphaseProxy(-1);
+
+        Arrays.fill(entities, null);
+        Arrays.fill(height, -1);
+        for (int node = 0; node < parent.length; ++node)
+            parent[node] = node + 1 < parent.length ? node + 1 : NULL;
+
+        freeList = parent.length > 0 ? 0 : NULL;
+        root = NULL;
+        leafCount = 0;
+    }
+
+    /**
+     * Appelle 'consumer' avec (entity, voisine) pour chaque entité dont l'AABB élargie chevauche l'AABB de 'entity'
+     *
+     * @param entity entité dont on cherche les voisines
+     * @param consumer action à effectuer sur chaque couple (entity, voisine)
+     */
+    @Override
+    public void forEachNearby(Entity entity, BiConsumer<Entity, Entity> consumer) {
+
+        if (root == NULL)
+            return;
+
+        AABB aabb = entity.getAABB();
+        float minX = aabb.x, minY = aabb.y, maxX = aabb.x + aabb.w, maxY = aabb.y + aabb.h;
+
+        int[] stack = queryStack;
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+
+            int node = stack[--top];
+            if (!overlaps(node, minX, minY, maxX, maxY))
+                continue;
+
+            if (child1[node] == NULL) {
+                if (entities[node] != entity)
+                    consumer.accept(entity, entities[node]);
+            } else {
+                if (top + 2 > stack.length)
+                    queryStack = stack = Arrays.copyOf(stack, 2 * stack.length);
+
+                stack[top++] = child1[node];
+                stack[top++] = child2[node];
+            }
+        }
+    }
+
+    /**
+     * Appelle 'consumer' une seule fois pour chaque paire d'entités dont les AABB se chevauchent.
+     * Chaque feuille parcourt l'arbre avec son AABB élargie, la paire n'est émise que depuis la feuille de plus petit indice
+     * et seulement si les AABB exactes se chevauchent
+     *
+     * @param consumer action à effectuer sur chaque paire
+     */
+    @Override
+    public void forEachPair(BiConsumer<Entity, Entity> consumer) {
+
+        for (int leaf = 0; leaf < entities.length; ++leaf) {
+
+            Entity entity = entities[leaf];
+            if (entity == null)
+                continue;
+
+            int base = 4 * leaf;
+            float minX = bounds[base], minY = bounds[base + 1], maxX = bounds[base + 2], maxY = bounds[base + 3];
+            AABB aabb = entity.getAABB();
+
+            int[] stack = pairStack;
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+
+                int node = stack[--top];
+                if (!overlaps(node, minX, minY, maxX, maxY))
+                    continue;
+
+                if (child1[node] == NULL) {
+                    if (node > leaf && tightOverlap(aabb, entities[node].getAABB()))
+                        consumer.accept(entity, entities[node]);
+                } else {
+                    if (top + 2 > stack.length)
+                        pairStack = stack = Arrays.copyOf(stack, 2 * stack.length);
+
+                    stack[top++] = child1[node];
+                    stack[top++] = child2[node];
+                }
+            }
+        }
+    }
+
+    /**
+     * Insère une feuille dans l'arbre. Descend vers le frère qui minimise l'augmentation du périmètre total, puis remonte en rééquilibrant
+     * @param leaf feuille à insérer
+     */
+    private void insertLeaf(int leaf) {
+
+        if (root == NULL) {
+            root = leaf;
+            parent[leaf] = NULL;
+            return;
+        }
+
+        int leafBase = 4 * leaf;
+        float minX = bounds[leafBase], minY = bounds[leafBase + 1], maxX = bounds[leafBase + 2], maxY = bounds[leafBase + 3];
+
+        // Recherche du meilleur frère
+        int index = root;
+        while (child1[index] != NULL) {
+
+            int c1 = child1[index], c2 = child2[index];
+
+            float perimeter = perimeter(index);
+            float combinedPerimeter = combinedPerimeter(index, minX, minY, maxX, maxY);
+
+            // Coût de créer un nouveau parent pour ce noeud et la feuille, et coût minimal hérité par les descendants
+            float cost = 2 * combinedPerimeter;
+            float inheritanceCost = 2 * (combinedPerimeter - perimeter);
+
+            float cost1 = combinedPerimeter(c1, minX, minY, maxX, maxY) - (child1[c1] == NULL ? 0 : perimeter(c1)) + inheritanceCost;
+            float cost2 = combinedPerimeter(c2, minX, minY, maxX, maxY) - (child1[c2] == NULL ? 0 : perimeter(c2)) + inheritanceCost;
+
+            if (cost < cost1 && cost < cost2)
+                break;
+
+            index = cost1 < cost2 ? c1 : c2;
+        }
+
+        int sibling = index;
+
+        // Nouveau parent
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        entities[newParent] = null;
+        height[newParent] = height[sibling] + 1;
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+        union(sibling, leaf, newParent);
+
+        if (oldParent == NULL)
+            root = newParent;
+        else if (child1[oldParent] == sibling)
+            child1[oldParent] = newParent;
+        else
+            child2[oldParent] = newParent;
+
+        refit(parent[leaf]);
+    }
+
+    /**
+     * Retire une feuille de l'arbre (sans la libérer). Son parent est remplacé par son frère
+     * @param leaf feuille à retirer
+     */
+    private void removeLeaf(int leaf) {
+
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+
+        int leafParent = parent[leaf];
+        int grandParent = parent[leafParent];
+        int sibling = child1[leafParent] == leaf ? child2[leafParent] : child1[leafParent];
+
+        if (grandParent == NULL) {
+            root = sibling;
+            parent[sibling] = NULL;
+            freeNode(leafParent);
+            return;
+        }
+
+        if (child1[grandParent] == leafParent)
+            child1[grandParent] = sibling;
+        else
+            child2[grandParent] = sibling;
+
+        parent[sibling] = grandParent;
+        freeNode(leafParent);
+
+        refit(grandParent);
+    }
+
+    /**
+     * Remonte de 'index' jusqu'à la racine en rééquilibrant et en recalculant hauteurs et AABB
+     * @param index premier noeud à corriger
+     */
+    private void refit(int index) {
+
+        while (index != NULL) {
+
+            index = balance(index);
+
+            int c1 = child1[index], c2 = child2[index];
+            height[index] = 1 + Math.max(height[c1], height[c2]);
+            union(c1, c2, index);
+
+            index = parent[index];
+        }
+    }
+
+    /**
+     * Effectue une rotation si les sous-arbres de 'a' ont une différence de hauteur supérieure à 1
+     * @param a noeud à équilibrer
+     * @return noeud ayant pris la place de 'a'
+     */
+    private int balance(int a) {
+
+        if (child1[a] == NULL || height[a] < 2)
+            return a;
+
+        int b = child1[a], c = child2[a];
+        int balance = height[c] - height[b];
+
+        // Rotation de c vers le haut
+        if (balance > 1) {
+
+            int f = child1[c], g = child2[c];
+
+            child1[c] = a;
+            parent[c] = parent[a];
+            parent[a] = c;
+            replaceChild(parent[c], a, c);
+
+            if (height[f] > height[g]) {
+                child2[c] = f;
+                child2[a] = g;
+                parent[g] = a;
+            } else {
+                child2[c] = g;
+                child2[a] = f;
+                parent[f] = a;
+            }
+
+            union(child1[a], child2[a], a);
+            union(a, child2[c], c);
+            height[a] = 1 + Math.max(height[child1[a]], height[child2[a]]);
+            height[c] = 1 + Math.max(height[a], height[child2[c]]);
+
+            return c;
+        }
+
+        // Rotation de b vers le haut
+        if (balance < -1) {
+
+            int d = child1[b], e = child2[b];
+
+            child1[b] = a;
+            parent[b] = parent[a];
+            parent[a] = b;
+            replaceChild(parent[b], a, b);
+
+            if (height[d] > height[e]) {
+                child2[b] = d;
+                child1[a] = e;
+                parent[e] = a;
+            } else {
+                child2[b] = e;
+                child1[a] = d;
+                parent[d] = a;
+            }
+
+            union(child1[a], child2[a], a);
+            union(a, child2[b], b);
+            height[a] = 1 + Math.max(height[child1[a]], height[child2[a]]);
+            height[b] = 1 + Math.max(height[a], height[child2[b]]);
+
+            return b;
+        }
+
+        return a;
+    }
+
+    /**
+     * Remplace l'enfant 'oldChild' de 'node' par 'newChild'. Si 'node' est NULL, 'newChild' devient la racine
+     */
+    private void replaceChild(int node, int oldChild, int newChild) {
+
+        if (node == NULL)
+            root = newChild;
+        else if (child1[node] == oldChild)
+            child1[node] = newChild;
+        else
+            child2[node] = newChild;
+    }
+
+    /**
+     * Prend un noeud dans la liste des noeuds libres, en agrandissant les tableaux si besoin
+     * @return indice du noeud
+     */
+    private int allocateNode() {
+
+        if (freeList == NULL) {
+
+            int oldCapacity = parent.length;
+            int newCapacity = Math.max(16, 2 * oldCapacity);
+
+            bounds = Arrays.copyOf(bounds, 4 * newCapacity);
+            parent = Arrays.copyOf(parent, newCapacity);
+            child1 = Arrays.copyOf(child1, newCapacity);
+            child2 = Arrays.copyOf(child2, newCapacity);
+            height = Arrays.copyOf(height, newCapacity);
+            entities = Arrays.copyOf(entities, newCapacity);
+            seen = Arrays.copyOf(seen, newCapacity);
+
+            for (int node = oldCapacity; node < newCapacity; ++node) {
+                parent[node] = node + 1 < newCapacity ? node + 1 : NULL;
+                height[node] = -1;
+            }
+            freeList = oldCapacity;
+        }
+
+        int node = freeList;
+        freeList = parent[node];
+
+        parent[node] = NULL;
+        child1[node] = NULL;
+        child2[node] = NULL;
+        height[node] = 0;
+
+        return node;
+    }
+
+    /**
+     * Rend un noeud à la liste des noeuds libres
+     * @param node noeud à libérer
+     */
+    private void freeNode(int node) {
+
+        entities[node] = null;
+        height[node] = -1;
+        parent[node] = freeList;
+        freeList = node;
+    }
+
+    /**
+     * Ecrit dans les bornes de 'leaf' l'AABB élargie de 'aabb'
+     */
+    private void fatten(AABB aabb, int leaf) {
+
+        float margin = MIN_MARGIN + MARGIN_RATIO * Math.min(aabb.w, aabb.h);
+
+        int base = 4 * leaf;
+        bounds[base] = aabb.x - margin;
+        bounds[base + 1] = aabb.y - margin;
+        bounds[base + 2] = aabb.x + aabb.w + margin;
+        bounds[base + 3] = aabb.y + aabb.h + margin;
+    }
+
+    /**
+     * Détermine si l'AABB élargie de 'leaf' contient entièrement 'aabb'
+     */
+    private boolean contains(int leaf, AABB aabb) {
+
+        int base = 4 * leaf;
+        return bounds[base] <= aabb.x && bounds[base + 1] <= aabb.y && aabb.x + aabb.w <= bounds[base + 2] && aabb.y + aabb.h <= bounds[base + 3];
+    }
+
+    /**
+     * Détermine si les bornes d'un noeud chevauchent la boîte (minX, minY, maxX, maxY)
+     */
+    private boolean overlaps(int node, float minX, float minY, float maxX, float maxY) {
+
+        int base = 4 * node;
+        return bounds[base] <= maxX && minX <= bounds[base + 2] && bounds[base + 1] <= maxY && minY <= bounds[base + 3];
+    }
+
+    /**
+     * Détermine si deux AABB exactes se chevauchent (bords compris)
+     */
+    private static boolean tightOverlap(AABB a, AABB b) {
+
+        return a.x <= b.x + b.w && b.x <= a.x + a.w && a.y <= b.y + b.h && b.y <= a.y + a.h;
+    }
+
+    /**
+     * Ecrit dans 'dest' l'union des bornes de 'a' et 'b'
+     */
+    private void union(int a, int b, int dest) {
+
+        int ba = 4 * a, bb = 4 * b, bd = 4 * dest;
+        bounds[bd] = Math.min(bounds[ba], bounds[bb]);
+        bounds[bd + 1] = Math.min(bounds[ba + 1], bounds[bb + 1]);
+        bounds[bd + 2] = Math.max(bounds[ba + 2], bounds[bb + 2]);
+        bounds[bd + 3] = Math.max(bounds[ba + 3], bounds[bb + 3]);
+    }
+
+    /**
+     * Renvoie le périmètre des bornes d'un noeud
+     */
+    private float perimeter(int node) {
+
+        int base = 4 * node;
+        return 2 * (bounds[base + 2] - bounds[base] + bounds[base + 3] - bounds[base + 1]);
+    }
+
+    /**
+     * Renvoie le périmètre de l'union des bornes d'un noeud et de la boîte (minX, minY, maxX, maxY)
+     */
+    private float combinedPerimeter(int node, float minX, float minY, float maxX, float maxY) {
+
+        int base = 4 * node;
+        return 2 * (Math.max(bounds[base + 2], maxX) - Math.min(bounds[base], minX) + Math.max(bounds[base + 3], maxY) - Math.min(bounds[base + 1], minY));
+    }
+
+    /**
+     * Renvoie le nombre d'entités dans l'arbre
+     * @return leafCount
+     */
+    public int getLeafCount() {
+
+        return leafCount;
+    }
+
+    /**
+     * Renvoie la hauteur de l'arbre
+     * @return hauteur de la racine, -1 si l'arbre est vide
+     */
+    public int getHeight() {
+
+        return root == NULL ? -1 : height[root];
+    }
+
+    /**
+     * Renvoie le nombre de feuilles réinsérées lors de la dernière mise à jour (entités sorties de leur AABB élargie)
+     * @return lastReinsertions
+     */
+    public int getLastReinsertions() {
+
+        return lastReinsertions;
+    }
+
+    public String toString() {
+
+        return "DynamicTree[leaves=" + leafCount + ", height=" + getHeight() + ", reinserted=" + lastReinsertions + "]";
+    }
+}
@@ -0,0 +1,848 @@
+package fr.insalyon.mxyns.collinsa.physics.collisions;
+
+import fr.insalyon.mxyns.collinsa.physics.Physics;
+import fr.insalyon.mxyns.collinsa.physics.entities.Circle;
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+import fr.insalyon.mxyns.collinsa.physics.entities.Polygon;
+import fr.insalyon.mxyns.collinsa.utils.geo.Geometry;
+import fr.insalyon.mxyns.collinsa.utils.geo.Vec2f;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Résolution événementielle des collisions (Collider.preciseResolution) : au lieu de résoudre toutes les collisions à la fin du tick,
+ * les collisions sont résolues une à une dans l'ordre où elles ont lieu pendant le tick.
+ *
+ * Les entités traitées sont les cercles dynamiques éveillés (participants), contre les autres participants et contre les entités cinématiques
+ * et statiques (obstacles, de masse infinie). Les participants sont ramenés au début du tick (l'intégration leur a donné une vitesse constante
+ * sur tout le tick), puis :
+ *  1. on prédit l'instant du premier contact de chaque paire proche (analytiquement entre deux cercles, par avancement conservatif contre un polygone)
+ *     et on range ces événements dans une file de priorité (tas binaire)
+ *  2. on sort l'événement le plus tôt, on avance les deux entités jusqu'à cet instant et on applique l'impulsion de rebond
+ *  3. seules les prédictions des paires impliquant ces deux entités sont recalculées. Les anciennes prédictions restent dans la file
+ *     et sont ignorées grâce au nombre de collisions de chaque entité, enregistré avec l'événement. Si la collision a accéléré une entité,
+ *     sa zone atteignable est agrandie et les nouvelles paires proches sont ajoutées
+ * Enfin les participants sont avancés jusqu'à la fin du tick. Tout est séquentiel et l'ordre des événements simultanés est fixé par les indices des entités,
+ * le résultat est donc déterministe.
+ *
+ * Les paires résolues ici ne sont pas testées par la narrow phase (handles), les autres (polygones dynamiques, entités endormies, entités ayant des listeners)
+ * sont résolues normalement à la fin du tick. Les frottements ne sont pas pris en compte lors des événements.
+ */
+public class EventSolver {
+
+    /**
+     * Nombre maximal d'événements par participant et par tick, au-delà les événements restants sont abandonnés (chocs inélastiques en cascade)
+     */
+    private static final int MAX_EVENTS_PER_BODY = 64;
+
+    /**
+     * Vitesse normale en dessous de laquelle un choc est parfaitement inélastique, comme dans Collision
+     */
+    private static final float RESTITUTION_THRESHOLD = 0.5f;
+
+    /**
+     * Précision des instants de contact avec un polygone, en fraction du rayon du cercle
+     */
+    private static final float TOLERANCE = .001f;
+
+    /**
+     * Nombre maximal de pas d'avancement conservatif par prédiction
+     */
+    private static final int MAX_ITERATIONS = 32;
+
+    /**
+     * Pénétration tolérée en fin de tick et fraction de la pénétration restante corrigée, comme dans Collision
+     */
+    private static final float PENETRATION_SLOP = 0.01f, POSITION_CORRECTION = 0.8f;
+
+    /**
+     * Entités indexées pour le tick (participants et obstacles) et si elles sont des participants
+     */
+    private Entity[] bodies = new Entity[0];
+    private boolean[] participant = new boolean[0];
+
+    /**
+     * Etat de chaque entité : position à l'instant times[i] (en secondes depuis le début du tick), vitesse, inverse de la masse (0 pour un obstacle),
+     * rayon (0 si ce n'est pas un cercle), coefficient de restitution et nombre de collisions résolues
+     */
+    private float[] posX = new float[0], posY = new float[0], velX = new float[0], velY = new float[0], times = new float[0];
+    private float[] invMass = new float[0], radius = new float[0], restitution = new float[0];
+    private int[] collisionCounts = new int[0];
+
+    /**
+     * Nombre d'entités indexées et de participants
+     */
+    private int bodyCount, participantCount;
+
+    /**
+     * Zone pouvant être atteinte par chaque entité pendant le tick : 4 valeurs par entité (minX, minY, maxX, maxY)
+     */
+    private float[] boxes = new float[0];
+
+    /**
+     * Entités triées par borne minimale de leur zone sur x (clé triable << 32 | indice), pour trouver les paires proches
+     */
+    private long[] sortKeys = new long[0];
+
+    /**
+     * Borne minimale sur x de la zone de chaque entité triée au moment du tri, rang de chaque entité dans le tri,
+     * et nombre d'entités triées (les entités statiques indexées ensuite ne le sont pas)
+     */
+    private float[] sortedMinX = new float[0];
+    private int[] ranks = new int[0];
+    private int sortedCount;
+
+    /**
+     * Indices des entités cinématiques et leur nombre
+     */
+    private int[] kinematics = new int[0];
+    private int kinematicCount;
+
+    /**
+     * Plus grande largeur de la zone d'un participant et plus grand recul de la borne minimale sur x d'une zone depuis le tri, pour retrouver par dichotomie
+     * les entités triées pouvant chevaucher une zone agrandie
+     */
+    private float maxWidth, maxShift;
+
+    /**
+     * Paires proches, rangées à la suite (2 entités par paire). Chaque case de 'pairs' est aussi un lien de la liste chaînée des voisines
+     * de l'entité qu'elle contient : la voisine donnée par le lien k est pairs[k ^ 1], le lien suivant est nextLinks[k]
+     * et le premier lien de l'entité i est firstLinks[i] (-1 : fin de liste)
+     */
+    private int[] pairs = new int[0], nextLinks = new int[0], firstLinks = new int[0];
+
+    /**
+     * Nombre de paires proches
+     */
+    private int pairCount;
+
+    /**
+     * File de priorité des événements (tas binaire) : instant, entités et nombre de collisions de chacune au moment de la prédiction
+     */
+    private float[] heapTimes = new float[0];
+    private int[] heapA = new int[0], heapB = new int[0], heapCountA = new int[0], heapCountB = new int[0];
+
+    /**
+     * Nombre d'événements dans la file
+     */
+    private int heapSize;
+
+    /**
+     * Simulation en cours de résolution
+     */
+    private Physics physics;
+
+    /**
+     * Durée du tick en cours, en secondes
+     */
+    private float step;
+
+    /**
+     * Nombre d'événements résolus lors du dernier tick
+     */
+    private int eventCount;
+
+    /**
+     * Vecteur de travail (point le plus proche d'un polygone)
+     */
+    private final Vec2f closest = Vec2f.zero();
+
+    /**
+     * Référence unique vers l'indexation des entités statiques proches d'un participant
+     */
+    private final BiConsumer<Entity, Entity> staticCollector = (entity, staticEntity) -> indexObstacle(staticEntity);
+
+    /**
+     * Participant dont la zone est en train d'être agrandie et sa nouvelle zone
+     */
+    private int extended;
+    private float reachMinX, reachMinY, reachMaxX, reachMaxY;
+
+    /**
+     * Référence unique vers l'ajout des paires avec les entités statiques atteintes par une zone agrandie
+     */
+    private final BiConsumer<Entity, Entity> reachCollector = (entity, staticEntity) -> {
+        indexObstacle(staticEntity);
+        int j = indexOf(staticEntity);
+        if (j >= 0)
+            addNewPair(extended, j);
+    };
+
+    /**
+     * Résout dans l'ordre chronologique les collisions des participants pendant le tick qui vient d'être intégré
+     * @param physics simulation
+     * @param step durée du tick en secondes
+     * @return true si des participants ont été déplacés (la broad phase est alors à mettre à jour)
+     */
+    public boolean solve(Physics physics, float step) {
+
+        this.physics = physics;
+        this.step = step;
+        Arrays.fill(bodies, 0, bodyCount, null);
+        bodyCount = participantCount = kinematicCount = pairCount = heapSize = eventCount = 0;
+
+        // 1. Participants et obstacles
+        for (Entity entity : physics.getEntities()) {
+
+            if (isParticipant(entity))
+                index(entity, true);
+            else if (entity.isKinematic() && entity.getCollisionType() != Collision.CollisionType.IGNORE) {
+
+                if (kinematicCount == kinematics.length)
+                    kinematics = Arrays.copyOf(kinematics, Math.max(16, 2 * kinematics.length));
+
+                kinematics[kinematicCount++] = bodyCount;
+                index(entity, false);
+            }
+        }
+
+        if (participantCount == 0)
+            return false;
+
+        // Les entités statiques ne sont pas dans la liste des entités : on indexe celles que les participants peuvent atteindre
+        for (int i = 0, count = bodyCount; i < count; ++i)
+            if (participant[i]) {
+                AABB aabb = bodies[i].getAABB();
+                aabb.x = boxes[4 * i];
+                aabb.y = boxes[4 * i + 1];
+                aabb.w = boxes[4 * i + 2] - aabb.x;
+                aabb.h = boxes[4 * i + 3] - aabb.y;
+                physics.getStaticTree().forEachOverlapping(bodies[i], staticCollector);
+            }
+
+        // 2. Paires proches et premières prédictions
+        findPairs();
+        for (int p = 0; p < pairCount; ++p)
+            predict(pairs[2 * p], pairs[2 * p + 1], 0);
+
+        // 3. Evénements
+        int maxEvents = MAX_EVENTS_PER_BODY * participantCount;
+        while (heapSize > 0 && eventCount < maxEvents) {
+
+            float time = heapTimes[0];
+            int a = heapA[0], b = heapB[0];
+            boolean valid = heapCountA[0] == collisionCounts[a] && heapCountB[0] == collisionCounts[b];
+            pop();
+
+            if (!valid)
+                continue;
+
+            advance(a, time);
+            advance(b, time);
+            if (!bounce(a, b, time))
+                continue;
+
+            // Un obstacle n'est pas dévié : ses autres prédictions restent valables
+            ++eventCount;
+            ++collisionCounts[a];
+            if (participant[b])
+                ++collisionCounts[b];
+
+            extendReach(a);
+            repredict(a, time);
+            if (participant[b]) {
+                extendReach(b);
+                repredict(b, time);
+            }
+        }
+
+        // 4. Fin du tick
+        for (int i = 0; i < bodyCount; ++i)
+            advance(i, step);
+
+        correctPositions();
+
+        for (int i = 0; i < bodyCount; ++i)
+            if (participant[i]) {
+                bodies[i].setPos(posX[i], posY[i]);
+                bodies[i].setVel(velX[i], velY[i]);
+                bodies[i].updateAABB();
+                physics.fattenAABB(bodies[i]);
+            }
+
+        return true;
+    }
+
+    /**
+     * Informe si la paire est résolue par le solveur lors de ce tick, et ne doit donc pas être testée par la narrow phase
+     * @param entity 1ère entité
+     * @param target 2ème entité
+     * @return true si les deux entités sont indexées et qu'au moins une est un participant
+     */
+    public boolean handles(Entity entity, Entity target) {
+
+        int a = indexOf(entity), b = indexOf(target);
+        return a >= 0 && b >= 0 && (participant[a] || participant[b]);
+    }
+
+    /**
+     * Informe si une entité peut être traitée par événements
+     * @param entity entité
+     * @return true pour un cercle dynamique, éveillé, sans listener
+     */
+    private static boolean isParticipant(Entity entity) {
+
+        return entity instanceof Circle && entity.isActivated() && !entity.isKinematic() && !entity.isSleeping()
+                && entity.getCollisionType() == Collision.CollisionType.CLASSIC && entity.getCollisionListeners().isEmpty();
+    }
+
+    /**
+     * Indexe une entité statique atteignable par un participant, si elle ne l'est pas déjà
+     * @param entity entité statique
+     */
+    private void indexObstacle(Entity entity) {
+
+        if (indexOf(entity) < 0 && entity.getCollisionType() != Collision.CollisionType.IGNORE)
+            index(entity, false);
+    }
+
+    /**
+     * Attribue un indice à une entité et relève son état. Un participant est ramené au début du tick,
+     * un obstacle reste en fin de tick (sa position à l'instant t est pos + vel * (t - step))
+     * @param entity entité
+     * @param isParticipant true pour un participant, false pour un obstacle
+     */
+    private void index(Entity entity, boolean isParticipant) {
+
+        if (bodyCount == bodies.length)
+            grow(Math.max(64, 2 * bodies.length));
+
+        int i = bodyCount++;
+        bodies[i] = entity;
+        participant[i] = isParticipant;
+        firstLinks[i] = -1;
+        entity.setSolverIndex(i);
+
+        Vec2f pos = entity.getPos(), vel = entity.getVel();
+        velX[i] = vel.x;
+        velY[i] = vel.y;
+        posX[i] = isParticipant ? pos.x - vel.x * step : pos.x;
+        posY[i] = isParticipant ? pos.y - vel.y * step : pos.y;
+        times[i] = isParticipant ? 0 : step;
+
+        invMass[i] = isParticipant ? entity.getInertia().getMassInv() : 0;
+        radius[i] = entity instanceof Circle ? ((Circle) entity).getR() : 0;
+        restitution[i] = entity.getMaterial().getRestitution();
+        collisionCounts[i] = 0;
+
+        // Zone atteignable : tant que sa vitesse n'augmente pas, un participant reste à moins de |v| * step de son point de départ.
+        // Un obstacle suit son trajet rectiligne du tick
+        AABB aabb = entity.getAABB();
+        if (isParticipant) {
+            ++participantCount;
+            float reach = (float) Math.sqrt(vel.x * vel.x + vel.y * vel.y) * step + radius[i];
+            boxes[4 * i] = posX[i] - reach;
+            boxes[4 * i + 1] = posY[i] - reach;
+            boxes[4 * i + 2] = posX[i] + reach;
+            boxes[4 * i + 3] = posY[i] + reach;
+        } else {
+            float dx = vel.x * step, dy = vel.y * step;
+            boxes[4 * i] = Math.min(aabb.x, aabb.x - dx);
+            boxes[4 * i + 1] = Math.min(aabb.y, aabb.y - dy);
+            boxes[4 * i + 2] = Math.max(aabb.x + aabb.w, aabb.x + aabb.w - dx);
+            boxes[4 * i + 3] = Math.max(aabb.y + aabb.h, aabb.y + aabb.h - dy);
+        }
+    }
+
+    /**
+     * Renvoie l'indice d'une entité pour ce tick
+     * @param entity entité
+     * @return indice, -1 si l'entité n'est pas indexée
+     */
+    private int indexOf(Entity entity) {
+
+        int index = entity.getSolverIndex();
+        return index >= 0 && index < bodyCount && bodies[index] == entity ? index : -1;
+    }
+
+    /**
+     * Agrandit les tableaux relatifs aux entités
+     * @param capacity nouvelle capacité
+     */
+    private void grow(int capacity) {
+
+        bodies = Arrays.copyOf(bodies, capacity);
+        participant = Arrays.copyOf(participant, capacity);
+        posX = Arrays.copyOf(posX, capacity);
+        posY = Arrays.copyOf(posY, capacity);
+        velX = Arrays.copyOf(velX, capacity);
+        velY = Arrays.copyOf(velY, capacity);
+        times = Arrays.copyOf(times, capacity);
+        invMass = Arrays.copyOf(invMass, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        restitution = Arrays.copyOf(restitution, capacity);
+        collisionCounts = Arrays.copyOf(collisionCounts, capacity);
+        boxes = Arrays.copyOf(boxes, 4 * capacity);
+        sortKeys = Arrays.copyOf(sortKeys, capacity);
+        sortedMinX = Arrays.copyOf(sortedMinX, capacity);
+        ranks = Arrays.copyOf(ranks, capacity);
+        firstLinks = Arrays.copyOf(firstLinks, capacity);
+    }
+
+    /**
+     * Trouve les paires d'entités dont les zones atteignables se chevauchent (tri et balayage sur x) et au moins une est un participant
+     */
+    private void findPairs() {
+
+        for (int i = 0; i < bodyCount; ++i) {
+
+            // Les bits d'un float, corrigés pour les négatifs, sont ordonnés comme le float
+            int bits = Float.floatToIntBits(boxes[4 * i]);
+            bits ^= (bits >> 31) & 0x7fffffff;
+            sortKeys[i] = (long) bits << 32 | i;
+        }
+        Arrays.sort(sortKeys, 0, bodyCount);
+
+        sortedCount = bodyCount;
+        maxWidth = maxShift = 0;
+        for (int s = 0; s < bodyCount; ++s) {
+            int i = (int) sortKeys[s];
+            sortedMinX[s] = boxes[4 * i];
+            ranks[i] = s;
+            if (participant[i])
+                maxWidth = Math.max(maxWidth, boxes[4 * i + 2] - boxes[4 * i]);
+        }
+
+        for (int s = 0; s < bodyCount; ++s) {
+
+            int i = (int) sortKeys[s];
+            for (int t = s + 1; t < bodyCount; ++t) {
+
+                int j = (int) sortKeys[t];
+                if (boxes[4 * j] > boxes[4 * i + 2])
+                    break;
+
+                if ((participant[i] || participant[j]) && boxes[4 * j + 1] <= boxes[4 * i + 3] && boxes[4 * i + 1] <= boxes[4 * j + 3])
+                    addPair(i, j);
+            }
+        }
+    }
+
+    /**
+     * Ajoute une paire proche et chaîne chaque entité dans les voisines de l'autre
+     */
+    private void addPair(int i, int j) {
+
+        if (2 * pairCount + 2 > pairs.length) {
+            pairs = Arrays.copyOf(pairs, Math.max(64, 2 * pairs.length));
+            nextLinks = Arrays.copyOf(nextLinks, pairs.length);
+        }
+
+        int link = 2 * pairCount++;
+        pairs[link] = i;
+        pairs[link + 1] = j;
+
+        nextLinks[link] = firstLinks[i];
+        firstLinks[i] = link;
+        nextLinks[link + 1] = firstLinks[j];
+        firstLinks[j] = link + 1;
+    }
+
+    /**
+     * Après une collision, agrandit si besoin la zone atteignable du participant i pour qu'elle contienne son nouveau trajet
+     * jusqu'à la fin du tick (une collision peut l'accélérer), et ajoute les paires avec les entités que la zone atteint désormais
+     */
+    private void extendReach(int i) {
+
+        float endX = positionX(i, step), endY = positionY(i, step), r = radius[i];
+        float minX = Math.min(Math.min(posX[i], endX) - r, boxes[4 * i]), minY = Math.min(Math.min(posY[i], endY) - r, boxes[4 * i + 1]);
+        float maxX = Math.max(Math.max(posX[i], endX) + r, boxes[4 * i + 2]), maxY = Math.max(Math.max(posY[i], endY) + r, boxes[4 * i + 3]);
+
+        if (minX == boxes[4 * i] && minY == boxes[4 * i + 1] && maxX == boxes[4 * i + 2] && maxY == boxes[4 * i + 3])
+            return;
+
+        extended = i;
+        reachMinX = minX;
+        reachMinY = minY;
+        reachMaxX = maxX;
+        reachMaxY = maxY;
+
+        // Nouvelles paires : entités chevauchant la nouvelle zone mais pas l'ancienne. Les entités statiques sont données par leur arbre
+        AABB aabb = bodies[i].getAABB();
+        aabb.x = minX;
+        aabb.y = minY;
+        aabb.w = maxX - minX;
+        aabb.h = maxY - minY;
+        physics.getStaticTree().forEachOverlapping(bodies[i], reachCollector);
+
+        for (int k = 0; k < kinematicCount; ++k)
+            addNewPair(i, kinematics[k]);
+
+        // Une zone ne fait que grandir : un participant qui chevauche [minX, maxX] avait au tri une borne minimale dans [minX - maxWidth, maxX + maxShift]
+        maxShift = Math.max(maxShift, sortedMinX[ranks[i]] - minX);
+        maxWidth = Math.max(maxWidth, maxX - minX);
+        for (int k = lowerBound(minX - maxWidth); k < sortedCount && sortedMinX[k] <= maxX + maxShift; ++k)
+            if (participant[(int) sortKeys[k]])
+                addNewPair(i, (int) sortKeys[k]);
+
+        boxes[4 * i] = minX;
+        boxes[4 * i + 1] = minY;
+        boxes[4 * i + 2] = maxX;
+        boxes[4 * i + 3] = maxY;
+    }
+
+    /**
+     * Ajoute la paire (i, j) si la zone de j chevauche la nouvelle zone de i mais pas l'ancienne (sinon la paire existe déjà)
+     */
+    private void addNewPair(int i, int j) {
+
+        if (j != i && overlaps(j, reachMinX, reachMinY, reachMaxX, reachMaxY) && !overlaps(j, boxes[4 * i], boxes[4 * i + 1], boxes[4 * i + 2], boxes[4 * i + 3]))
+            addPair(i, j);
+    }
+
+    /**
+     * Renvoie le rang de la première entité triée dont la borne minimale sur x au tri est supérieure ou égale à 'x'
+     */
+    private int lowerBound(float x) {
+
+        int low = 0, high = sortedCount;
+        while (low < high) {
+
+            int middle = (low + high) >>> 1;
+            if (sortedMinX[middle] < x)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        return low;
+    }
+
+    /**
+     * Informe si la zone atteignable de l'entité j chevauche une boîte
+     */
+    private boolean overlaps(int j, float minX, float minY, float maxX, float maxY) {
+
+        return boxes[4 * j] <= maxX && minX <= boxes[4 * j + 2] && boxes[4 * j + 1] <= maxY && minY <= boxes[4 * j + 3];
+    }
+
+    /**
+     * Recalcule les prédictions de toutes les paires impliquant l'entité i, après une collision à l'instant 'now'
+     */
+    private void repredict(int i, float now) {
+
+        for (int link = firstLinks[i]; link >= 0; link = nextLinks[link])
+            predict(i, pairs[link ^ 1], now);
+    }
+
+    /**
+     * Prédit l'instant du prochain contact entre deux entités après l'instant 'now' et l'ajoute à la file s'il a lieu pendant le tick
+     */
+    private void predict(int a, int b, float now) {
+
+        if (!participant[a]) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+
+        float time;
+        if (bodies[b] instanceof Circle)
+            time = predictCircle(a, b, now);
+        else if (bodies[b] instanceof Polygon)
+            time = predictPolygon(a, b, now);
+        else
+            return;
+
+        if (time <= step)
+            push(time, a, b);
+    }
+
+    /**
+     * Instant du contact entre le participant a et le cercle b : plus petite racine de |dp + t * dv| = ra + rb
+     * @return instant du contact, +infini s'ils ne se rapprochent pas ou ne se touchent pas
+     */
+    private float predictCircle(int a, int b, float now) {
+
+        double dpx = positionX(a, now) - positionX(b, now), dpy = positionY(a, now) - positionY(b, now);
+        double dvx = velX[a] - velX[b], dvy = velY[a] - velY[b];
+
+        double approach = dpx * dvx + dpy * dvy;
+        if (approach >= 0)
+            return Float.POSITIVE_INFINITY;
+
+        double r = radius[a] + radius[b];
+        double c = dpx * dpx + dpy * dpy - r * r;
+        if (c <= 0) // Déjà en contact et se rapprochant
+            return now;
+
+        double dv2 = dvx * dvx + dvy * dvy;
+        double discriminant = approach * approach - dv2 * c;
+        if (discriminant < 0)
+            return Float.POSITIVE_INFINITY;
+
+        return (float) (now + (-approach - Math.sqrt(discriminant)) / dv2);
+    }
+
+    /**
+     * Instant du contact entre le participant a et le polygone b (obstacle dont la rotation est ignorée pendant le tick), par avancement conservatif
+     * du centre du cercle dans le repère du polygone en fin de tick
+     * @return instant du contact, +infini s'ils ne se touchent pas pendant le tick
+     */
+    private float predictPolygon(int a, int b, float now) {
+
+        float wx = velX[a] - velX[b], wy = velY[a] - velY[b];
+        float speed = (float) Math.sqrt(wx * wx + wy * wy);
+        if (speed == 0)
+            return Float.POSITIVE_INFINITY;
+
+        float tolerance = TOLERANCE * radius[a];
+        float time = now;
+        float distance = polygonDistance(a, b, time);
+
+        if (distance <= tolerance) // Déjà en contact : événement immédiat s'ils se rapprochent
+            return polygonDistance(a, b, time + tolerance / speed) < distance ? now : Float.POSITIVE_INFINITY;
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS; ++iteration) {
+
+            time += distance / speed;
+            if (time > step)
+                return Float.POSITIVE_INFINITY;
+
+            distance = polygonDistance(a, b, time);
+            if (distance <= tolerance)
+                return time;
+        }
+
+        return Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Distance signée entre le cercle a et le polygone b à l'instant 'time'
+     */
+    private float polygonDistance(int a, int b, float time) {
+
+        return Geometry.signedDistanceToPolygon(relativeX(a, b, time), relativeY(a, b, time), ((Polygon) bodies[b]).getVertices()) - radius[a];
+    }
+
+    /**
+     * Position du centre du participant a, à l'instant 'time', dans le repère du polygone b en fin de tick (on retranche le déplacement restant de b)
+     */
+    private float relativeX(int a, int b, float time) {
+
+        return positionX(a, time) - velX[b] * (time - step);
+    }
+
+    private float relativeY(int a, int b, float time) {
+
+        return positionY(a, time) - velY[b] * (time - step);
+    }
+
+    /**
+     * Position de l'entité i à l'instant 'time', en supposant sa vitesse constante depuis sa dernière collision
+     */
+    private float positionX(int i, float time) {
+
+        return posX[i] + velX[i] * (time - times[i]);
+    }
+
+    private float positionY(int i, float time) {
+
+        return posY[i] + velY[i] * (time - times[i]);
+    }
+
+    /**
+     * Avance l'entité i jusqu'à l'instant 'time'
+     */
+    private void advance(int i, float time) {
+
+        posX[i] = positionX(i, time);
+        posY[i] = positionY(i, time);
+        times[i] = time;
+    }
+
+    /**
+     * Applique l'impulsion de rebond entre le participant a et l'entité b, avancés à l'instant 'time'
+     * @return false si les entités ne se rapprochent pas (aucune impulsion)
+     */
+    private boolean bounce(int a, int b, float time) {
+
+        // Normale de b vers a
+        float nx, ny;
+        if (bodies[b] instanceof Circle) {
+            nx = posX[a] - posX[b];
+            ny = posY[a] - posY[b];
+        } else {
+            float x = relativeX(a, b, time), y = relativeY(a, b, time);
+            Vec2f[] vertices = ((Polygon) bodies[b]).getVertices();
+            Geometry.closestPointOnPolygon(x, y, vertices, closest);
+
+            float sign = Geometry.signedDistanceToPolygon(x, y, vertices) < 0 ? -1 : 1;
+            nx = sign * (x - closest.x);
+            ny = sign * (y - closest.y);
+        }
+
+        float length = (float) Math.sqrt(nx * nx + ny * ny);
+        if (length == 0)
+            return false;
+        nx /= length;
+        ny /= length;
+
+        float normalSpeed = (velX[a] - velX[b]) * nx + (velY[a] - velY[b]) * ny;
+        if (normalSpeed >= 0)
+            return false;
+
+        float e = normalSpeed < -RESTITUTION_THRESHOLD ? Math.min(restitution[a], restitution[b]) : 0;
+        float impulse = -(1 + e) * normalSpeed / (invMass[a] + invMass[b]);
+
+        velX[a] += impulse * invMass[a] * nx;
+        velY[a] += impulse * invMass[a] * ny;
+        velX[b] -= impulse * invMass[b] * nx;
+        velY[b] -= impulse * invMass[b] * ny;
+
+        return true;
+    }
+
+    /**
+     * Sépare en fin de tick les paires qui se chevauchent encore (chevauchement initial, événements abandonnés),
+     * la narrow phase ne s'en chargeant pas
+     */
+    private void correctPositions() {
+
+        for (int p = 0; p < pairCount; ++p) {
+
+            int a = pairs[2 * p], b = pairs[2 * p + 1];
+            if (!participant[a]) {
+                int swap = a;
+                a = b;
+                b = swap;
+            }
+
+            float nx, ny, penetration;
+            if (bodies[b] instanceof Circle) {
+
+                nx = posX[a] - posX[b];
+                ny = posY[a] - posY[b];
+                float distance = (float) Math.sqrt(nx * nx + ny * ny);
+                penetration = radius[a] + radius[b] - distance;
+                if (penetration <= PENETRATION_SLOP || distance == 0)
+                    continue;
+
+                nx /= distance;
+                ny /= distance;
+
+            } else if (bodies[b] instanceof Polygon) {
+
+                Vec2f[] vertices = ((Polygon) bodies[b]).getVertices();
+                float x = posX[a], y = posY[a];
+                float distance = Geometry.signedDistanceToPolygon(x, y, vertices);
+                penetration = radius[a] - distance;
+                if (penetration <= PENETRATION_SLOP || distance == 0)
+                    continue;
+
+                Geometry.closestPointOnPolygon(x, y, vertices, closest);
+                float sign = distance < 0 ? -1 : 1;
+                nx = sign * (x - closest.x) / Math.abs(distance);
+                ny = sign * (y - closest.y) / Math.abs(distance);
+
+            } else
+                continue;
+
+            float correction = (penetration - PENETRATION_SLOP) * POSITION_CORRECTION / (invMass[a] + invMass[b]);
+            posX[a] += correction * invMass[a] * nx;
+            posY[a] += correction * invMass[a] * ny;
+            posX[b] -= correction * invMass[b] * nx;
+            posY[b] -= correction * invMass[b] * ny;
+        }
+    }
+
+    /**
+     * Ajoute un événement à la file
+     */
+    private void push(float time, int a, int b) {
+
+        if (heapSize == heapTimes.length) {
+            int capacity = Math.max(64, 2 * heapTimes.length);
+            heapTimes = Arrays.copyOf(heapTimes, capacity);
+            heapA = Arrays.copyOf(heapA, capacity);
+            heapB = Arrays.copyOf(heapB, capacity);
+            heapCountA = Arrays.copyOf(heapCountA, capacity);
+            heapCountB = Arrays.copyOf(heapCountB, capacity);
+        }
+
+        int k = heapSize++;
+        while (k > 0) {
+
+            int parent = (k - 1) >>> 1;
+            if (!before(time, a, b, heapTimes[parent], heapA[parent], heapB[parent]))
+                break;
+
+            move(parent, k);
+            k = parent;
+        }
+
+        heapTimes[k] = time;
+        heapA[k] = a;
+        heapB[k] = b;
+        heapCountA[k] = collisionCounts[a];
+        heapCountB[k] = collisionCounts[b];
+    }
+
+    /**
+     * Retire l'événement le plus tôt de la file
+     */
+    private void pop() {
+
+        int last = --heapSize;
+        float time = heapTimes[last];
+        int a = heapA[last], b = heapB[last], countA = heapCountA[last], countB = heapCountB[last];
+
+        int k = 0;
+        while (2 * k + 1 < heapSize) {
+
+            int child = 2 * k + 1;
+            if (child + 1 < heapSize && before(heapTimes[child + 1], heapA[child + 1], heapB[child + 1], heapTimes[child], heapA[child], heapB[child]))
+                ++child;
+
+            if (!before(heapTimes[child], heapA[child], heapB[child], time, a, b))
+                break;
+
+            move(child, k);
+            k = child;
+        }
+
+        heapTimes[k] = time;
+        heapA[k] = a;
+        heapB[k] = b;
+        heapCountA[k] = countA;
+        heapCountB[k] = countB;
+    }
+
+    /**
+     * Ordre des événements : par instant, puis par indices des entités pour que les événements simultanés soient toujours traités dans le même ordre
+     */
+    private static boolean before(float time, int a, int b, float otherTime, int otherA, int otherB) {
+
+        if (time != otherTime)
+            return time < otherTime;
+
+        return a != otherA ? a < otherA : b < otherB;
+    }
+
+    /**
+     * Copie l'événement de la case 'from' du tas dans la case 'to'
+     */
+    private void move(int from, int to) {
+
+        heapTimes[to] = heapTimes[from];
+        heapA[to] = heapA[from];
+        heapB[to] = heapB[from];
+        heapCountA[to] = heapCountA[from];
+        heapCountB[to] = heapCountB[from];
+    }
+
+    /**
+     * Renvoie le nombre d'événements résolus lors du dernier tick
+     * @return eventCount
+     */
+    public int getEventCount() {
+
+        return eventCount;
+    }
+
+    public String toString() {
+
+        return "EventSolver[participants=" + participantCount + ", bodies=" + bodyCount + ", pairs=" + pairCount + ", events=" + eventCount + "]";
+    }
+}
@@ -0,0 +1,391 @@
+package fr.insalyon.mxyns.collinsa.physics.collisions;
+
+import fr.insalyon.mxyns.collinsa.physics.constraints.DistanceConstraints;
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+import fr.insalyon.mxyns.collinsa.physics.forces.Force;
+import fr.insalyon.mxyns.collinsa.threads.WorkerPool;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Résout les collisions d'un tick par îlots de contacts : deux entités sont dans le même îlot si elles sont reliées par une chaîne
+ * de collisions ou de forces entre entités (ressorts, ...). La résolution d'une collision ne modifie que les entités de son îlot,
+ * les îlots peuvent donc être résolus en parallèle, chacun dans l'ordre de détection de ses collisions.
+ *
+ * Les entités cinématiques ne sont jamais modifiées par une collision : elles ne relient pas les îlots (un sol touché par deux piles
+ * séparées ne les fusionne pas). Les îlots sont construits par union-find sur des indices attribués aux entités pour le tick.
+ * Les îlots dont une entité a des CollisionListener sont résolus sur le thread appelant, après les autres, pour que les listeners
+ * ne soient jamais appelés depuis un autre thread.
+ *
+ * Les mêmes îlots servent à endormir les entités au repos (sleep) : un îlot ne s'endort que si toutes ses entités sont au repos
+ */
+public class IslandSolver {
+
+    /**
+     * Nombre minimal de collisions par bloc : les petits îlots sont regroupés pour ne pas créer une tâche par îlot
+     */
+    private static final int BLOCK_GRAIN = 64;
+
+    /**
+     * Entités (non cinématiques) indexées pour le tick, et leur parent dans l'union-find
+     */
+    private Entity[] bodies = new Entity[0];
+    private int[] parent = new int[0];
+
+    /**
+     * Nombre d'entités indexées
+     */
+    private int bodyCount;
+
+    /**
+     * Pour chaque racine : numéro de son îlot, et si l'îlot doit être résolu sur le thread appelant
+     */
+    private int[] rootIsland = new int[0];
+    private boolean[] rootSerial = new boolean[0];
+
+    /**
+     * Racine de l'îlot de chaque collision, -1 si elle n'implique aucune entité indexée (deux entités cinématiques)
+     */
+    private int[] collisionRoots = new int[0];
+
+    /**
+     * Collisions rangées îlot par îlot (dans l'ordre de détection au sein d'un îlot), et début de chaque îlot dans ce rangement
+     */
+    private Collision[] sorted = new Collision[0];
+    private int[] islandStart = new int[1];
+
+    /**
+     * Nombre d'îlots, dont les 'parallelIslandCount' premiers peuvent être résolus en parallèle
+     */
+    private int islandCount, parallelIslandCount;
+
+    /**
+     * Premier îlot de chaque bloc de résolution parallèle (blockStart[blockCount] = parallelIslandCount)
+     */
+    private int[] blockStart = new int[1];
+
+    /**
+     * Nombre de passes de résolution des vitesses de la résolution en cours
+     */
+    private int iterations;
+
+    /**
+     * Pour chaque racine : plus petite durée de repos des entités de l'îlot, et entités de l'îlot s'il s'endort
+     */
+    private float[] rootSleepTime = new float[0];
+    private Entity[][] rootMembers = new Entity[0][];
+
+    /**
+     * Référence unique vers la résolution d'un bloc d'îlots
+     */
+    private final IntConsumer solveBlock = this::solveBlock;
+
+    /**
+     * Construit les îlots puis les résout :
+     *  1. chaque entité non cinématique impliquée dans une collision reçoit un indice, les collisions et les forces entre entités indexées unissent leurs îlots
+     *  2. les îlots reçoivent un numéro (ceux à résoudre sur le thread appelant en dernier) et les collisions sont rangées par îlot
+     *  3. les îlots sont regroupés en blocs résolus en parallèle, puis les îlots restants sont résolus sur le thread appelant
+     *
+     * @param collisions collisions détectées lors du tick, dans leur ordre de détection
+     * @param forces forces entre entités de la simulation
+     * @param pool threads de la simulation
+     * @param iterations nombre de passes de résolution des vitesses sur chaque îlot
+     */
+    public void solve(List<Collision> collisions, List<Force> forces, WorkerPool pool, int iterations) {
+
+        int collisionCount = collisions.size();
+        if (collisionCount == 0)
+            return;
+
+        // 1. Indices et union-find
+        this.iterations = iterations;
+        bodyCount = 0;
+        if (collisionRoots.length < collisionCount) {
+            collisionRoots = new int[Math.max(collisionCount, 2 * collisionRoots.length)];
+            sorted = new Collision[collisionRoots.length];
+        }
+
+        for (Collision collision : collisions) {
+
+            int a = index(collision.getReference()), b = index(collision.getIncident());
+            if (a >= 0 && b >= 0)
+                union(a, b);
+        }
+
+        for (Force force : forces) {
+
+            int a = indexOf(force.getSource()), b = indexOf(force.getTarget());
+            if (a >= 0 && b >= 0)
+                union(a, b);
+        }
+
+        // 2. Numérotation des îlots et rangement des collisions
+        if (rootIsland.length < bodyCount) {
+            rootIsland = new int[parent.length];
+            rootSerial = new boolean[parent.length];
+        }
+        Arrays.fill(rootIsland, 0, bodyCount, -1);
+        Arrays.fill(rootSerial, 0, bodyCount, false);
+
+        boolean hasUnindexed = false;
+        for (int c = 0; c < collisionCount; ++c) {
+
+            Collision collision = collisions.get(c);
+            int a = indexOf(collision.getReference()), b = indexOf(collision.getIncident());
+            int root = a >= 0 ? find(a) : (b >= 0 ? find(b) : -1);
+
+            collisionRoots[c] = root;
+            if (root < 0)
+                hasUnindexed = true;
+            else if (!collision.getReference().getCollisionListeners().isEmpty() || !collision.getIncident().getCollisionListeners().isEmpty())
+                rootSerial[root] = true;
+        }
+
+        islandCount = 0;
+        for (int serial = 0; serial < 2; ++serial) {
+
+            for (int i = 0; i < bodyCount; ++i)
+                if (parent[i] == i && rootSerial[i] == (serial == 1))
+                    rootIsland[i] = islandCount++;
+
+            if (serial == 0)
+                parallelIslandCount = islandCount;
+        }
+
+        // Les collisions sans entité indexée forment un dernier îlot, résolu sur le thread appelant
+        int unindexedIsland = hasUnindexed ? islandCount++ : -1;
+
+        if (islandStart.length < islandCount + 1)
+            islandStart = new int[Math.max(islandCount + 1, 2 * islandStart.length)];
+        Arrays.fill(islandStart, 0, islandCount + 1, 0);
+
+        for (int c = 0; c < collisionCount; ++c)
+            ++islandStart[islandOf(c, unindexedIsland) + 1];
+
+        for (int i = 1; i <= islandCount; ++i)
+            islandStart[i] += islandStart[i - 1];
+
+        for (int c = 0; c < collisionCount; ++c)
+            sorted[islandStart[islandOf(c, unindexedIsland)]++] = collisions.get(c);
+
+        // Les débuts ont été décalés d'un îlot par le rangement
+        System.arraycopy(islandStart, 0, islandStart, 1, islandCount);
+        islandStart[0] = 0;
+
+        // 3. Blocs d'îlots, résolus en parallèle
+        int blockCount = 0;
+        if (blockStart.length < parallelIslandCount + 1)
+            blockStart = new int[parallelIslandCount + 1];
+
+        for (int i = 0; i < parallelIslandCount; ++i)
+            if (blockCount == 0 || islandStart[i] - islandStart[blockStart[blockCount - 1]] >= BLOCK_GRAIN)
+                blockStart[blockCount++] = i;
+        blockStart[blockCount] = parallelIslandCount;
+
+        pool.forEachBlock(blockCount, solveBlock);
+
+        Collision.resolveAll(sorted, islandStart[parallelIslandCount], collisionCount, iterations);
+
+        Arrays.fill(sorted, 0, collisionCount, null);
+        Arrays.fill(bodies, 0, bodyCount, null);
+    }
+
+    /**
+     * Résout les collisions d'un bloc d'îlots. Exécuté par un des threads de la simulation
+     * @param block numéro du bloc
+     */
+    private void solveBlock(int block) {
+
+        Collision.resolveAll(sorted, islandStart[blockStart[block]], islandStart[blockStart[block + 1]], iterations);
+    }
+
+    /**
+     * Endort les îlots dont toutes les entités sont au repos depuis au moins 'timeToSleep'. Les îlots sont construits comme pour solve,
+     * les entités désactivées ne reliant pas les îlots (comme les entités cinématiques). Une entité sans collision, force ni contrainte forme un îlot à elle seule.
+     * Appelé sur le thread appelant, une fois les collisions du tick résolues et les entités touchées réveillées
+     *
+     * @param collisions collisions détectées lors du tick
+     * @param forces forces entre entités de la simulation
+     * @param constraints contraintes de distance entre entités de la simulation
+     * @param entities entités de la simulation
+     * @param timeToSleep durée de repos (s) nécessaire pour s'endormir
+     */
+    public void sleep(List<Collision> collisions, List<Force> forces, DistanceConstraints constraints, Iterable<Entity> entities, float timeToSleep) {
+
+        bodyCount = 0;
+
+        for (Collision collision : collisions) {
+
+            int a = sleepIndex(collision.getReference()), b = sleepIndex(collision.getIncident());
+            if (a >= 0 && b >= 0)
+                union(a, b);
+        }
+
+        for (Force force : forces) {
+
+            int a = sleepIndex(force.getSource()), b = sleepIndex(force.getTarget());
+            if (a >= 0 && b >= 0)
+                union(a, b);
+        }
+
+        for (int c = 0; c < constraints.size(); ++c) {
+
+            int a = sleepIndex(constraints.getBodyA(c)), b = sleepIndex(constraints.getBodyB(c));
+            if (a >= 0 && b >= 0)
+                union(a, b);
+        }
+
+        if (rootSleepTime.length < bodyCount) {
+            rootSleepTime = new float[parent.length];
+            rootMembers = new Entity[parent.length][];
+        }
+        if (rootIsland.length < bodyCount) {
+            rootIsland = new int[parent.length];
+            rootSerial = new boolean[parent.length];
+        }
+        Arrays.fill(rootSleepTime, 0, bodyCount, Float.POSITIVE_INFINITY);
+        Arrays.fill(rootIsland, 0, bodyCount, 0);
+
+        // Durée de repos de chaque îlot, puis nombre d'entités des îlots qui s'endorment
+        for (int i = 0; i < bodyCount; ++i) {
+            int root = find(i);
+            rootSleepTime[root] = Math.min(rootSleepTime[root], bodies[i].getSleepTime());
+        }
+
+        for (int i = 0; i < bodyCount; ++i)
+            if (rootSleepTime[find(i)] >= timeToSleep)
+                ++rootIsland[find(i)];
+
+        for (int i = 0; i < bodyCount; ++i) {
+
+            int root = find(i);
+            if (rootSleepTime[root] < timeToSleep)
+                continue;
+
+            if (rootMembers[root] == null) {
+                rootMembers[root] = new Entity[rootIsland[root]];
+                rootIsland[root] = 0;
+            }
+            rootMembers[root][rootIsland[root]++] = bodies[i];
+        }
+
+        for (int i = 0; i < bodyCount; ++i)
+            if (rootMembers[i] != null) {
+                for (Entity entity : rootMembers[i])
+                    entity.sleep(rootMembers[i]);
+                rootMembers[i] = null;
+            }
+
+        // Entités isolées
+        for (Entity entity : entities)
+            if (!entity.isSleeping() && entity.isActivated() && !entity.isKinematic() && indexOf(entity) < 0 && entity.getSleepTime() >= timeToSleep)
+                entity.sleep(new Entity[] { entity });
+
+        Arrays.fill(bodies, 0, bodyCount, null);
+    }
+
+    /**
+     * Renvoie l'indice d'une entité pour la mise en sommeil en lui en attribuant un si besoin
+     * @param entity entité (éventuellement null)
+     * @return indice, -1 si l'entité ne relie pas les îlots (absente, cinématique, désactivée ou déjà endormie)
+     */
+    private int sleepIndex(Entity entity) {
+
+        if (entity == null || !entity.isActivated() || entity.isSleeping())
+            return -1;
+
+        return index(entity);
+    }
+
+    /**
+     * Renvoie l'îlot de la c-ième collision
+     */
+    private int islandOf(int c, int unindexedIsland) {
+
+        return collisionRoots[c] < 0 ? unindexedIsland : rootIsland[collisionRoots[c]];
+    }
+
+    /**
+     * Renvoie l'indice d'une entité pour ce tick en lui en attribuant un si besoin
+     * @param entity entité
+     * @return indice, -1 si l'entité est cinématique (elle ne relie pas les îlots)
+     */
+    private int index(Entity entity) {
+
+        if (entity.isKinematic())
+            return -1;
+
+        int index = indexOf(entity);
+        if (index >= 0)
+            return index;
+
+        if (bodyCount == bodies.length) {
+            int capacity = Math.max(64, 2 * bodies.length);
+            bodies = Arrays.copyOf(bodies, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+        }
+
+        bodies[bodyCount] = entity;
+        parent[bodyCount] = bodyCount;
+        entity.setSolverIndex(bodyCount);
+
+        return bodyCount++;
+    }
+
+    /**
+     * Renvoie l'indice d'une entité pour ce tick sans en attribuer
+     * @param entity entité (éventuellement null)
+     * @return indice, -1 si l'entité n'est pas indexée
+     */
+    private int indexOf(Entity entity) {
+
+        if (entity == null)
+            return -1;
+
+        int index = entity.getSolverIndex();
+        return index >= 0 && index < bodyCount && bodies[index] == entity ? index : -1;
+    }
+
+    /**
+     * Renvoie la racine de l'îlot d'une entité indexée, en compressant le chemin parcouru (par division)
+     */
+    private int find(int i) {
+
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+
+        return i;
+    }
+
+    /**
+     * Fusionne les îlots de deux entités indexées. La plus petite racine est conservée, la numérotation des îlots suit donc l'ordre de détection
+     */
+    private void union(int a, int b) {
+
+        a = find(a);
+        b = find(b);
+
+        if (a < b)
+            parent[b] = a;
+        else if (b < a)
+            parent[a] = b;
+    }
+
+    /**
+     * Renvoie le nombre d'îlots construits lors de la dernière résolution
+     * @return islandCount
+     */
+    public int getIslandCount() {
+
+        return islandCount;
+    }
+
+    public String toString() {
+
+        return "IslandSolver[islands=" + islandCount + ", parallel=" + parallelIslandCount + "]";
+    }
+}
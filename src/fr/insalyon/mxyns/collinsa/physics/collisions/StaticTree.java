@@ -0,0 +1,264 @@
+package fr.insalyon.mxyns.collinsa.physics.collisions;
+
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Arbre de volumes englobants des entités statiques (murs, sols, décor), construit une seule fois puis seulement parcouru.
+ * Contrairement aux broad phases, il n'est pas mis à jour à chaque tick : il n'est reconstruit que lorsque l'ensemble des entités statiques change
+ * (Physics.addStaticEntity, removeEntity, ...). Les entités statiques ne sont donc ni réinsérées ni testées entre elles, seules les entités
+ * dynamiques le parcourent pour trouver les entités statiques qu'elles touchent.
+ *
+ * L'arbre est construit de haut en bas : chaque noeud coupe ses entités en deux moitiés selon la médiane des centres le long de son plus grand côté.
+ * Les noeuds sont rangés dans des tableaux plats, une feuille par entité.
+ *
+ * StaticTree Complexity:
+ * | Build      | Query        |
+ * | O(n log n) | O(log n + k) |
+ */
+public class StaticTree {
+
+    /**
+     * Noeud inexistant
+     */
+    private static final int NULL = -1;
+
+    /**
+     * AABB de chaque noeud : 4 valeurs par noeud (minX, minY, maxX, maxY)
+     */
+    private float[] bounds = new float[0];
+
+    /**
+     * Enfants de chaque noeud. child1 == NULL <=> le noeud est une feuille
+     */
+    private int[] child1 = new int[0], child2 = new int[0];
+
+    /**
+     * Entité de chaque feuille, null pour les noeuds internes
+     */
+    private Entity[] nodeEntities = new Entity[0];
+
+    /**
+     * Entités en cours de rangement et centres de leurs AABB, utilisés uniquement pendant la construction
+     */
+    private Entity[] order = new Entity[0];
+    private float[] centers = new float[0];
+
+    /**
+     * Nombre de noeuds et d'entités de l'arbre
+     */
+    private int nodeCount, entityCount;
+
+    /**
+     * Piles de parcours de l'arbre, réutilisées d'une requête à l'autre. Une pile pour le thread de calcul, une pour les requêtes ponctuelles (interface)
+     */
+    private int[] tickStack = new int[64], queryStack = new int[64];
+
+    /**
+     * Reconstruit l'arbre à partir des entités statiques. Leurs AABB sont recalculées au passage
+     * @param entities entités statiques de la simulation
+     */
+    public void build(List<Entity> entities) {
+
+        entityCount = entities.size();
+        nodeCount = 0;
+
+        if (order.length < entityCount) {
+            int capacity = Math.max(16, 2 * entityCount);
+            order = new Entity[capacity];
+            centers = new float[2 * capacity];
+            bounds = new float[4 * 2 * capacity];
+            child1 = new int[2 * capacity];
+            child2 = new int[2 * capacity];
+            nodeEntities = new Entity[2 * capacity];
+        } else
+            Arrays.fill(nodeEntities, null);
+
+        for (int i = 0; i < entityCount; ++i) {
+
+            Entity entity = entities.get(i);
+            entity.updateAABB();
+
+            AABB aabb = entity.getAABB();
+            order[i] = entity;
+            centers[2 * i] = aabb.x + aabb.w / 2;
+            centers[2 * i + 1] = aabb.y + aabb.h / 2;
+        }
+
+        if (entityCount > 0)
+            buildNode(0, entityCount);
+
+        Arrays.fill(order, 0, entityCount, null);
+    }
+
+    /**
+     * Construit le noeud contenant les entités [from, to[ de 'order' et ses descendants
+     * @return numéro du noeud
+     */
+    private int buildNode(int from, int to) {
+
+        int node = nodeCount++;
+
+        if (to - from == 1) {
+
+            AABB aabb = order[from].getAABB();
+            int base = 4 * node;
+            bounds[base] = aabb.x;
+            bounds[base + 1] = aabb.y;
+            bounds[base + 2] = aabb.x + aabb.w;
+            bounds[base + 3] = aabb.y + aabb.h;
+
+            child1[node] = child2[node] = NULL;
+            nodeEntities[node] = order[from];
+
+            return node;
+        }
+
+        // Coupe selon le plus grand côté de la boîte englobant les centres
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (int i = from; i < to; ++i) {
+            minX = Math.min(minX, centers[2 * i]);
+            maxX = Math.max(maxX, centers[2 * i]);
+            minY = Math.min(minY, centers[2 * i + 1]);
+            maxY = Math.max(maxY, centers[2 * i + 1]);
+        }
+
+        int axis = maxX - minX >= maxY - minY ? 0 : 1;
+        int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, axis);
+
+        int first = buildNode(from, middle);
+        int second = buildNode(middle, to);
+
+        child1[node] = first;
+        child2[node] = second;
+
+        int base = 4 * node, a = 4 * first, b = 4 * second;
+        bounds[base] = Math.min(bounds[a], bounds[b]);
+        bounds[base + 1] = Math.min(bounds[a + 1], bounds[b + 1]);
+        bounds[base + 2] = Math.max(bounds[a + 2], bounds[b + 2]);
+        bounds[base + 3] = Math.max(bounds[a + 3], bounds[b + 3]);
+
+        return node;
+    }
+
+    /**
+     * Range les entités [left, right] de sorte que celle d'indice 'k' soit à sa place dans l'ordre des centres selon 'axis' (sélection rapide)
+     */
+    private void select(int left, int right, int k, int axis) {
+
+        while (left < right) {
+
+            float pivot = centers[2 * ((left + right) >>> 1) + axis];
+            int i = left, j = right;
+            while (i <= j) {
+
+                while (centers[2 * i + axis] < pivot)
+                    ++i;
+                while (centers[2 * j + axis] > pivot)
+                    --j;
+
+                if (i <= j)
+                    swap(i++, j--);
+            }
+
+            if (k <= j)
+                right = j;
+            else if (k >= i)
+                left = i;
+            else
+                return;
+        }
+    }
+
+    /**
+     * Echange deux entités en cours de rangement
+     */
+    private void swap(int i, int j) {
+
+        Entity entity = order[i];
+        order[i] = order[j];
+        order[j] = entity;
+
+        for (int axis = 0; axis < 2; ++axis) {
+            float center = centers[2 * i + axis];
+            centers[2 * i + axis] = centers[2 * j + axis];
+            centers[2 * j + axis] = center;
+        }
+    }
+
+    /**
+     * Appelle 'consumer' avec (entity, statique) pour chaque entité statique dont l'AABB chevauche celle de 'entity'.
+     * Réservé au thread de calcul (détection des collisions)
+     *
+     * @param entity entité dynamique
+     * @param consumer action à effectuer sur chaque paire
+     */
+    public void forEachOverlapping(Entity entity, BiConsumer<Entity, Entity> consumer) {
+
+        tickStack = query(entity, consumer, tickStack);
+    }
+
+    /**
+     * Comme forEachOverlapping, pour les requêtes ponctuelles faites depuis l'interface
+     *
+     * @param entity entité dont on cherche les voisines statiques
+     * @param consumer action à effectuer sur chaque couple (entity, voisine)
+     */
+    public void forEachNearby(Entity entity, BiConsumer<Entity, Entity> consumer) {
+
+        queryStack = query(entity, consumer, queryStack);
+    }
+
+    /**
+     * Parcourt l'arbre avec l'AABB de 'entity'
+     * @return pile de parcours, agrandie si besoin
+     */
+    private int[] query(Entity entity, BiConsumer<Entity, Entity> consumer, int[] stack) {
+
+        if (nodeCount == 0)
+            return stack;
+
+        AABB aabb = entity.getAABB();
+        float minX = aabb.x, minY = aabb.y, maxX = aabb.x + aabb.w, maxY = aabb.y + aabb.h;
+
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+
+            int node = stack[--top], base = 4 * node;
+            if (bounds[base] > maxX || bounds[base + 2] < minX || bounds[base + 1] > maxY || bounds[base + 3] < minY)
+                continue;
+
+            if (child1[node] == NULL) {
+                if (nodeEntities[node] != entity)
+                    consumer.accept(entity, nodeEntities[node]);
+            } else {
+                if (top + 2 > stack.length)
+                    stack = Arrays.copyOf(stack, 2 * stack.length);
+
+                stack[top++] = child1[node];
+                stack[top++] = child2[node];
+            }
+        }
+
+        return stack;
+    }
+
+    /**
+     * Renvoie le nombre d'entités statiques de l'arbre
+     * @return entityCount
+     */
+    public int getEntityCount() {
+
+        return entityCount;
+    }
+
+    public String toString() {
+
+        return "StaticTree[entities=" + entityCount + ", nodes=" + nodeCount + "]";
+    }
+}
@@ -0,0 +1,264 @@
+package fr.insalyon.mxyns.collinsa.physics.collisions;
+
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Broad phase par tri et balayage (Sort and Sweep / Sweep and Prune) : les AABB sont triées par leur borne minimale sur un axe,
+ * puis on balaie la liste en ne testant une entité qu'avec celles dont l'intervalle commence avant la fin du sien.
+ *
+ * Contrairement à la grille de chunks, elle ne dépend pas de la taille des entités ni de leur répartition dans le monde.
+ * L'axe de tri est celui de plus grande variance des centres des AABB. Les entités bougeant peu d'un tick à l'autre, l'ordre du tick
+ * précédent est presque trié : un tri par insertion le remet en ordre en O(n + nombre d'échanges)
+ *
+ * SweepAndPrune Complexity:
+ * | Update (coherent) | Pairs  |
+ * |       ~O(n)       | O(n+k) |
+ */
+public class SweepAndPrune implements Broadphase {
+
+    /**
+     * Rapport minimal entre les variances des deux axes pour changer d'axe de tri. Evite d'alterner entre les axes (et de retrier entièrement) à chaque tick
+     */
+    private static final float AXIS_SWITCH_RATIO = 1.5f;
+
+    /**
+     * Entités triées par borne minimale sur l'axe de tri. Conservé d'un tick à l'autre pour profiter de la cohérence temporelle
+     */
+    private Entity[] sorted = new Entity[0];
+
+    /**
+     * Bornes min et max de l'AABB de chaque entité sur l'axe de tri, dans l'ordre de 'sorted'
+     */
+    private float[] min = new float[0], max = new float[0];
+
+    /**
+     * Tampon de la dernière mise à jour ayant vu chaque entité, dans l'ordre de 'sorted'. Permet de retirer les entités qui ne sont plus dans la simulation
+     */
+    private int[] seen = new int[0];
+
+    /**
+     * Nombre d'entités dans la structure
+     */
+    private int count;
+
+    /**
+     * Tampon de la mise à jour en cours
+     */
+    private int stamp;
+
+    /**
+     * Axe de tri : true <=> x, false <=> y
+     */
+    private boolean sortOnX = true;
+
+    /**
+     * Met à jour l'ordre des entités :
+     *  1. on marque les entités déjà présentes et on ajoute les nouvelles à la fin
+     *  2. on retire les entités qui n'ont pas été vues et on relève les bornes sur l'axe de tri
+     *  3. on choisit l'axe de plus grande variance et on trie par insertion (ou entièrement si l'axe a changé)
+     *
+     * @param entities entités de la simulation
+     */
+    @Override
+    public void update(Iterable<Entity> entities) {
+
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0);
+            stamp = 1;
+        }
+
+        // 1. Présence
+        for (Entity entity : entities) {
+
+            int proxy = entity.getBroadphaseProxy();
+            if (proxy >= 0 && proxy < count && sorted[proxy] == entity)
+                seen[proxy] = stamp;
+            else {
+                ensureCapacity(count + 1);
+                entity.setBroadphaseProxy(count);
+                sorted[count] = entity;
+                seen[count++] = stamp;
+            }
+        }
+
+        // 2. Compactage et variance des centres
+        int kept = 0;
+        double sumX = 0, sumY = 0, sumX2 = 0, sumY2 = 0;
+        for (int i = 0; i < count; ++i) {
+
+            if (seen[i] != stamp)
+                continue;
+
+            Entity entity = sorted[i];
+            AABB aabb = entity.getAABB();
+            double cx = aabb.x + aabb.w / 2, cy = aabb.y + aabb.h / 2;
+            sumX += cx;
+            sumY += cy;
+            sumX2 += cx * cx;
+            sumY2 += cy * cy;
+
+            sorted[kept] = entity;
+            seen[kept++] = stamp;
+        }
+        Arrays.fill(sorted, kept, count, null);
+        count = kept;
+
+        if (count > 0) {
+
+            double varX = sumX2 / count - (sumX / count) * (sumX / count);
+            double varY = sumY2 / count - (sumY / count) * (sumY / count);
+
+            boolean previousAxis = sortOnX;
+            if (sortOnX && varY > AXIS_SWITCH_RATIO * varX)
+                sortOnX = false;
+            else if (!sortOnX && varX > AXIS_SWITCH_RATIO * varY)
+                sortOnX = true;
+
+            // 3. Tri
+            if (previousAxis != sortOnX)
+                Arrays.sort(sorted, 0, count, (a, b) -> Float.compare(lowerBound(a), lowerBound(b)));
+
+            for (int i = 0; i < count; ++i) {
+
+                AABB aabb = sorted[i].getAABB();
+                min[i] = sortOnX ? aabb.x : aabb.y;
+                max[i] = sortOnX ? aabb.x + aabb.w : aabb.y + aabb.h;
+            }
+
+            insertionSort();
+        }
+
+        for (int i = 0; i < count; ++i)
+            sorted[i].setBroadphaseProxy(i);
+    }
+
+    /**
+     * Trie par insertion 'sorted', 'min' et 'max' selon 'min'. Quasi linéaire si l'ordre est déjà presque bon
+     */
+    private void insertionSort() {
+
+        for (int i = 1; i < count; ++i) {
+
+            Entity entity = sorted[i];
+            float entityMin = min[i], entityMax = max[i];
+
+            int j = i - 1;
+            while (j >= 0 && min[j] > entityMin) {
+
+                sorted[j + 1] = sorted[j];
+                min[j + 1] = min[j];
+                max[j + 1] = max[j];
+                --j;
+            }
+
+            sorted[j + 1] = entity;
+            min[j + 1] = entityMin;
+            max[j + 1] = entityMax;
+        }
+    }
+
+    /**
+     * Agrandit (en doublant leur taille) les tableaux s'ils sont trop petits
+     * @param capacity nombre d'entités à pouvoir stocker
+     */
+    private void ensureCapacity(int capacity) {
+
+        if (sorted.length >= capacity)
+            return;
+
+        int newCapacity = Math.max(capacity, Math.max(16, 2 * sorted.length));
+        sorted = Arrays.copyOf(sorted, newCapacity);
+        min = Arrays.copyOf(min, newCapacity);
+        max = Arrays.copyOf(max, newCapacity);
+        seen = Arrays.copyOf(seen, newCapacity);
+    }
+
+    /**
+     * Vide la structure
+     */
+    @Override
+    public void clear() {
+
+        for (int i = 0; i < count; ++i)
+            sorted[i].setBroadphaseProxy(-1);
+
+        Arrays.fill(sorted, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * Appelle 'consumer' avec (entity, voisine) pour chaque entité dont l'AABB chevauche celle de 'entity'.
+     * Les bornes max n'étant pas triées, on parcourt toutes les entités commençant avant la fin de 'entity'
+     *
+     * @param entity entité dont on cherche les voisines
+     * @param consumer action à effectuer sur chaque couple (entity, voisine)
+     */
+    @Override
+    public void forEachNearby(Entity entity, BiConsumer<Entity, Entity> consumer) {
+
+        AABB aabb = entity.getAABB();
+        float entityMin = lowerBound(entity), entityMax = entityMin + (sortOnX ? aabb.w : aabb.h);
+
+        for (int i = 0; i < count && min[i] <= entityMax; ++i)
+            if (max[i] >= entityMin && sorted[i] != entity && overlapsOnOtherAxis(aabb, sorted[i].getAABB()))
+                consumer.accept(entity, sorted[i]);
+    }
+
+    /**
+     * Appelle 'consumer' une seule fois pour chaque paire d'entités dont les AABB se chevauchent sur les deux axes.
+     * Pour chaque entité, on balaie les suivantes tant qu'elles commencent avant sa fin
+     *
+     * @param consumer action à effectuer sur chaque paire
+     */
+    @Override
+    public void forEachPair(BiConsumer<Entity, Entity> consumer) {
+
+        for (int i = 0; i < count; ++i) {
+
+            float end = max[i];
+            AABB aabb = sorted[i].getAABB();
+
+            for (int j = i + 1; j < count && min[j] <= end; ++j)
+                if (overlapsOnOtherAxis(aabb, sorted[j].getAABB()))
+                    consumer.accept(sorted[i], sorted[j]);
+        }
+    }
+
+    /**
+     * Détermine si deux AABB se chevauchent sur l'axe qui n'est pas l'axe de tri
+     * @param a 1ère AABB
+     * @param b 2ème AABB
+     * @return true si leurs intervalles se chevauchent
+     */
+    private boolean overlapsOnOtherAxis(AABB a, AABB b) {
+
+        return sortOnX ? a.y <= b.y + b.h && b.y <= a.y + a.h : a.x <= b.x + b.w && b.x <= a.x + a.w;
+    }
+
+    /**
+     * Renvoie la borne minimale de l'AABB d'une entité sur l'axe de tri
+     * @param entity entité
+     * @return x ou y de son AABB
+     */
+    private float lowerBound(Entity entity) {
+
+        return sortOnX ? entity.getAABB().x : entity.getAABB().y;
+    }
+
+    /**
+     * Renvoie le nombre d'entités dans la structure
+     * @return count
+     */
+    public int getCount() {
+
+        return count;
+    }
+
+    public String toString() {
+
+        return "SweepAndPrune[axis=" + (sortOnX ? "x" : "y") + ", bodies=" + count + "]";
+    }
+}
@@ -0,0 +1,459 @@
+package fr.insalyon.mxyns.collinsa.physics.constraints;
+
+import fr.insalyon.mxyns.collinsa.physics.collisions.Collision;
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+import fr.insalyon.mxyns.collinsa.render.Renderer;
+import fr.insalyon.mxyns.collinsa.threads.WorkerPool;
+import fr.insalyon.mxyns.collinsa.utils.Utils;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Line2D;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Réseau de contraintes de distance entre les centres des entités (cordes, tissus, corps mous), résolu par XPBD (Extended Position Based Dynamics).
+ *
+ * Contrairement à un Spring (force de rappel), une contrainte corrige directement les positions après l'intégration, elle reste donc stable
+ * quelle que soit sa raideur et le pas de temps. La souplesse (compliance, inverse de la raideur en m/N) vaut 0 pour une tige rigide.
+ * Les vitesses reçoivent la correction de position divisée par le pas de temps.
+ *
+ * Les contraintes sont rangées dans des tableaux plats et coloriées : deux contraintes de même couleur n'ont aucune entité en commun
+ * et sont donc résolues en parallèle, couleur après couleur. Le résultat ne dépend pas du nombre de threads.
+ * Les contraintes qui ne trouvent pas de couleur (entité reliée à plus de MAX_COLORS - 1 contraintes) sont résolues sur le thread appelant.
+ *
+ * Seule la translation des entités est corrigée, les contraintes sont attachées à leurs centres.
+ */
+public class DistanceConstraints {
+
+    /**
+     * Nombre de contraintes résolues par bloc
+     */
+    private static final int GRAIN = 256;
+
+    /**
+     * Nombre maximal de couleurs, la dernière regroupe les contraintes résolues séquentiellement
+     */
+    private static final int MAX_COLORS = 64;
+
+    /**
+     * Entités reliées par au moins une contrainte et leur indice dans 'bodies'
+     */
+    private Entity[] bodies = new Entity[0];
+    private final IdentityHashMap<Entity, Integer> bodyIndices = new IdentityHashMap<>();
+
+    /**
+     * Nombre d'entités reliées
+     */
+    private int bodyCount;
+
+    /**
+     * Indices des deux entités de chaque contrainte
+     */
+    private int[] bodyA = new int[0], bodyB = new int[0];
+
+    /**
+     * Longueur au repos et souplesse (m/N) de chaque contrainte
+     */
+    private float[] restLength = new float[0], compliance = new float[0];
+
+    /**
+     * Multiplicateur de Lagrange de chaque contrainte (force cumulée * pas² pendant le pas en cours)
+     */
+    private double[] lambda = new double[0];
+
+    /**
+     * Nombre de contraintes
+     */
+    private int count;
+
+    /**
+     * Contraintes rangées par couleur et début de chaque couleur dans 'colored'
+     */
+    private int[] colored = new int[0];
+    private final int[] colorStart = new int[MAX_COLORS + 1];
+
+    /**
+     * Détermine si les couleurs doivent être recalculées avant la prochaine résolution
+     */
+    private boolean colorsOutdated;
+
+    /**
+     * Position des entités pendant la résolution, position après l'intégration et inverse de leur masse (0 si l'entité n'est pas déplacée)
+     */
+    private double[] x = new double[0], y = new double[0], startX = new double[0], startY = new double[0];
+    private float[] massInv = new float[0];
+
+    /**
+     * Nombre de passes de résolution par tick
+     */
+    private int iterations = 8;
+
+    /**
+     * Couleur en cours de résolution et 1 / pas² du tick en cours
+     */
+    private int currentColor;
+    private double inverseStepSquared;
+
+    /**
+     * Référence unique vers la résolution d'un bloc de contraintes de la couleur en cours
+     */
+    private final IntConsumer solveBlock = this::solveBlock;
+
+    /**
+     * Ajoute une contrainte rigide dont la longueur est la distance actuelle entre les deux entités
+     * @param a première entité
+     * @param b deuxième entité
+     * @return indice de la contrainte, -1 si a == b
+     */
+    public int add(Entity a, Entity b) {
+
+        return add(a, b, (float) Math.sqrt(a.getPos().sqrdDist(b.getPos())), 0);
+    }
+
+    /**
+     * Ajoute une contrainte de distance entre les centres de deux entités
+     * @param a première entité
+     * @param b deuxième entité
+     * @param restLength longueur au repos
+     * @param compliance souplesse en m/N (inverse de la raideur), 0 pour une tige rigide
+     * @return indice de la contrainte, -1 si a == b
+     */
+    public synchronized int add(Entity a, Entity b, float restLength, float compliance) {
+
+        if (a == b)
+            return -1;
+
+        if (count == bodyA.length) {
+            int capacity = Math.max(64, 2 * bodyA.length);
+            bodyA = Arrays.copyOf(bodyA, capacity);
+            bodyB = Arrays.copyOf(bodyB, capacity);
+            this.restLength = Arrays.copyOf(this.restLength, capacity);
+            this.compliance = Arrays.copyOf(this.compliance, capacity);
+            lambda = Arrays.copyOf(lambda, capacity);
+            colored = Arrays.copyOf(colored, capacity);
+        }
+
+        bodyA[count] = indexOf(a);
+        bodyB[count] = indexOf(b);
+        this.restLength[count] = Math.max(0, restLength);
+        this.compliance[count] = Math.max(0, compliance);
+        colorsOutdated = true;
+
+        return count++;
+    }
+
+    /**
+     * Renvoie l'indice d'une entité dans 'bodies' en l'ajoutant si besoin
+     */
+    private int indexOf(Entity entity) {
+
+        Integer index = bodyIndices.get(entity);
+        if (index != null)
+            return index;
+
+        if (bodyCount == bodies.length) {
+            int capacity = Math.max(64, 2 * bodies.length);
+            bodies = Arrays.copyOf(bodies, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            startX = Arrays.copyOf(startX, capacity);
+            startY = Arrays.copyOf(startY, capacity);
+            massInv = Arrays.copyOf(massInv, capacity);
+        }
+
+        bodies[bodyCount] = entity;
+        bodyIndices.put(entity, bodyCount);
+        return bodyCount++;
+    }
+
+    /**
+     * Supprime toutes les contraintes reliant une entité, par exemple lorsqu'elle est retirée de la simulation. Les autres contraintes gardent leur ordre
+     * @param entity entité
+     */
+    public synchronized void remove(Entity entity) {
+
+        Integer index = bodyIndices.remove(entity);
+        if (index == null)
+            return;
+
+        int kept = 0;
+        for (int c = 0; c < count; ++c) {
+
+            if (bodyA[c] == index || bodyB[c] == index)
+                continue;
+
+            bodyA[kept] = bodyA[c];
+            bodyB[kept] = bodyB[c];
+            restLength[kept] = restLength[c];
+            compliance[kept] = compliance[c];
+            ++kept;
+        }
+        count = kept;
+
+        // La dernière entité prend la place de l'entité supprimée
+        int last = --bodyCount;
+        if (index != last) {
+
+            bodies[index] = bodies[last];
+            bodyIndices.put(bodies[index], index);
+            for (int c = 0; c < count; ++c) {
+                if (bodyA[c] == last) bodyA[c] = index;
+                if (bodyB[c] == last) bodyB[c] = index;
+            }
+        }
+        bodies[last] = null;
+        colorsOutdated = true;
+    }
+
+    /**
+     * Supprime toutes les contraintes
+     */
+    public synchronized void clear() {
+
+        Arrays.fill(bodies, 0, bodyCount, null);
+        bodyIndices.clear();
+        bodyCount = count = 0;
+        colorsOutdated = true;
+    }
+
+    /**
+     * Colorie les contraintes (coloriage glouton) : chaque contrainte prend la plus petite couleur qu'aucune autre contrainte de ses entités n'utilise,
+     * puis les contraintes sont rangées par couleur
+     */
+    private void color() {
+
+        long[] usedColors = new long[bodyCount];
+        int[] colors = new int[count];
+        Arrays.fill(colorStart, 0);
+
+        for (int c = 0; c < count; ++c) {
+
+            long free = ~(usedColors[bodyA[c]] | usedColors[bodyB[c]]);
+            int color = Math.min(Long.numberOfTrailingZeros(free), MAX_COLORS - 1);
+            if (color < MAX_COLORS - 1) {
+                usedColors[bodyA[c]] |= 1L << color;
+                usedColors[bodyB[c]] |= 1L << color;
+            }
+
+            colors[c] = color;
+            ++colorStart[color + 1];
+        }
+
+        for (int color = 1; color <= MAX_COLORS; ++color)
+            colorStart[color] += colorStart[color - 1];
+
+        int[] next = Arrays.copyOf(colorStart, MAX_COLORS);
+        for (int c = 0; c < count; ++c)
+            colored[next[colors[c]]++] = c;
+
+        colorsOutdated = false;
+    }
+
+    /**
+     * Corrige les positions et vitesses des entités reliées pour respecter les contraintes, à appeler après l'intégration.
+     * Une entité endormie reliée à une entité éveillée est réveillée, les entités endormies, cinématiques ou désactivées ne sont pas déplacées
+     *
+     * @param step durée du tick en secondes
+     * @param pool threads de la simulation
+     */
+    public synchronized void solve(double step, WorkerPool pool) {
+
+        if (count == 0 || step <= 0)
+            return;
+
+        if (colorsOutdated)
+            color();
+
+        // Réveil des entités endormies tirées par une entité éveillée
+        for (int c = 0; c < count; ++c) {
+
+            Entity a = bodies[bodyA[c]], b = bodies[bodyB[c]];
+            if (a.isSleeping() != b.isSleeping() && isMovable(a.isSleeping() ? b : a))
+                (a.isSleeping() ? a : b).wakeUp();
+        }
+
+        for (int i = 0; i < bodyCount; ++i) {
+
+            Entity entity = bodies[i];
+            x[i] = startX[i] = entity.getPos().x;
+            y[i] = startY[i] = entity.getPos().y;
+            massInv[i] = isMovable(entity) && !entity.isSleeping() ? entity.getInertia().getMassInv() : 0;
+        }
+
+        Arrays.fill(lambda, 0, count, 0);
+        inverseStepSquared = 1 / (step * step);
+
+        for (int iteration = 0; iteration < iterations; ++iteration)
+            for (currentColor = 0; currentColor < MAX_COLORS; ++currentColor) {
+
+                int size = colorStart[currentColor + 1] - colorStart[currentColor];
+                if (currentColor == MAX_COLORS - 1)
+                    solveRange(colorStart[currentColor], colorStart[currentColor + 1]);
+                else if (size > 0)
+                    pool.forEachBlock(WorkerPool.blockCount(size, GRAIN), solveBlock);
+            }
+
+        // Positions et vitesses corrigées
+        for (int i = 0; i < bodyCount; ++i) {
+
+            if (massInv[i] == 0 || x[i] == startX[i] && y[i] == startY[i])
+                continue;
+
+            Entity entity = bodies[i];
+            entity.getVel().add((x[i] - startX[i]) / step, (y[i] - startY[i]) / step);
+            entity.setPos((float) x[i], (float) y[i]);
+            entity.updateAABB();
+        }
+    }
+
+    /**
+     * Informe si une entité peut être déplacée par les contraintes
+     */
+    private static boolean isMovable(Entity entity) {
+
+        return entity.isActivated() && !entity.isKinematic() && entity.getCollisionType() == Collision.CollisionType.CLASSIC;
+    }
+
+    /**
+     * Résout un bloc de contraintes de la couleur en cours. Exécuté par un des threads de la simulation
+     * @param block numéro du bloc
+     */
+    private void solveBlock(int block) {
+
+        int from = colorStart[currentColor] + block * GRAIN;
+        solveRange(from, Math.min(colorStart[currentColor + 1], from + GRAIN));
+    }
+
+    /**
+     * Résout les contraintes colored[from] à colored[to - 1] : C = |a - b| - L, Δλ = (-C - α̃λ) / (w(a) + w(b) + α̃) avec α̃ = souplesse / pas²
+     */
+    private void solveRange(int from, int to) {
+
+        for (int k = from; k < to; ++k) {
+
+            int c = colored[k], a = bodyA[c], b = bodyB[c];
+            double weightA = massInv[a], weightB = massInv[b];
+            if (weightA + weightB == 0)
+                continue;
+
+            double dx = x[a] - x[b], dy = y[a] - y[b], length = Math.sqrt(dx * dx + dy * dy);
+            if (length == 0)
+                continue;
+
+            double alpha = compliance[c] * inverseStepSquared;
+            double deltaLambda = (restLength[c] - length - alpha * lambda[c]) / (weightA + weightB + alpha);
+            lambda[c] += deltaLambda;
+
+            double nx = dx / length * deltaLambda, ny = dy / length * deltaLambda;
+            x[a] += weightA * nx;
+            y[a] += weightA * ny;
+            x[b] -= weightB * nx;
+            y[b] -= weightB * ny;
+        }
+    }
+
+    /**
+     * Dessine les contraintes, du vert (au repos) au rouge (étirée ou compressée de 25% ou plus)
+     * @param renderer renderer utilisé
+     * @param g graphics sur lequel dessiner
+     */
+    public void render(Renderer renderer, Graphics2D g) {
+
+        Entity[] bodies = this.bodies;
+        int[] bodyA = this.bodyA, bodyB = this.bodyB;
+        float[] restLength = this.restLength;
+        double factor = renderer.getRenderFactor();
+
+        for (int c = 0, count = Math.min(this.count, restLength.length); c < count; ++c) {
+
+            Entity a = bodies[bodyA[c]], b = bodies[bodyB[c]];
+            if (a == null || b == null)
+                continue;
+
+            double length = Math.sqrt(a.getPos().sqrdDist(b.getPos()));
+            double strain = restLength[c] > 0 ? Math.abs(length / restLength[c] - 1) : 0;
+            g.setColor(Utils.lerpColor(Color.green, Color.red, Math.min(1, 4 * strain)));
+            g.draw(new Line2D.Double((a.getPos().x - renderer.getCamera().getPos().x) * factor, (a.getPos().y - renderer.getCamera().getPos().y) * factor,
+                                     (b.getPos().x - renderer.getCamera().getPos().x) * factor, (b.getPos().y - renderer.getCamera().getPos().y) * factor));
+        }
+    }
+
+    /**
+     * Renvoie la première entité de la contrainte c
+     * @param c indice de la contrainte
+     * @return entité
+     */
+    public Entity getBodyA(int c) {
+
+        return bodies[bodyA[c]];
+    }
+
+    /**
+     * Renvoie la deuxième entité de la contrainte c
+     * @param c indice de la contrainte
+     * @return entité
+     */
+    public Entity getBodyB(int c) {
+
+        return bodies[bodyB[c]];
+    }
+
+    /**
+     * Renvoie la longueur au repos de la contrainte c
+     * @param c indice de la contrainte
+     * @return longueur au repos
+     */
+    public float getRestLength(int c) {
+
+        return restLength[c];
+    }
+
+    /**
+     * Renvoie le nombre de contraintes
+     * @return count
+     */
+    public int size() {
+
+        return count;
+    }
+
+    /**
+     * Renvoie le nombre de couleurs utilisées par les contraintes lors de la dernière résolution
+     * @return nombre de couleurs non vides
+     */
+    public int getColorCount() {
+
+        int colors = 0;
+        for (int color = 0; color < MAX_COLORS; ++color)
+            if (colorStart[color + 1] > colorStart[color])
+                ++colors;
+
+        return colors;
+    }
+
+    /**
+     * Renvoie le nombre de passes de résolution par tick
+     * @return iterations
+     */
+    public int getIterations() {
+
+        return iterations;
+    }
+
+    /**
+     * Change le nombre de passes de résolution par tick
+     * @param iterations nombre de passes (au moins 1), plus il est grand plus les contraintes rigides sont respectées
+     */
+    public void setIterations(int iterations) {
+
+        this.iterations = Math.max(1, iterations);
+    }
+
+    public String toString() {
+
+        return "DistanceConstraints[constraints=" + count + ", bodies=" + bodyCount + ", iterations=" + iterations + "]";
+    }
+}
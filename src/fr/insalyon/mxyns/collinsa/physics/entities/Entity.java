@@ -83,6 +83,27 @@ public abstract class Entity implements Renderable {
      */
     private boolean activated = true;
 
+    /**
+     * Entités de l'îlot avec lequel l'entité s'est endormie (elle comprise), null si l'entité est éveillée.
+     * Une entité endormie n'est plus intégrée ni testée contre les autres entités endormies, l'îlot entier est réveillé par wakeUp
+     */
+    private Entity[] sleepingIsland;
+
+    /**
+     * Durée (s) depuis laquelle l'entité est au repos (vitesses sous les seuils de Physics)
+     */
+    private float sleepTime;
+
+    /**
+     * Indice de l'entité dans la broad phase active, -1 si elle n'y est pas encore. Permet à la broad phase de retrouver l'entité d'un tick à l'autre sans Map
+     */
+    private int broadphaseProxy = -1;
+
+    /**
+     * Indice temporaire de l'entité dans les tableaux du solveur de collisions, valide uniquement pendant une résolution
+     */
+    private int solverIndex = -1;
+
     /**
      * Liste des listeners associés à l'entité. LinkedList car on la parcourt de proche en proche (pas d'accès aléatoire).
      */
@@ -172,6 +193,17 @@ public abstract class Entity implements Renderable {
         return true;
     }
 
+    /**
+     * Informe si l'entité est intégrée exactement comme Entity.update le fait. L'intégrateur en colonnes (BodyStore) n'est utilisé que pour ces entités,
+     * les entités redéfinissant update doivent donc renvoyer false
+     *
+     * @return true si update n'est pas redéfinie
+     */
+    public boolean usesDefaultIntegration() {
+
+        return true;
+    }
+
     // GETTERS & SETTERS
 
     /**
@@ -436,6 +468,105 @@ public abstract class Entity implements Renderable {
         this.activated = activated;
     }
 
+    /**
+     * Informe si l'entité est endormie
+     *
+     * @return true si l'entité dort avec son îlot
+     */
+    public boolean isSleeping() {
+
+        return sleepingIsland != null;
+    }
+
+    /**
+     * Endort l'entité avec son îlot : ses vitesses et accélérations sont annulées. Réservé à la simulation (Physics.updateSleeping)
+     *
+     * @param island entités de l'îlot, réveillées ensemble
+     */
+    public void sleep(Entity[] island) {
+
+        sleepingIsland = island;
+        vel.set(0, 0);
+        acc.set(0, 0);
+        angVel = 0;
+        angAcc = 0;
+    }
+
+    /**
+     * Réveille l'entité et toutes les entités de l'îlot avec lequel elle s'est endormie
+     */
+    public void wakeUp() {
+
+        Entity[] island = sleepingIsland;
+        if (island == null)
+            return;
+
+        for (Entity entity : island) {
+            entity.sleepingIsland = null;
+            entity.sleepTime = 0;
+        }
+    }
+
+    /**
+     * Renvoie la durée depuis laquelle l'entité est au repos
+     *
+     * @return sleepTime en secondes
+     */
+    public float getSleepTime() {
+
+        return sleepTime;
+    }
+
+    /**
+     * Redéfinit la durée depuis laquelle l'entité est au repos
+     *
+     * @param sleepTime durée en secondes, 0 si l'entité bouge
+     */
+    public void setSleepTime(float sleepTime) {
+
+        this.sleepTime = sleepTime;
+    }
+
+    /**
+     * Renvoie l'indice de l'entité dans la broad phase active
+     *
+     * @return broadphaseProxy, -1 si l'entité n'y a pas encore été placée
+     */
+    public int getBroadphaseProxy() {
+
+        return broadphaseProxy;
+    }
+
+    /**
+     * Définit l'indice de l'entité dans la broad phase active. Réservé aux broad phases
+     *
+     * @param broadphaseProxy nouvel indice
+     */
+    public void setBroadphaseProxy(int broadphaseProxy) {
+
+        this.broadphaseProxy = broadphaseProxy;
+    }
+
+    /**
+     * Renvoie l'indice de l'entité dans les tableaux du solveur de collisions
+     *
+     * @return solverIndex, à vérifier par le solveur (il peut dater d'une résolution précédente)
+     */
+    public int getSolverIndex() {
+
+        return solverIndex;
+    }
+
+    /**
+     * Définit l'indice de l'entité dans les tableaux du solveur de collisions. Réservé au solveur
+     *
+     * @param solverIndex nouvel indice
+     */
+    public void setSolverIndex(int solverIndex) {
+
+        this.solverIndex = solverIndex;
+    }
+
     /**
      * Ajoute un CollisionListener à la liste des listeners de l'entité
      *
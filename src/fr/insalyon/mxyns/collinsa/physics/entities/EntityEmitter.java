@@ -71,6 +71,12 @@ public class EntityEmitter extends Entity {
         return true;
     }
 
+    @Override
+    public boolean usesDefaultIntegration() {
+
+        return false;
+    }
+
     @Override
     public double getMaximumSize() {
 
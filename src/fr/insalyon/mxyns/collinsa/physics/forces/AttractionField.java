@@ -0,0 +1,54 @@
+package fr.insalyon.mxyns.collinsa.physics.forces;
+
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+/**
+ * Gravité exercée par une entité (source) sur toutes les autres : F = G * m(source) * m / d² vers la source
+ */
+public class AttractionField extends FieldForce {
+
+    /**
+     * Crée le champ de gravité de 'source'
+     * @param source entité attirant les autres
+     */
+    public AttractionField(Entity source) {
+
+        super(source);
+    }
+
+    /**
+     * @param result (G * m(source) * m(body) * d / |d|³, 0) avec d = body -> source, nul si les centres sont confondus
+     */
+    @Override
+    public void evaluate(Entity body, double[] result) {
+
+        double dx = source.getPos().x - body.getPos().x, dy = source.getPos().y - body.getPos().y, distanceSquared = dx * dx + dy * dy;
+        double factor = distanceSquared > 0 ? Gravity.GRAVITATIONAL_CONSTANT * source.getInertia().getMass() * body.getInertia().getMass() / (distanceSquared * Math.sqrt(distanceSquared)) : 0;
+
+        result[0] = factor * dx;
+        result[1] = factor * dy;
+        result[2] = 0;
+    }
+
+    /**
+     * Calcule d'une boucle sans branchement la gravité exercée par la source sur les entités du bloc. Les forces indéfinies (entités au centre de la source) sont ensuite annulées
+     */
+    @Override
+    public void evaluateAll(ForceBatch bodies) {
+
+        float[] x = bodies.x, y = bodies.y, mass = bodies.mass;
+        double[] forceX = bodies.forceX, forceY = bodies.forceY, torque = bodies.torque;
+        double sourceX = source.getPos().x, sourceY = source.getPos().y, intensity = Gravity.GRAVITATIONAL_CONSTANT * source.getInertia().getMass();
+
+        for (int i = 0, count = bodies.count; i < count; ++i) {
+
+            double dx = sourceX - x[i], dy = sourceY - y[i], distanceSquared = dx * dx + dy * dy;
+            double factor = intensity * mass[i] / (distanceSquared * Math.sqrt(distanceSquared));
+            forceX[i] = factor * dx;
+            forceY[i] = factor * dy;
+            torque[i] = 0;
+        }
+
+        bodies.clearUndefinedForces();
+    }
+}
@@ -0,0 +1,302 @@
+package fr.insalyon.mxyns.collinsa.physics.forces;
+
+import java.util.Arrays;
+
+/**
+ * Quadtree de Barnes-Hut, reconstruit à chaque tick, pour calculer l'attraction de n corps les uns sur les autres en O(n log n) au lieu de O(n²).
+ *
+ * Chaque noeud est un carré découpé en 4 quadrants et retient la masse totale et le centre de masse des corps qu'il contient.
+ * Pour calculer l'attraction subie par un corps, on parcourt l'arbre depuis la racine : un noeud assez loin (taille / distance < θ)
+ * est remplacé par un seul corps placé en son centre de masse, sinon on descend dans ses quadrants. θ = 0 donne le calcul exact.
+ *
+ * Les corps sont rangés dans 'order' de sorte que chaque noeud couvre une plage contiguë [start, end[, les noeuds sont rangés dans des tableaux plats
+ * et les quadrants non vides d'un noeud sont rangés à la suite. Les feuilles contiennent jusqu'à LEAF_SIZE corps, sommés directement.
+ *
+ * BarnesHutTree Complexity:
+ * | Build      | Query    |
+ * | O(n log n) | O(log n) |
+ */
+public class BarnesHutTree {
+
+    /**
+     * Nombre maximal de corps d'une feuille
+     */
+    private static final int LEAF_SIZE = 8;
+
+    /**
+     * Profondeur maximale de l'arbre, au-delà les corps (confondus ou presque) restent dans une même feuille
+     */
+    private static final int MAX_DEPTH = 32;
+
+    /**
+     * Piles de parcours, une par thread de calcul. Un parcours empile au plus 3 noeuds par niveau en plus de celui qu'il vient de dépiler
+     */
+    private static final ThreadLocal<int[]> stacks = ThreadLocal.withInitial(() -> new int[3 * MAX_DEPTH + 4]);
+
+    /**
+     * Position et masse des corps, fournies par build
+     */
+    private float[] x, y, mass;
+
+    /**
+     * Indices des corps, rangés par noeud
+     */
+    private int[] order = new int[0];
+
+    /**
+     * Plage de corps de chaque noeud dans 'order', premier quadrant et nombre de quadrants non vides (0 pour une feuille)
+     */
+    private int[] nodeStart = new int[0], nodeEnd = new int[0], firstChild = new int[0], childCount = new int[0];
+
+    /**
+     * Coin et côté du carré de chaque noeud
+     */
+    private float[] nodeX = new float[0], nodeY = new float[0], nodeSize = new float[0];
+
+    /**
+     * Masse totale et centre de masse de chaque noeud
+     */
+    private double[] nodeMass = new double[0], centerX = new double[0], centerY = new double[0];
+
+    /**
+     * Limites des plages de corps des 4 quadrants du noeud en cours de construction, 5 valeurs par niveau de profondeur
+     */
+    private final int[] quadrantBounds = new int[5 * MAX_DEPTH];
+
+    /**
+     * Nombre de noeuds
+     */
+    private int nodeCount;
+
+    /**
+     * Reconstruit l'arbre à partir des corps 0 à count - 1. Les tableaux sont gardés tels quels et ne doivent pas changer jusqu'au calcul des attractions
+     * @param x abscisses des corps
+     * @param y ordonnées des corps
+     * @param mass masses des corps
+     * @param count nombre de corps
+     */
+    public void build(float[] x, float[] y, float[] mass, int count) {
+
+        this.x = x;
+        this.y = y;
+        this.mass = mass;
+        nodeCount = 0;
+
+        if (count == 0)
+            return;
+
+        if (order.length < count)
+            order = new int[Math.max(64, 2 * count)];
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; ++i) {
+
+            order[i] = i;
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+
+        // Racine carrée, légèrement agrandie pour que les corps sur le bord max soient dans le carré
+        float size = Math.max(maxX - minX, maxY - minY) * 1.0001f + Float.MIN_NORMAL;
+        reserve(1);
+        buildNode(0, 0, count, minX, minY, size, 0);
+    }
+
+    /**
+     * Construit le noeud 'node' couvrant les corps [start, end[ de 'order' et le carré (left, top, size), puis ses descendants
+     */
+    private void buildNode(int node, int start, int end, float left, float top, float size, int depth) {
+
+        nodeStart[node] = start;
+        nodeEnd[node] = end;
+        nodeX[node] = left;
+        nodeY[node] = top;
+        nodeSize[node] = size;
+
+        if (end - start <= LEAF_SIZE || depth == MAX_DEPTH) {
+
+            double m = 0, cx = 0, cy = 0;
+            for (int k = start; k < end; ++k) {
+                int i = order[k];
+                m += mass[i];
+                cx += mass[i] * x[i];
+                cy += mass[i] * y[i];
+            }
+
+            firstChild[node] = -1;
+            childCount[node] = 0;
+            setCenter(node, m, cx, cy);
+            return;
+        }
+
+        // Quadrants : haut puis bas, gauche puis droite
+        float half = size / 2, middleX = left + half, middleY = top + half;
+        int splitY = partition(start, end, y, middleY);
+        int base = 5 * depth;
+        quadrantBounds[base] = start;
+        quadrantBounds[base + 1] = partition(start, splitY, x, middleX);
+        quadrantBounds[base + 2] = splitY;
+        quadrantBounds[base + 3] = partition(splitY, end, x, middleX);
+        quadrantBounds[base + 4] = end;
+
+        int children = 0;
+        for (int q = 0; q < 4; ++q)
+            if (quadrantBounds[base + q + 1] > quadrantBounds[base + q])
+                ++children;
+
+        int first = nodeCount;
+        reserve(children);
+        firstChild[node] = first;
+        childCount[node] = children;
+
+        double m = 0, cx = 0, cy = 0;
+        for (int q = 0, child = first; q < 4; ++q) {
+
+            if (quadrantBounds[base + q + 1] == quadrantBounds[base + q])
+                continue;
+
+            buildNode(child, quadrantBounds[base + q], quadrantBounds[base + q + 1], (q & 1) == 0 ? left : middleX, q < 2 ? top : middleY, half, depth + 1);
+            m += nodeMass[child];
+            cx += nodeMass[child] * centerX[child];
+            cy += nodeMass[child] * centerY[child];
+            ++child;
+        }
+
+        setCenter(node, m, cx, cy);
+    }
+
+    /**
+     * Enregistre la masse et le centre de masse d'un noeud à partir des sommes des masses et des moments
+     */
+    private void setCenter(int node, double m, double cx, double cy) {
+
+        nodeMass[node] = m;
+        centerX[node] = m > 0 ? cx / m : nodeX[node] + nodeSize[node] / 2;
+        centerY[node] = m > 0 ? cy / m : nodeY[node] + nodeSize[node] / 2;
+    }
+
+    /**
+     * Range les corps [start, end[ de 'order' : ceux dont la coordonnée est inférieure à 'middle' d'abord
+     * @return indice du premier corps de la 2ème partie
+     */
+    private int partition(int start, int end, float[] coordinates, float middle) {
+
+        int i = start, j = end - 1;
+        while (i <= j) {
+
+            if (coordinates[order[i]] < middle)
+                ++i;
+            else {
+                int swap = order[i];
+                order[i] = order[j];
+                order[j--] = swap;
+            }
+        }
+
+        return i;
+    }
+
+    /**
+     * Ajoute 'count' noeuds à la suite, en agrandissant les tableaux si besoin
+     */
+    private void reserve(int count) {
+
+        nodeCount += count;
+        if (nodeCount <= nodeStart.length)
+            return;
+
+        int capacity = Math.max(64, 2 * nodeCount);
+        nodeStart = Arrays.copyOf(nodeStart, capacity);
+        nodeEnd = Arrays.copyOf(nodeEnd, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        childCount = Arrays.copyOf(childCount, capacity);
+        nodeX = Arrays.copyOf(nodeX, capacity);
+        nodeY = Arrays.copyOf(nodeY, capacity);
+        nodeSize = Arrays.copyOf(nodeSize, capacity);
+        nodeMass = Arrays.copyOf(nodeMass, capacity);
+        centerX = Arrays.copyOf(centerX, capacity);
+        centerY = Arrays.copyOf(centerY, capacity);
+    }
+
+    /**
+     * Calcule l'accélération due à l'attraction de tous les autres corps sur le corps 'body' : a = G * Σ m * d / (|d|² + ε²)^(3/2).
+     * Ne modifie pas l'arbre, peut donc être appelé en parallèle pour des corps différents
+     *
+     * @param body indice du corps
+     * @param theta angle d'ouverture θ (taille / distance) en dessous duquel un noeud est remplacé par son centre de masse
+     * @param softening distance ε adoucissant l'attraction des corps très proches
+     * @param constant constante de gravitation G
+     * @param accelerations résultat, l'accélération du corps est écrite en (2 * body, 2 * body + 1)
+     */
+    public void computeAcceleration(int body, double theta, double softening, double constant, double[] accelerations) {
+
+        double ax = 0, ay = 0;
+        double px = x[body], py = y[body];
+        double thetaSquared = theta * theta, softeningSquared = softening * softening;
+
+        int[] stack = stacks.get();
+        int top = 0;
+        if (nodeCount > 0)
+            stack[top++] = 0;
+
+        while (top > 0) {
+
+            int node = stack[--top];
+
+            if (childCount[node] == 0) { // Feuille : somme directe
+
+                for (int k = nodeStart[node], end = nodeEnd[node]; k < end; ++k) {
+
+                    int i = order[k];
+                    if (i == body)
+                        continue;
+
+                    double dx = x[i] - px, dy = y[i] - py, distanceSquared = dx * dx + dy * dy + softeningSquared;
+                    if (distanceSquared == 0)
+                        continue;
+
+                    double factor = mass[i] / (distanceSquared * Math.sqrt(distanceSquared));
+                    ax += factor * dx;
+                    ay += factor * dy;
+                }
+                continue;
+            }
+
+            double dx = centerX[node] - px, dy = centerY[node] - py, distanceSquared = dx * dx + dy * dy;
+            double size = nodeSize[node];
+
+            // Noeud lointain (et ne contenant pas le corps) : remplacé par son centre de masse
+            boolean inside = px >= nodeX[node] && px < nodeX[node] + size && py >= nodeY[node] && py < nodeY[node] + size;
+            if (!inside && size * size < thetaSquared * distanceSquared) {
+
+                distanceSquared += softeningSquared;
+                double factor = nodeMass[node] / (distanceSquared * Math.sqrt(distanceSquared));
+                ax += factor * dx;
+                ay += factor * dy;
+                continue;
+            }
+
+            for (int child = firstChild[node], end = child + childCount[node]; child < end; ++child)
+                stack[top++] = child;
+        }
+
+        accelerations[2 * body] = constant * ax;
+        accelerations[2 * body + 1] = constant * ay;
+    }
+
+    /**
+     * Renvoie le nombre de noeuds de l'arbre
+     * @return nodeCount
+     */
+    public int getNodeCount() {
+
+        return nodeCount;
+    }
+
+    public String toString() {
+
+        return "BarnesHutTree[nodes=" + nodeCount + "]";
+    }
+}
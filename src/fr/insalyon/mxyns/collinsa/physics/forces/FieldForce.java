@@ -0,0 +1,79 @@
+package fr.insalyon.mxyns.collinsa.physics.forces;
+
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+/**
+ * Force de champ : force appliquée à toutes les entités éveillées de la simulation (Physics.fieldForces), comme la pesanteur.
+ *
+ * Contrairement à une Force globale, une force de champ n'a pas de cible : elle ne fait que calculer la force et le couple subis par une entité donnée,
+ * sans rien modifier. Elle peut donc être évaluée en parallèle pour toutes les entités (ProcessingThread). Si le champ est créé par une entité (source),
+ * la source subit la réaction de la somme des forces exercées sur les autres entités.
+ *
+ * Le ProcessingThread évalue les champs par blocs d'entités rangées en colonnes (ForceBatch, evaluateAll).
+ */
+public abstract class FieldForce {
+
+    /**
+     * Entité créant le champ, null si le champ est extérieur à la simulation
+     */
+    protected final Entity source;
+
+    /**
+     * Crée un champ
+     * @param source entité créant le champ, null si le champ est extérieur à la simulation
+     */
+    protected FieldForce(Entity source) {
+
+        this.source = source;
+    }
+
+    /**
+     * Calcule la force et le couple subis par une entité, sans modifier le champ ni l'entité. Peut être appelée en parallèle pour des entités différentes
+     *
+     * @param body entité soumise au champ (jamais la source)
+     * @param result résultat : force sur x, force sur y, couple
+     */
+    public abstract void evaluate(Entity body, double[] result);
+
+    /**
+     * Calcule la force et le couple subis par les entités d'un bloc, dans ses colonnes forceX, forceY et torque.
+     * Par défaut chaque entité passe par evaluate, les champs simples redéfinissent cette méthode pour calculer tout le bloc d'une seule boucle sur ses colonnes.
+     * La valeur calculée pour la source est ignorée (ForceBatch.accumulate). Peut être appelée en parallèle pour des blocs différents
+     *
+     * @param bodies bloc d'entités soumises au champ
+     */
+    public void evaluateAll(ForceBatch bodies) {
+
+        double[] result = new double[3];
+        for (int i = 0, count = bodies.count; i < count; ++i) {
+
+            Entity body = bodies.get(i);
+            if (affects(body))
+                continue;
+
+            evaluate(body, result);
+            bodies.forceX[i] = result[0];
+            bodies.forceY[i] = result[1];
+            bodies.torque[i] = result[2];
+        }
+    }
+
+    /**
+     * Renvoie l'entité créant le champ
+     * @return source, null si le champ est extérieur à la simulation
+     */
+    public Entity getSource() {
+
+        return source;
+    }
+
+    /**
+     * Détermine si le champ est créé par l'entité donnée (elle n'y est alors pas soumise)
+     * @param entity entité donnée
+     * @return true si l'entité est la source
+     */
+    public boolean affects(Entity entity) {
+
+        return entity == source;
+    }
+}
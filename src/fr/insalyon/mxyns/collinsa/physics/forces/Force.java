@@ -18,7 +18,7 @@ public abstract class Force implements Renderable {
 
     /**
      * Entités source et cible de la force.
-     * La seule différence est que si on met la force dans les globalForces de Physics, la force sera appliquée entre 'source' et toutes les autres entités de la simulation.
+     * Pour appliquer une force entre 'source' et toutes les autres entités de la simulation, on utilise une force de champ (FieldForce, dans les fieldForces de Physics).
      */
     protected Entity target = null, source = null;
 
@@ -94,6 +94,29 @@ public abstract class Force implements Renderable {
         return true;
     }
 
+    /**
+     * Réveille la source et la cible de la force. Une force dont une entité est endormie et l'autre endormie ou cinématique (ou absente)
+     * relie un îlot au repos : elle ne les réveille pas et n'a pas à être appliquée
+     *
+     * @return true si la force doit être appliquée
+     */
+    public boolean wakeUp() {
+
+        boolean sourceResting = source == null || source.isSleeping() || source.isKinematic();
+        boolean targetResting = target == null || target.isSleeping() || target.isKinematic();
+        boolean asleep = source != null && source.isSleeping() || target != null && target.isSleeping();
+
+        if (sourceResting && targetResting && asleep)
+            return false;
+
+        if (source != null)
+            source.wakeUp();
+        if (target != null)
+            target.wakeUp();
+
+        return true;
+    }
+
     /**
      * Applique une force à une entité
      *
@@ -115,6 +138,26 @@ public abstract class Force implements Renderable {
         entity.setAngAcc((float) (entity.getAngAcc() + moment * entity.getInertia().getJInv()));
     }
 
+    /**
+     * Renvoie la source de la force
+     *
+     * @return source, null si la force n'a pas de source (force extérieure au système)
+     */
+    public Entity getSource() {
+
+        return source;
+    }
+
+    /**
+     * Renvoie la cible de la force
+     *
+     * @return target
+     */
+    public Entity getTarget() {
+
+        return target;
+    }
+
     /**
      * Redéfinit la cible de la force
      *
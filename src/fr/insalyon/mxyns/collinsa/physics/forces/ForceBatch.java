@@ -0,0 +1,172 @@
+package fr.insalyon.mxyns.collinsa.physics.forces;
+
+import fr.insalyon.mxyns.collinsa.physics.collisions.Collision;
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+import java.util.Arrays;
+
+/**
+ * Bloc d'entités soumises aux forces de champ, rangées en colonnes de primitives (position, masse, ...) pour que chaque champ
+ * calcule les forces exercées sur tout le bloc dans une seule boucle simple sur des tableaux (FieldForce.evaluateAll), que le JIT peut vectoriser,
+ * au lieu d'un appel à FieldForce.evaluate par entité (appel virtuel, lecture des Vec2f de chaque entité).
+ *
+ * L'état des entités du bloc est copié dans les colonnes (load), chaque champ calcule ses forces dans les colonnes forceX, forceY et torque
+ * qui sont aussitôt ajoutées aux accélérations cumulées (accumulate), puis les accélérations cumulées sont ajoutées aux entités (scatter).
+ * Les entités ne sont donc lues qu'une fois, tant qu'elles sont en cache. Un bloc est réutilisé d'un appel à l'autre par un même thread,
+ * ses colonnes restent petites (une taille de bloc) et en cache.
+ */
+public class ForceBatch {
+
+    /**
+     * Entités du bloc
+     */
+    private Entity[] entities = new Entity[0];
+
+    /**
+     * Position, masse, inverse de la masse et du moment d'inertie de chaque entité, et 1 si l'entité est accélérée par les forces (CLASSIC), 0 sinon
+     */
+    float[] x = new float[0], y = new float[0], mass = new float[0], massInv = new float[0], jInv = new float[0], classic = new float[0];
+
+    /**
+     * Accélérations et accélérations angulaires cumulées de chaque entité
+     */
+    double[] accX = new double[0], accY = new double[0], angAcc = new double[0];
+
+    /**
+     * Force et couple exercés sur chaque entité par le champ en cours de calcul
+     */
+    double[] forceX = new double[0], forceY = new double[0], torque = new double[0];
+
+    /**
+     * Nombre d'entités du bloc
+     */
+    int count;
+
+    /**
+     * Copie dans les colonnes l'état des entités de rang from à to - 1 d'un tableau, avec une accélération nulle. Remplace le bloc précédent
+     * @param bodies entités soumises aux forces de champ
+     * @param from rang de la première entité
+     * @param to rang suivant la dernière entité
+     */
+    public void load(Entity[] bodies, int from, int to) {
+
+        count = to - from;
+        if (count > entities.length) {
+            int capacity = Math.max(64, count);
+            entities = new Entity[capacity];
+            x = new float[capacity];
+            y = new float[capacity];
+            mass = new float[capacity];
+            massInv = new float[capacity];
+            jInv = new float[capacity];
+            classic = new float[capacity];
+            accX = new double[capacity];
+            accY = new double[capacity];
+            angAcc = new double[capacity];
+            forceX = new double[capacity];
+            forceY = new double[capacity];
+            torque = new double[capacity];
+        }
+
+        for (int i = 0; i < count; ++i) {
+
+            Entity entity = entities[i] = bodies[from + i];
+            x[i] = entity.getPos().x;
+            y[i] = entity.getPos().y;
+            mass[i] = entity.getInertia().getMass();
+            massInv[i] = entity.getInertia().getMassInv();
+            jInv[i] = entity.getInertia().getJInv();
+            classic[i] = entity.getCollisionType() == Collision.CollisionType.CLASSIC ? 1 : 0;
+            accX[i] = accY[i] = angAcc[i] = 0;
+        }
+    }
+
+    /**
+     * Annule les forces indéfinies (NaN) du champ en cours de calcul, par exemple celles des entités au centre d'un champ en 1 / d².
+     * Permet aux champs de calculer leurs forces d'une boucle sans branchement, que le JIT vectorise
+     */
+    void clearUndefinedForces() {
+
+        for (int i = 0; i < count; ++i)
+            if (Double.isNaN(forceX[i]) || Double.isNaN(forceY[i]))
+                forceX[i] = forceY[i] = 0;
+    }
+
+    /**
+     * Ajoute aux accélérations cumulées les forces et couples calculés par un champ dans les colonnes forceX, forceY et torque,
+     * sauf à la source du champ et aux entités non CLASSIC. Si le champ a une source, la somme des forces exercées sur le bloc est ajoutée à reactions[offset] et reactions[offset + 1]
+     *
+     * @param field champ dont les forces viennent d'être calculées (FieldForce.evaluateAll)
+     * @param reactions sommes des forces exercées par les champs
+     * @param offset indice de la somme de ce champ dans reactions
+     */
+    public void accumulate(FieldForce field, double[] reactions, int offset) {
+
+        // La source n'est pas soumise à son propre champ
+        Entity source = field.getSource();
+        if (source != null)
+            for (int i = 0; i < count; ++i)
+                if (entities[i] == source)
+                    forceX[i] = forceY[i] = torque[i] = 0;
+
+        for (int i = 0; i < count; ++i) {
+            accX[i] += forceX[i] * massInv[i] * classic[i];
+            accY[i] += forceY[i] * massInv[i] * classic[i];
+            angAcc[i] += torque[i] * jInv[i] * classic[i];
+        }
+
+        if (source == null)
+            return;
+
+        double sumX = 0, sumY = 0;
+        for (int i = 0; i < count; ++i) {
+            sumX += forceX[i];
+            sumY += forceY[i];
+        }
+
+        reactions[offset] += sumX;
+        reactions[offset + 1] += sumY;
+    }
+
+    /**
+     * Ajoute aux entités du bloc les accélérations cumulées par les forces de champ, puis vide le bloc
+     */
+    public void scatter() {
+
+        for (int i = 0; i < count; ++i) {
+
+            if (accX[i] != 0 || accY[i] != 0)
+                entities[i].getAcc().add(accX[i], accY[i]);
+
+            if (angAcc[i] != 0)
+                entities[i].setAngAcc((float) (entities[i].getAngAcc() + angAcc[i]));
+        }
+
+        Arrays.fill(entities, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * Renvoie l'entité de rang i
+     * @param i rang
+     * @return entité
+     */
+    public Entity get(int i) {
+
+        return entities[i];
+    }
+
+    /**
+     * Renvoie le nombre d'entités du bloc
+     * @return count
+     */
+    public int size() {
+
+        return count;
+    }
+
+    public String toString() {
+
+        return "ForceBatch[count=" + count + "]";
+    }
+}
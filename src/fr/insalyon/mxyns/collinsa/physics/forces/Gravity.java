@@ -11,7 +11,7 @@ public class Gravity extends Force {
     /**
      * Constante gravitationnelle
      */
-    private static final double GRAVITATIONAL_CONSTANT = 6.67408 * 1e-11;
+    static final double GRAVITATIONAL_CONSTANT = 6.67408 * 1e-11;
 
     /**
      * By convention, source should be the heaviest of the two entities but it really doesn't matter
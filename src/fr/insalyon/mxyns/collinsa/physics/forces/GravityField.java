@@ -0,0 +1,78 @@
+package fr.insalyon.mxyns.collinsa.physics.forces;
+
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+/**
+ * Pesanteur uniforme, verticale vers le bas : F = gFactor * EARTH_GRAVITY * m
+ */
+public class GravityField extends FieldForce {
+
+    /**
+     * Intensité de la gravité sur Terre
+     */
+    private static final double EARTH_GRAVITY = 9.807;
+
+    /**
+     * Facteur multiplicateur d'intensité, modifiable pendant la simulation
+     */
+    private volatile double gFactor;
+
+    /**
+     * Crée une pesanteur valant gFactor * EARTH_GRAVITY
+     * @param gFactor multiplicateur de l'intensité de la pesanteur
+     *    ~ 0,165 pour la Lune
+     *    ~ 0,3784 pour Mars
+     *    ~ 2,52778627510 pour Jupiter
+     */
+    public GravityField(double gFactor) {
+
+        super(null);
+        this.gFactor = gFactor;
+    }
+
+    /**
+     * @param result (0, gFactor * EARTH_GRAVITY * m(body), 0)
+     */
+    @Override
+    public void evaluate(Entity body, double[] result) {
+
+        result[0] = 0;
+        result[1] = EARTH_GRAVITY * gFactor * body.getInertia().getMass();
+        result[2] = 0;
+    }
+
+    /**
+     * Calcule d'une boucle la pesanteur des entités du bloc
+     */
+    @Override
+    public void evaluateAll(ForceBatch bodies) {
+
+        float[] mass = bodies.mass;
+        double[] forceX = bodies.forceX, forceY = bodies.forceY, torque = bodies.torque;
+        double gravity = EARTH_GRAVITY * gFactor;
+
+        for (int i = 0, count = bodies.count; i < count; ++i) {
+            forceX[i] = 0;
+            forceY[i] = gravity * mass[i];
+            torque[i] = 0;
+        }
+    }
+
+    /**
+     * Renvoie le multiplicateur de l'intensité de la pesanteur
+     * @return gFactor
+     */
+    public double getGFactor() {
+
+        return gFactor;
+    }
+
+    /**
+     * Change le multiplicateur de l'intensité de la pesanteur
+     * @param gFactor multiplicateur, 1 pour la pesanteur terrestre
+     */
+    public void setGFactor(double gFactor) {
+
+        this.gFactor = gFactor;
+    }
+}
@@ -0,0 +1,224 @@
+package fr.insalyon.mxyns.collinsa.physics.forces;
+
+import fr.insalyon.mxyns.collinsa.physics.Physics;
+import fr.insalyon.mxyns.collinsa.physics.collisions.Collision;
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+import fr.insalyon.mxyns.collinsa.threads.WorkerPool;
+import fr.insalyon.mxyns.collinsa.utils.geo.Vec2d;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Gravité entre toutes les entités de la simulation (problème à n corps), chaque entité étant à la fois source et cible.
+ * Une seule instance, ajoutée aux forces de la simulation (Physics.forces), remplace les n² forces Gravity entre chaque paire d'entités :
+ * à chaque application, un quadtree de Barnes-Hut est reconstruit à partir des positions et des masses des entités,
+ * puis l'attraction subie par chaque entité est calculée en parallèle par un parcours de l'arbre.
+ *
+ * Les entités cinématiques et endormies attirent les autres mais ne sont pas accélérées, les entités statiques sont ignorées.
+ * @see BarnesHutTree
+ */
+public class ManyBodyGravity extends Force {
+
+    /**
+     * Nombre d'entités par bloc lors du calcul parallèle des attractions
+     */
+    private static final int GRAIN = 256;
+
+    /**
+     * Simulation dont les entités s'attirent
+     */
+    private final Physics physics;
+
+    /**
+     * Angle d'ouverture θ : un groupe d'entités dont la taille vue depuis l'entité attirée est inférieure à θ est remplacé par son centre de masse.
+     * 0 <=> calcul exact en O(n²), ~0.5 est un bon compromis entre précision et vitesse
+     */
+    private double theta;
+
+    /**
+     * Distance adoucissant l'attraction entre entités très proches, pour qu'elle ne diverge pas
+     */
+    private double softening = 0;
+
+    /**
+     * Constante de gravitation utilisée, la même que Gravity par défaut
+     */
+    private double gravitationalConstant = Gravity.GRAVITATIONAL_CONSTANT;
+
+    /**
+     * Quadtree reconstruit à chaque application
+     */
+    private final BarnesHutTree tree = new BarnesHutTree();
+
+    /**
+     * Entités de la simulation lors de la dernière application, leur position, leur masse et l'accélération calculée (2 valeurs par entité)
+     */
+    private Entity[] bodies = new Entity[0];
+    private float[] x = new float[0], y = new float[0], mass = new float[0];
+    private double[] accelerations = new double[0];
+
+    /**
+     * Nombre d'entités lors de la dernière application
+     */
+    private int bodyCount;
+
+    /**
+     * Référence unique vers le calcul des attractions d'un bloc d'entités
+     */
+    private final IntConsumer attractionBlock = this::attractBlock;
+
+    /**
+     * Crée une gravité entre toutes les entités de 'physics'
+     * @param physics simulation
+     * @param theta angle d'ouverture de l'approximation de Barnes-Hut, 0 pour le calcul exact
+     */
+    public ManyBodyGravity(Physics physics, double theta) {
+
+        this.physics = physics;
+        setTheta(theta);
+    }
+
+    /**
+     * Reconstruit le quadtree et applique à chaque entité l'attraction de toutes les autres
+     * @return true si appliquée
+     */
+    @Override
+    public boolean apply() {
+
+        bodyCount = 0;
+        for (Entity entity : physics.getEntities()) {
+
+            if (entity.getInertia().getMass() <= 0 || entity.getCollisionType() == Collision.CollisionType.IGNORE)
+                continue;
+
+            if (bodyCount == bodies.length) {
+                int capacity = Math.max(64, 2 * bodies.length);
+                bodies = Arrays.copyOf(bodies, capacity);
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+                mass = Arrays.copyOf(mass, capacity);
+                accelerations = Arrays.copyOf(accelerations, 2 * capacity);
+            }
+
+            bodies[bodyCount] = entity;
+            x[bodyCount] = entity.getPos().x;
+            y[bodyCount] = entity.getPos().y;
+            mass[bodyCount] = entity.getInertia().getMass();
+            ++bodyCount;
+        }
+
+        tree.build(x, y, mass, bodyCount);
+        physics.getWorkerPool().forEachBlock(WorkerPool.blockCount(bodyCount, GRAIN), attractionBlock);
+
+        Arrays.fill(bodies, 0, bodyCount, null);
+
+        return true;
+    }
+
+    /**
+     * Calcule et applique l'attraction subie par les entités d'un bloc. Exécuté par un des threads de la simulation, chaque entité n'est touchée que par un seul bloc
+     * @param block numéro du bloc
+     */
+    private void attractBlock(int block) {
+
+        for (int i = block * GRAIN, end = Math.min(bodyCount, i + GRAIN); i < end; ++i) {
+
+            Entity entity = bodies[i];
+            if (entity.getCollisionType() != Collision.CollisionType.CLASSIC || entity.isSleeping())
+                continue;
+
+            tree.computeAcceleration(i, theta, softening, gravitationalConstant, accelerations);
+            entity.getAcc().add(accelerations[2 * i], accelerations[2 * i + 1]);
+        }
+    }
+
+    /**
+     * Non utilisé : les accélérations sont calculées directement par le quadtree
+     * @return vecteur nul
+     */
+    @Override
+    protected Vec2d computeValue() {
+
+        return Vec2d.zero();
+    }
+
+    /**
+     * Moment toujours nul puisqu'elle s'applique au centre de masse
+     *
+     * @return 0
+     */
+    @Override
+    protected double computeMoment(Vec2d GM, Vec2d value) {
+
+        return 0;
+    }
+
+    /**
+     * Renvoie l'angle d'ouverture de l'approximation de Barnes-Hut
+     * @return theta
+     */
+    public double getTheta() {
+
+        return theta;
+    }
+
+    /**
+     * Change l'angle d'ouverture de l'approximation de Barnes-Hut, pris en compte dès l'application suivante
+     * @param theta angle d'ouverture, 0 pour le calcul exact. Plus il est grand plus le calcul est rapide et approximatif
+     */
+    public void setTheta(double theta) {
+
+        this.theta = Math.max(0, theta);
+    }
+
+    /**
+     * Renvoie la distance adoucissant l'attraction entre entités très proches
+     * @return softening
+     */
+    public double getSoftening() {
+
+        return softening;
+    }
+
+    /**
+     * Change la distance adoucissant l'attraction entre entités très proches
+     * @param softening distance en mètres, 0 pour la loi de Newton exacte
+     */
+    public void setSoftening(double softening) {
+
+        this.softening = Math.max(0, softening);
+    }
+
+    /**
+     * Renvoie la constante de gravitation utilisée
+     * @return gravitationalConstant
+     */
+    public double getGravitationalConstant() {
+
+        return gravitationalConstant;
+    }
+
+    /**
+     * Change la constante de gravitation utilisée, pour rendre l'attraction visible avec des masses à l'échelle de la simulation
+     * @param gravitationalConstant constante G
+     */
+    public void setGravitationalConstant(double gravitationalConstant) {
+
+        this.gravitationalConstant = gravitationalConstant;
+    }
+
+    /**
+     * Renvoie le quadtree de la dernière application
+     * @return tree
+     */
+    public BarnesHutTree getTree() {
+
+        return tree;
+    }
+
+    public String toString() {
+
+        return "ManyBodyGravity[theta=" + theta + ", bodies=" + bodyCount + ", " + tree + "]";
+    }
+}
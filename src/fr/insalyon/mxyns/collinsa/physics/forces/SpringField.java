@@ -0,0 +1,65 @@
+package fr.insalyon.mxyns.collinsa.physics.forces;
+
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+/**
+ * Ressorts reliant une entité (source) à toutes les autres, attachés à leurs centres : F = SPRING_CONSTANT * (|d| - REST_LENGTH) * d / |d|
+ */
+public class SpringField extends FieldForce {
+
+    /**
+     * SPRING_CONSTANT : constante de raideur des ressorts
+     * REST_LENGTH : longueur au repos des ressorts
+     */
+    public final double SPRING_CONSTANT, REST_LENGTH;
+
+    /**
+     * Crée des ressorts entre 'source' et toutes les autres entités
+     * @param source entité à laquelle les ressorts sont attachés
+     * @param springConstant constante de raideur
+     * @param restLength longueur au repos
+     */
+    public SpringField(Entity source, double springConstant, double restLength) {
+
+        super(source);
+
+        SPRING_CONSTANT = springConstant;
+        REST_LENGTH = restLength;
+    }
+
+    /**
+     * @param result (SPRING_CONSTANT * (|d| - REST_LENGTH) * d / |d|, 0) avec d = body -> source, nul si les centres sont confondus
+     */
+    @Override
+    public void evaluate(Entity body, double[] result) {
+
+        double dx = source.getPos().x - body.getPos().x, dy = source.getPos().y - body.getPos().y, length = Math.sqrt(dx * dx + dy * dy);
+        double factor = length > 0 ? SPRING_CONSTANT * (length - REST_LENGTH) / length : 0;
+
+        result[0] = factor * dx;
+        result[1] = factor * dy;
+        result[2] = 0;
+    }
+
+    /**
+     * Calcule d'une boucle sans branchement la force des ressorts reliant la source aux entités du bloc. Les forces indéfinies (entités au centre de la source) sont ensuite annulées
+     */
+    @Override
+    public void evaluateAll(ForceBatch bodies) {
+
+        float[] x = bodies.x, y = bodies.y;
+        double[] forceX = bodies.forceX, forceY = bodies.forceY, torque = bodies.torque;
+        double sourceX = source.getPos().x, sourceY = source.getPos().y;
+
+        for (int i = 0, count = bodies.count; i < count; ++i) {
+
+            double dx = sourceX - x[i], dy = sourceY - y[i], length = Math.sqrt(dx * dx + dy * dy);
+            double factor = SPRING_CONSTANT * (length - REST_LENGTH) / length;
+            forceX[i] = factor * dx;
+            forceY[i] = factor * dy;
+            torque[i] = 0;
+        }
+
+        bodies.clearUndefinedForces();
+    }
+}
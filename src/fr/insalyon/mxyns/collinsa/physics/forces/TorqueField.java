@@ -0,0 +1,50 @@
+package fr.insalyon.mxyns.collinsa.physics.forces;
+
+import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+
+/**
+ * Couple moteur appliqué à toutes les entités autour de leur centre de masse (résultante nulle)
+ */
+public class TorqueField extends FieldForce {
+
+    /**
+     * Couple moteur
+     */
+    public final double torque;
+
+    /**
+     * Crée un couple moteur appliqué à toutes les entités
+     * @param torque moment du couple moteur
+     */
+    public TorqueField(double torque) {
+
+        super(null);
+        this.torque = torque;
+    }
+
+    /**
+     * @param result (0, 0, torque)
+     */
+    @Override
+    public void evaluate(Entity body, double[] result) {
+
+        result[0] = 0;
+        result[1] = 0;
+        result[2] = torque;
+    }
+
+    /**
+     * Applique le couple moteur aux entités du bloc
+     */
+    @Override
+    public void evaluateAll(ForceBatch bodies) {
+
+        double[] forceX = bodies.forceX, forceY = bodies.forceY, torque = bodies.torque;
+
+        for (int i = 0, count = bodies.count; i < count; ++i) {
+            forceX[i] = 0;
+            forceY[i] = 0;
+            torque[i] = this.torque;
+        }
+    }
+}
@@ -41,7 +41,8 @@ public abstract class Preset {
         GlobalForces(new Preset_GlobalForces()),
         Huge(new Preset_Huge()),
         Tests(new Presets_Tests()),
-        Force(new Preset_Force());
+        Force(new Preset_Force()),
+        Cloth(new Preset_Cloth());
 
         private final Preset presetInstance;
 
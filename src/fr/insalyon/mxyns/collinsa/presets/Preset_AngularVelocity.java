@@ -3,10 +3,9 @@ package fr.insalyon.mxyns.collinsa.presets;
 import fr.insalyon.mxyns.collinsa.Collinsa;
 import fr.insalyon.mxyns.collinsa.physics.Material;
 import fr.insalyon.mxyns.collinsa.physics.Physics;
-import fr.insalyon.mxyns.collinsa.physics.collisions.Collision;
 import fr.insalyon.mxyns.collinsa.physics.entities.Circle;
 import fr.insalyon.mxyns.collinsa.physics.entities.Rect;
-import fr.insalyon.mxyns.collinsa.physics.forces.PlanetGravity;
+import fr.insalyon.mxyns.collinsa.physics.forces.GravityField;
 import fr.insalyon.mxyns.collinsa.utils.Utils;
 
 /**
@@ -29,7 +28,6 @@ public class Preset_AngularVelocity extends Preset {
 
         rect = new Rect(physics.getWidth() / 2, physics.getHeight() / 2, 800, 20);
         Utils.applyParameter("--angle", -.5f, args, rect::setRot);
-        rect.setCollisionType(Collision.CollisionType.KINEMATIC);
 
 
         circle = new Circle(rect.getPos().x - 130, rect.getPos().y + 50, 10);
@@ -39,9 +37,9 @@ public class Preset_AngularVelocity extends Preset {
         Utils.applyParameter("--df", Material.DUMMY.getDynamicFriction(), args, circle.getMaterial()::setDynamicFriction);
         Utils.applyParameter("--sf", Material.DUMMY.getStaticFriction(), args, circle.getMaterial()::setStaticFriction);
 
-        physics.addEntity(rect);
+        physics.addStaticEntity(rect);
         physics.addEntity(circle);
-        physics.globalForces.add(new PlanetGravity(1));
+        physics.fieldForces.add(new GravityField(1));
 
         System.out.println(rect.getInertia());
         System.out.println(circle.getInertia());
@@ -0,0 +1,55 @@
+package fr.insalyon.mxyns.collinsa.presets;
+
+import fr.insalyon.mxyns.collinsa.Collinsa;
+import fr.insalyon.mxyns.collinsa.physics.Physics;
+import fr.insalyon.mxyns.collinsa.physics.collisions.Collision;
+import fr.insalyon.mxyns.collinsa.physics.constraints.DistanceConstraints;
+import fr.insalyon.mxyns.collinsa.physics.entities.Circle;
+import fr.insalyon.mxyns.collinsa.physics.forces.GravityField;
+import fr.insalyon.mxyns.collinsa.utils.Utils;
+
+import java.awt.Color;
+
+/**
+ * Preset qui montre un tissu : une grille d'entités reliées par des contraintes de distance, suspendue par sa première ligne
+ */
+public class Preset_Cloth extends Preset {
+
+    @Override
+    public void setup(String[] args, Collinsa collinsa) {
+
+        Physics physics = collinsa.getPhysics();
+        DistanceConstraints constraints = physics.getConstraints();
+
+        int columns = Utils.getParameter("--columns", 60, args), rows = Utils.getParameter("--rows", 40, args);
+        float spacing = Utils.getParameter("--spacing", 10f, args);
+        float compliance = Utils.getParameter("--compliance", 0f, args);
+        float left = (physics.getWidth() - (columns - 1) * spacing) * .5f, top = 50;
+
+        Circle[] grid = new Circle[columns * rows];
+        for (int j = 0; j < rows; ++j)
+            for (int i = 0; i < columns; ++i) {
+
+                Circle node = new Circle(left + i * spacing, top + j * spacing, spacing * .2f);
+                node.setColor(Color.darkGray);
+
+                // La première ligne est accrochée : un point sur cinq reste immobile
+                if (j == 0 && i % 5 == 0)
+                    node.setCollisionType(Collision.CollisionType.KINEMATIC);
+
+                physics.addEntity(node);
+                grid[j * columns + i] = node;
+            }
+
+        for (int j = 0; j < rows; ++j)
+            for (int i = 0; i < columns; ++i) {
+
+                if (i + 1 < columns)
+                    constraints.add(grid[j * columns + i], grid[j * columns + i + 1], spacing, compliance);
+                if (j + 1 < rows)
+                    constraints.add(grid[j * columns + i], grid[(j + 1) * columns + i], spacing, compliance);
+            }
+
+        physics.fieldForces.add(new GravityField(1));
+    }
+}
@@ -6,7 +6,7 @@ import fr.insalyon.mxyns.collinsa.physics.Physics;
 import fr.insalyon.mxyns.collinsa.physics.collisions.Collision;
 import fr.insalyon.mxyns.collinsa.physics.entities.Circle;
 import fr.insalyon.mxyns.collinsa.physics.entities.Rect;
-import fr.insalyon.mxyns.collinsa.physics.forces.PlanetGravity;
+import fr.insalyon.mxyns.collinsa.physics.forces.GravityField;
 import fr.insalyon.mxyns.collinsa.utils.Utils;
 
 import java.awt.Color;
@@ -26,17 +26,15 @@ public class Preset_Friction extends Preset {
 
         Rect r_sticky = new Rect(40, 300, 220, 30);
         r_sticky.setRot(1.1f);
-        r_sticky.setCollisionType(Collision.CollisionType.KINEMATIC);
         r_sticky.setMaterial(Material.STICKY.copy());
         r_sticky.getInertia().setMass(1.5f);
-        physics.addEntity(r_sticky);
+        physics.addStaticEntity(r_sticky);
 
         Rect r_bouncy = new Rect(250, 300, 200, 30);
         r_bouncy.setMaterial(Material.BOUNCY.copy());
         r_bouncy.getInertia().setMass(100);
         r_bouncy.setRot(.5f);
-        r_bouncy.setCollisionType(Collision.CollisionType.KINEMATIC);
-        physics.addEntity(r_bouncy);
+        physics.addStaticEntity(r_bouncy);
 
         Rect smallMill = new Rect(175, 425, 100, 10);
         smallMill.setMaterial(Material.DUMMY.copy());
@@ -50,8 +48,7 @@ public class Preset_Friction extends Preset {
         r_cyan.setColor(Color.cyan);
         Utils.applyParameter("--cyanMass", 5f, args, r_cyan.getInertia()::setMass);
         r_cyan.setRot(0.2f);
-        r_cyan.setCollisionType(Collision.CollisionType.KINEMATIC);
-        physics.addEntity(r_cyan);
+        physics.addStaticEntity(r_cyan);
 
         mill = new Rect(780, 500, 275, 15);
         Utils.applyParameter("--millDF", Material.DUMMY.getDynamicFriction(), args, mill.getMaterial()::setDynamicFriction);
@@ -67,10 +64,9 @@ public class Preset_Friction extends Preset {
         r_landing.getMaterial().setStaticFriction(Material.DUMMY.getStaticFriction()/2);
         r_landing.getMaterial().setDynamicFriction(Material.DUMMY.getDynamicFriction()/2);
         r_landing.setRot(.0f);
-        r_landing.setCollisionType(Collision.CollisionType.KINEMATIC);
         r_landing.setColor(Color.black);
-        physics.addEntity(r_landing);
-        physics.globalForces.add(new PlanetGravity(1));
+        physics.addStaticEntity(r_landing);
+        physics.fieldForces.add(new GravityField(1));
     }
 
     @Override
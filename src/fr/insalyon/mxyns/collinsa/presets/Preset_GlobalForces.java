@@ -3,8 +3,9 @@ package fr.insalyon.mxyns.collinsa.presets;
 import fr.insalyon.mxyns.collinsa.Collinsa;
 import fr.insalyon.mxyns.collinsa.physics.Physics;
 import fr.insalyon.mxyns.collinsa.physics.entities.Circle;
-import fr.insalyon.mxyns.collinsa.physics.forces.Gravity;
-import fr.insalyon.mxyns.collinsa.physics.forces.Spring;
+import fr.insalyon.mxyns.collinsa.physics.forces.AttractionField;
+import fr.insalyon.mxyns.collinsa.physics.forces.ManyBodyGravity;
+import fr.insalyon.mxyns.collinsa.physics.forces.SpringField;
 import fr.insalyon.mxyns.collinsa.utils.Utils;
 import fr.insalyon.mxyns.collinsa.utils.geo.Vec2f;
 
@@ -41,7 +42,16 @@ public class Preset_GlobalForces extends Preset {
             physics.addEntity(circle);
         }
 
-        physics.globalForces.add(new Spring(attractor, null, 100, 100));
-        physics.globalForces.add(new Gravity(attractor, null));
+        physics.fieldForces.add(new SpringField(attractor, 100, 100));
+
+        // --manyBody : toutes les entités s'attirent (quadtree de Barnes-Hut), sinon seul l'attracteur attire les autres
+        if (Utils.getParameter("--manyBody", false, args)) {
+
+            ManyBodyGravity gravity = new ManyBodyGravity(physics, Utils.getParameter("--theta", .5, args));
+            Utils.applyParameter("--G", gravity.getGravitationalConstant(), args, gravity::setGravitationalConstant);
+            physics.forces.add(gravity);
+
+        } else
+            physics.fieldForces.add(new AttractionField(attractor));
     }
 }
@@ -6,7 +6,7 @@ import fr.insalyon.mxyns.collinsa.physics.Physics;
 import fr.insalyon.mxyns.collinsa.physics.collisions.Collision;
 import fr.insalyon.mxyns.collinsa.physics.collisions.CollisionListener;
 import fr.insalyon.mxyns.collinsa.physics.entities.*;
-import fr.insalyon.mxyns.collinsa.physics.forces.PlanetGravity;
+import fr.insalyon.mxyns.collinsa.physics.forces.GravityField;
 import fr.insalyon.mxyns.collinsa.utils.geo.Vec2f;
 
 /**
@@ -30,7 +30,6 @@ public class Preset_Polygons extends Preset {
 
         poly2 = new ConvexPoly(new Vec2f(300, 100), 5, 60);
         poly2.setRot(0.1f);
-        poly2.setCollisionType(Collision.CollisionType.KINEMATIC);
 
         ConvexPoly triangle = new ConvexPoly(new Vec2f(600, 200), 3, 60);
         triangle.setAcc(0, 10);
@@ -38,7 +37,6 @@ public class Preset_Polygons extends Preset {
         triangle.setRot((float) Math.toRadians(37));
 
         ConvexPoly sol = new Rect(550, 400, 400, 150);
-        sol.setCollisionType(Collision.CollisionType.KINEMATIC);
         sol.setRot(-0.2f);
         sol.setMaterial(Material.SLIDY);
 
@@ -52,8 +50,7 @@ public class Preset_Polygons extends Preset {
                                             new Vec2f(-40, -20),
                                             new Vec2f(-5f, 30)
         );
-        convexPoly.setCollisionType(Collision.CollisionType.KINEMATIC);
-        physics.addEntity(convexPoly);
+        physics.addStaticEntity(convexPoly);
 
         Circle boule = new Circle(triangle.getPos().copy(), 20);
         boule.getPos().add(10, -50);
@@ -92,10 +89,10 @@ public class Preset_Polygons extends Preset {
 
         physics.addEntity(boule);
         physics.addEntity(listenerTest);
-        physics.addEntity(sol);
+        physics.addStaticEntity(sol);
         physics.addEntity(triangle);
         physics.addEntity(poly);
-        physics.addEntity(poly2);
-        physics.globalForces.add(new PlanetGravity(1));
+        physics.addStaticEntity(poly2);
+        physics.fieldForces.add(new GravityField(1));
     }
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 package fr.insalyon.mxyns.collinsa.render;
 
-import fr.insalyon.mxyns.collinsa.physics.Chunk;
+import fr.insalyon.mxyns.collinsa.physics.collisions.AABB;
 import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
 import fr.insalyon.mxyns.collinsa.utils.geo.Vec2d;
 import fr.insalyon.mxyns.collinsa.utils.geo.Vec2f;
@@ -80,16 +80,29 @@ public class Camera {
 
 
     /**
-     * Vérifie si le chunk est visible ou non
-     * @param chunk chunk à tester
-     * @return true si le chunk est visible
+     * Vérifie si une zone rectangulaire du monde (un chunk par exemple) est visible ou non
+     * @param x coordonnée x du coin supérieur gauche de la zone en mètres
+     * @param y coordonnée y du coin supérieur gauche de la zone en mètres
+     * @param w largeur de la zone en mètres
+     * @param h hauteur de la zone en mètres
+     * @return true si la zone est visible
      */
-    boolean sees(Chunk chunk) {
+    boolean sees(double x, double y, double w, double h) {
 
-        return pos.x < chunk.bounds.getX() + chunk.bounds.getWidth() &&
-               pos.x + width > chunk.bounds.getX() &&
-               pos.y < chunk.bounds.getY() + chunk.bounds.getHeight() &&
-               height + pos.y > chunk.bounds.getY();
+        return pos.x < x + w &&
+               pos.x + width > x &&
+               pos.y < y + h &&
+               height + pos.y > y;
+    }
+
+    /**
+     * Vérifie si une AABB est visible ou non
+     * @param aabb AABB à tester
+     * @return true si l'AABB est visible
+     */
+    boolean sees(AABB aabb) {
+
+        return sees(aabb.x, aabb.y, aabb.w, aabb.h);
     }
 
     /**
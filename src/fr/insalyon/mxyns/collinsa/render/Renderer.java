@@ -1,6 +1,6 @@
 package fr.insalyon.mxyns.collinsa.render;
 
-import fr.insalyon.mxyns.collinsa.physics.Chunk;
+import fr.insalyon.mxyns.collinsa.physics.ChunkGrid;
 import fr.insalyon.mxyns.collinsa.physics.Physics;
 import fr.insalyon.mxyns.collinsa.physics.collisions.AABB;
 import fr.insalyon.mxyns.collinsa.physics.entities.Circle;
@@ -146,10 +146,12 @@ public class Renderer {
             cameraController.setCameraFocus(camera.getFollowedEntity().getPos(), true);
         }
 
-        // On fait le rendu de tous les Chunk visibles
-        for (Chunk chunk : physics.getChunks())
-            if(shouldRenderChunk(chunk))
-                renderChunk(chunk, g);
+        // On fait le rendu de toutes les entités visibles
+        renderEntities(physics, g);
+
+        // On dessine les bordures de tous les Chunk visibles si voulu (renderChunksBounds = true)
+        if (renderChunksBounds)
+            renderChunksBounds(physics, g);
 
 
         // On affiche les limites du monde si voulu (renderWorldBounds = true)
@@ -169,6 +171,9 @@ public class Renderer {
             g.draw(new Line2D.Double(factor * -camera.getPos().x, factor * -camera.getPos().y, factor * -camera.getPos().x, factor * (axesSize-camera.getPos().y)));
         }
 
+        // On affiche les contraintes de distance
+        physics.getConstraints().render(this, g);
+
         // On affiche les forces si voulu (renderForces = true)
         if (renderForces) {
 
@@ -235,42 +240,64 @@ public class Renderer {
     }
 
     /**
-     * Détermine si le chunk est partiellement visible par la caméra et donc s'il doit être rendu
-     * @param chunk le chunk vérifié
-     * @return true si le chunk est visible
-     * @see Camera
+     * Render les entités visibles par la caméra sur le panel de destination
+     * On parcourt la liste des entités plutôt que les Chunks, une entité à cheval sur plusieurs Chunks n'est donc rendue qu'une fois
+     * @param physics simulation dont il faut rendre les entités
+     * @param g L'objet Graphics2D associé au Panel permettant de dessiner dessus
      */
-    private boolean shouldRenderChunk(Chunk chunk) {
+    private void renderEntities(Physics physics, Graphics2D g) {
 
-        return camera.sees(chunk);
+        renderEntities(physics.getStaticEntities(), g);
+        renderEntities(physics.getEntities(), g);
     }
 
     /**
-     * Render le chunk sur le panel de destination
-     * @param chunk Le Chunk à rendre
+     * Render les entités d'une liste visibles par la caméra
+     * @param entities entités à rendre
      * @param g L'objet Graphics2D associé au Panel permettant de dessiner dessus
      */
-    private void renderChunk(Chunk chunk, Graphics2D g) {
+    private void renderEntities(Iterable<Entity> entities, Graphics2D g) {
 
         AffineTransform transform = g.getTransform();
 
-        for (Entity entity : chunk.entities) {
+        for (Entity entity : entities) {
+
+            AABB aabb = entity.getAABB();
+            if (!camera.sees(aabb))
+                continue;
 
             entity.render(this, g);
             g.setTransform(transform);
 
             if (renderEntitiesAABB) {
-                AABB aabb = entity.getAABB();
                 g.setColor(AABBBoundsColor);
                 g.drawRect((int) ((aabb.x - camera.getPos().x) * factor), (int) ((aabb.y - camera.getPos().y) * factor), (int) (aabb.getWidth() * factor), (int) (aabb.getHeight() * factor));
             }
         }
+    }
 
-        if (renderChunksBounds) {
-            g.setColor(chunkBoundsColor);
-            g.drawRect((int) ((chunk.bounds.getX() - camera.getPos().x) * factor), (int) ((chunk.bounds.getY() - camera.getPos().y) * factor), (int) (chunk.bounds.getWidth() * factor), (int) (chunk.bounds.getHeight() * factor));
-            g.drawString(String.valueOf(INSTANCE.getPhysics().getPositionHash(chunk.bounds.getX(), chunk.bounds.getY())), (int) ((chunk.bounds.getX() - camera.getPos().x) * factor), (int) ((chunk.bounds.getY() - camera.getPos().y + INSTANCE.getPhysics().getChunkSize().y) * factor));
-        }
+    /**
+     * Render les bordures des chunks partiellement visibles par la caméra sur le panel de destination
+     * @param physics simulation dont il faut rendre les chunks
+     * @param g L'objet Graphics2D associé au Panel permettant de dessiner dessus
+     * @see Camera
+     */
+    private void renderChunksBounds(Physics physics, Graphics2D g) {
+
+        Vec2f chunkSize = physics.getChunkSize();
+        ChunkGrid grid = physics.getChunkGrid();
+
+        g.setColor(chunkBoundsColor);
+        for (int y = 0; y < grid.getCountY(); ++y)
+            for (int x = 0; x < grid.getCountX(); ++x) {
+
+                float chunkX = x * chunkSize.x, chunkY = y * chunkSize.y;
+                if (!camera.sees(chunkX, chunkY, chunkSize.x, chunkSize.y))
+                    continue;
+
+                g.drawRect((int) ((chunkX - camera.getPos().x) * factor), (int) ((chunkY - camera.getPos().y) * factor), (int) (chunkSize.x * factor), (int) (chunkSize.y * factor));
+                g.drawString(String.valueOf(grid.getCellIndex(x, y)), (int) ((chunkX - camera.getPos().x) * factor), (int) ((chunkY - camera.getPos().y + chunkSize.y) * factor));
+            }
     }
 
     /**
@@ -3,15 +3,20 @@ package fr.insalyon.mxyns.collinsa.threads;
 import fr.insalyon.mxyns.collinsa.Collinsa;
 import fr.insalyon.mxyns.collinsa.clocks.Clock;
 import fr.insalyon.mxyns.collinsa.clocks.MillisClock;
+import fr.insalyon.mxyns.collinsa.physics.BodyStore;
 import fr.insalyon.mxyns.collinsa.physics.Physics;
 import fr.insalyon.mxyns.collinsa.physics.collisions.Collider;
 import fr.insalyon.mxyns.collinsa.physics.collisions.Collision;
 import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
+import fr.insalyon.mxyns.collinsa.physics.forces.FieldForce;
 import fr.insalyon.mxyns.collinsa.physics.forces.Force;
+import fr.insalyon.mxyns.collinsa.physics.forces.ForceBatch;
 import fr.insalyon.mxyns.collinsa.utils.monitoring.EntityMonitoring;
 import fr.insalyon.mxyns.collinsa.utils.monitoring.Monitoring;
 
 import java.awt.Color;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
 
 /**
  * Thread dédié à la mise à jour de la simulation.
@@ -74,9 +79,92 @@ public class ProcessingThread extends ClockedThread {
         this.baseDelay = 1000 / refreshRate;
     }
 
+    /**
+     * Nombre d'entités intégrées par bloc
+     */
+    private static final int INTEGRATION_GRAIN = 512;
+
+    /**
+     * Etats possibles d'une entité après intégration : inchangée (désactivée ou endormie), mise à jour, à supprimer
+     */
+    private static final byte UNCHANGED = 0, UPDATED = 1, REMOVED = 2;
+
+    /**
+     * Entités en cours d'intégration et leur état après intégration. Réutilisés d'un tick à l'autre
+     */
+    private Entity[] integrated = new Entity[0];
+    private byte[] integrationStatus = new byte[0];
+
+    /**
+     * Nombre d'entités en cours d'intégration
+     */
+    private int integratedCount;
+
+    /**
+     * Durée de l'intégration en cours, en secondes
+     */
+    private double integrationStep;
+
+    /**
+     * Référence unique vers l'intégration d'un bloc d'entités
+     */
+    private final IntConsumer integrationBlock = this::integrateBlock;
+
+    /**
+     * Nombre d'entités soumises aux forces de champ par bloc
+     */
+    private static final int FIELD_GRAIN = 256;
+
+    /**
+     * Forces de champ du tick en cours (instantané de Physics.fieldForces) et entités éveillées qui y sont soumises. Réutilisés d'un tick à l'autre
+     */
+    private FieldForce[] fields = new FieldForce[0];
+    private Entity[] fieldBodies = new Entity[0];
+
+    /**
+     * Nombre de forces de champ et d'entités du tick en cours
+     */
+    private int fieldCount, fieldBodyCount;
+
+    /**
+     * Somme des forces exercées par chaque champ sur les entités de chaque bloc, 2 valeurs par (bloc, champ), pour la réaction sur les sources
+     */
+    private double[] fieldReactions = new double[0];
+
+    /**
+     * Bloc d'entités rangées en colonnes pour l'évaluation des champs, un bloc par thread de calcul
+     */
+    private static final ThreadLocal<ForceBatch> fieldBatches = ThreadLocal.withInitial(ForceBatch::new);
+
+    /**
+     * Référence unique vers l'application des forces de champ à un bloc d'entités
+     */
+    private final IntConsumer fieldBlock = this::applyFieldBlock;
+
+    /**
+     * Nombre maximal de sous-pas par tick en mode real-time, en multiple de subSteps. Au-delà, le temps en retard est abandonné
+     * pour que la simulation ne s'enlise pas (chaque tick trop long demanderait encore plus de sous-pas au suivant)
+     */
+    private static final int MAX_CATCH_UP = 4;
+
+    /**
+     * Temps écoulé pas encore simulé en mode real-time avec sous-pas, en unités de l'horloge
+     */
+    private double accumulator;
+
+    /**
+     * Durée simulée lors du tick en cours (somme des sous-pas), en secondes
+     */
+    private double tickDuration;
+
     /**
      * Mise à jour de l'état de la simulation :
      *      Mise à jour des positions, détection de collisions, résolution des collisions, etc...
+     * Avec plusieurs sous-pas (Physics.subSteps), le tick est découpé en pas fixes de fixedDeltaTime / subSteps : chaque sous-pas intègre les entités,
+     * applique les contraintes et les forces, teste et résout les collisions, mais la broad phase n'est mise à jour qu'au premier sous-pas,
+     * à partir des AABB élargies au trajet possible pendant tout le tick, les suivants testant à nouveau les mêmes paires.
+     * Le sommeil et le monitoring ne sont mis à jour qu'au dernier sous-pas
+     *
      * @param elapsedTime temps écoulé (c-à-d le temps dont il faut que la simulation avance)
      */
     // Déclarer deltaTime en dehors de tick permet de l'utiliser ailleurs et de ne pas avoir à re-allouer la mémoire nécessaire à un long
@@ -87,25 +175,267 @@ public class ProcessingThread extends ClockedThread {
         // Sélection du temps à utiliser
         deltaTime = physics.isRealtime() ? elapsedTime : physics.getFixedDeltaTime();
 
-        physics.totalElapsedTime += deltaTime;
+        // Découpage en sous-pas : en mode real-time, le temps écoulé est accumulé et consommé par pas fixes
+        int subSteps = physics.getSubSteps(), stepCount = subSteps;
+        double step = deltaTime;
+        if (subSteps > 1) {
+
+            step = (double) physics.getFixedDeltaTime() / subSteps;
+            if (physics.isRealtime()) {
+
+                accumulator += elapsedTime;
+                stepCount = Math.min((int) (accumulator / step), MAX_CATCH_UP * subSteps);
+                accumulator = Math.min(accumulator - stepCount * step, step);
+            }
+        }
+
+        tickDuration = stepCount * step * clock.toSec();
+        for (int s = 0; s < stepCount; ++s) {
+
+            physics.totalElapsedTime += step;
+            subStep(step * clock.toSec(), s == 0, s == stepCount - 1, stepCount > 1);
+        }
+
+        // 6ème on régule le délai
+        regulateDelay(baseDelay, elapsedTime);
+    }
+
+    /**
+     * Avance la simulation d'un pas (ou sous-pas)
+     * @param step durée du pas en secondes
+     * @param first true pour le premier sous-pas du tick, qui met à jour la broad phase
+     * @param last true pour le dernier sous-pas du tick, qui met à jour le sommeil et le monitoring
+     * @param subStepping true si le tick est découpé en plusieurs sous-pas : les paires de la broad phase sont gardées pour les sous-pas suivants
+     */
+    private void subStep(double step, boolean first, boolean last, boolean subStepping) {
+
+        // 1ère étape : mettre à jour les éléments, en parallèle sur des plages d'entités
+        integrate(step, last);
+
+        // 1-bis étape : les positions et vitesses sont corrigées pour respecter les contraintes de distance (XPBD, en parallèle par couleur)
+        physics.getConstraints().solve(step, physics.getWorkerPool());
+
+        // 1-ter étape : on applique les forces, une force réveille les entités endormies qu'elle relie à une entité éveillée
+        for (Force force : physics.forces)
+            if (force.wakeUp())
+                force.apply();
+
+        if (first) {
+
+            // 2ème étape : on remet à jour les Chunks à partir des positions tout juste calculées (une seule reconstruction de la grille par tick, sauf si le mode adaptatif la redimensionne, ou seulement les entités ayant changé de chunk en mode incrémental).
+            // Avec des sous-pas, les AABB sont élargies au trajet possible pendant le tick pour que la broad phase donne aussi les contacts des sous-pas suivants
+            if (subStepping)
+                physics.fattenAABBs(tickDuration);
+            physics.spatialHashing();
+            physics.adaptChunks();
+        }
+
+        // 2-bis étape : les entités rapides sont ramenées à leur premier impact sur leur trajet (détection continue, AABB balayées).
+        // Aux sous-pas suivants, la broad phase du premier sous-pas couvre encore leur trajet
+        collider.getContinuousDetection().advance(physics);
+
+        // 2-ter étape : on applique les forces de champ aux entités éveillées (les entités endormies ne les subissent pas et n'en sont pas réveillées), en parallèle
+        if (!physics.fieldForces.isEmpty())
+            applyFieldForces();
+
+        // 2-quater étape : en mode précis, les collisions des cercles dynamiques sont résolues dans l'ordre où elles ont lieu pendant le pas, les positions ont donc changé
+        if (collider.preciseResolution && collider.getEventSolver().solve(physics, (float) step) && first)
+            physics.spatialHashing();
+
+        // 3ème étape : détection de collisions, chaque paire d'entités proches n'est testée qu'une fois (sauf celles déjà résolues en mode précis).
+        // Avec des sous-pas, les paires du premier sous-pas sont testées à nouveau aux suivants
+        if (!subStepping)
+            collider.checkForCollisions();
+        else if (first)
+            collider.checkForCollisions(true);
+        else
+            collider.checkForRetainedPairs();
+
+        // 4ème étape : résolution des collisions détectées
+        if (collider.preciseResolution) // Les collisions restantes (polygones dynamiques, entités endormies ou ayant des listeners) sont résolues séquentiellement, dans l'ordre de détection
+            Collision.resolveAll(collider.getRegisteredCollision(), collider.getSolverIterations());
+
+        else if (physics.getWorkerPool().isParallel() && !collider.displayCollisionColor) // Résout les îlots de collisions indépendants en parallèle
+            collider.getIslandSolver().solve(collider.getRegisteredCollision(), physics.forces, physics.getWorkerPool(), collider.getSolverIterations());
+
+        else { // Résout les collisions dans leur ordre de détection qui est aléatoire (rapide mais n'est pas déterministe)
+
+            if (collider.displayCollisionColor)
+                for (Collision coll : collider.getRegisteredCollision()) {
+                    coll.getReference().setColor(Color.red);
+                    coll.getIncident().setColor(Color.red);
+                }
+
+            Collision.resolveAll(collider.getRegisteredCollision(), collider.getSolverIterations());
+        }
+
+        // 5ème étape : on endort les îlots au repos, puis on vide le registre des collisions
+        if (last) {
+
+            physics.updateSleeping(tickDuration);
+            if (subStepping)
+                collider.releasePairs();
+        }
+        collider.clearCollisions();
+    }
+
+    /**
+     * Intègre toutes les entités en deux temps :
+     *  1. les entités sont copiées dans un tableau découpé en blocs, intégrés en parallèle par les threads de la simulation (Entity.update).
+     *     Chaque entité n'est touchée que par un seul thread, qui ne fait que noter son état (mise à jour / à supprimer)
+     *  2. sur le ProcessingThread, on supprime les entités notées et on enregistre les données des entités surveillées (monitoring).
+     *     La liste des entités et le monitoring ne sont donc jamais modifiés depuis plusieurs threads
+     *
+     * @param step durée de l'intégration en secondes
+     * @param monitor true pour enregistrer les données des entités surveillées
+     */
+    private void integrate(double step, boolean monitor) {
+
+        // Copie des entités (l'itérateur de la CopyOnWriteArrayList parcourt un instantané de la liste)
+        integratedCount = 0;
+        for (Entity entity : physics.getEntities()) {
+
+            if (integratedCount == integrated.length) {
+                integrated = Arrays.copyOf(integrated, Math.max(64, 2 * integrated.length));
+                integrationStatus = new byte[integrated.length];
+            }
+
+            integrated[integratedCount++] = entity;
+        }
 
+        // Positions de départ pour la détection continue des collisions
+        boolean continuous = collider.isContinuousDetection();
+        if (continuous)
+            collider.getContinuousDetection().saveStartPositions(integrated, integratedCount);
+
+        integrationStep = step;
+        if (physics.isBodyStoreEnabled())
+            physics.getBodyStore().ensureCapacity(integratedCount);
+
+        physics.getWorkerPool().forEachBlock(WorkerPool.blockCount(integratedCount, INTEGRATION_GRAIN), integrationBlock);
+
+        // Phase de validation, séquentielle
         EntityMonitoring entityMonitoring = Collinsa.INSTANCE.getMonitoring().entityMonitoring;
+        for (int i = 0; i < integratedCount; ++i) {
+
+            Entity entity = integrated[i];
+            if (integrationStatus[i] == REMOVED)
+                physics.removeEntity(entity);
+            else if (integrationStatus[i] == UPDATED) {
+
+                if (continuous)
+                    collider.getContinuousDetection().sweep(entity, i);
+
+                if (monitor && entityMonitoring.isMonitored(entity)) {
+                    entityMonitoring.logScalarInfo(entity, physics.totalElapsedTime);
+                    entityMonitoring.logVectorialInfo(entity, physics.totalElapsedTime);
+                }
+            }
+        }
 
-        // Test de mise à jour des positions, vitesses, accélérations
+        Arrays.fill(integrated, 0, integratedCount, null);
+    }
+
+    /**
+     * Applique les forces de champ à toutes les entités éveillées :
+     *  1. chaque bloc d'entités est traité par un des threads de la simulation, qui range ses entités en colonnes (ForceBatch), évalue chaque champ
+     *     sur tout le bloc d'une boucle (FieldForce.evaluateAll) puis ajoute les accélérations cumulées aux entités.
+     *     Chaque entité n'est touchée que par un seul thread, les forces exercées par chaque champ sont sommées par bloc
+     *  2. sur le ProcessingThread, les sources des champs subissent la réaction de la somme des forces, sommées dans l'ordre des blocs (déterministe)
+     */
+    private void applyFieldForces() {
+
+        // Instantané des champs (l'itérateur de la CopyOnWriteArrayList parcourt un instantané de la liste) et des entités éveillées
+        fieldCount = 0;
+        for (FieldForce field : physics.fieldForces) {
+
+            if (fieldCount == fields.length)
+                fields = Arrays.copyOf(fields, Math.max(4, 2 * fields.length));
+
+            fields[fieldCount++] = field;
+        }
+
+        fieldBodyCount = 0;
         for (Entity entity : physics.getEntities()) {
-            // 1ère étape : mettre à jour les éléments
-            // Pour le test on bloque les entités en bas de l'écran pour pas qu'elles se tirent
-            if (entity.getPos().y <= physics.getHeight() && entity.getPos().y >= 0 && entity.getPos().x >= 0 && entity.getPos().x <= physics.getWidth()) {
-                if (entity.isActivated()) {
 
-                    if (entity.update(deltaTime * clock.toSec())) {
-                        if (entityMonitoring.isMonitored(entity)) {
-                            entityMonitoring.logScalarInfo(entity, physics.totalElapsedTime);
-                            entityMonitoring.logVectorialInfo(entity, physics.totalElapsedTime);
-                        }
-                    } else
-                        physics.removeEntity(entity);
+            if (entity.isSleeping())
+                continue;
+
+            if (fieldBodyCount == fieldBodies.length)
+                fieldBodies = Arrays.copyOf(fieldBodies, Math.max(64, 2 * fieldBodies.length));
 
+            fieldBodies[fieldBodyCount++] = entity;
+        }
+
+        int blockCount = WorkerPool.blockCount(fieldBodyCount, FIELD_GRAIN);
+        if (fieldReactions.length < 2 * blockCount * fieldCount)
+            fieldReactions = new double[Math.max(16, 4 * blockCount * fieldCount)];
+        Arrays.fill(fieldReactions, 0, 2 * blockCount * fieldCount, 0);
+
+        physics.getWorkerPool().forEachBlock(blockCount, fieldBlock);
+
+        // Réaction sur les sources
+        for (int k = 0; k < fieldCount; ++k) {
+
+            Entity source = fields[k].getSource();
+            if (source != null && source.getCollisionType() == Collision.CollisionType.CLASSIC) {
+
+                double reactionX = 0, reactionY = 0;
+                for (int block = 0; block < blockCount; ++block) {
+                    reactionX -= fieldReactions[2 * (block * fieldCount + k)];
+                    reactionY -= fieldReactions[2 * (block * fieldCount + k) + 1];
+                }
+
+                source.getAcc().add(reactionX * source.getInertia().getMassInv(), reactionY * source.getInertia().getMassInv());
+            }
+
+            fields[k] = null;
+        }
+
+        Arrays.fill(fieldBodies, 0, fieldBodyCount, null);
+    }
+
+    /**
+     * Applique les forces de champ à un bloc d'entités et somme les forces exercées par chaque champ. Exécuté par un des threads de la simulation
+     * @param block numéro du bloc
+     */
+    private void applyFieldBlock(int block) {
+
+        ForceBatch batch = fieldBatches.get();
+        batch.load(fieldBodies, block * FIELD_GRAIN, Math.min(fieldBodyCount, (block + 1) * FIELD_GRAIN));
+
+        for (int k = 0; k < fieldCount; ++k) {
+            fields[k].evaluateAll(batch);
+            batch.accumulate(fields[k], fieldReactions, 2 * (block * fieldCount + k));
+        }
+
+        batch.scatter();
+    }
+
+    /**
+     * Intègre un bloc d'entités et note l'état de chacune. Exécuté par un des threads de la simulation
+     * @param block numéro du bloc
+     */
+    private void integrateBlock(int block) {
+
+        if (physics.isBodyStoreEnabled()) {
+            integrateBlockInStore(block);
+            return;
+        }
+
+        for (int i = block * INTEGRATION_GRAIN, end = Math.min(integratedCount, i + INTEGRATION_GRAIN); i < end; ++i) {
+
+            Entity entity = integrated[i];
+            byte status = UNCHANGED;
+
+            // Les entités sortant du monde sont supprimées, sauf si le monde est ouvert
+            if (physics.isOpenWorld() || entity.getPos().y <= physics.getHeight() && entity.getPos().y >= 0 && entity.getPos().x >= 0 && entity.getPos().x <= physics.getWidth()) {
+                if (entity.isSleeping())
+                    status = (entity.lived += integrationStep) > entity.lifespan ? REMOVED : UNCHANGED;
+
+                else if (entity.isActivated()) {
+
+                    status = entity.update(integrationStep) ? UPDATED : REMOVED;
 
                     if (!entity.isKinematic()) {
                         entity.setAcc(0, 0);
@@ -113,53 +443,59 @@ public class ProcessingThread extends ClockedThread {
                     }
                 }
             } else
-                physics.removeEntity(entity);
-        }
+                status = REMOVED;
 
-        // 1-bis étape : on applique les forces
-        for (Force force : physics.forces)
-            force.apply();
+            integrationStatus[i] = status;
+        }
+    }
 
-        for (Entity entity : physics.getEntities()) {
+    /**
+     * Intègre un bloc d'entités en passant par le stockage en colonnes de la simulation : l'état des entités du bloc est copié dans les lignes
+     * correspondantes, intégré colonne par colonne puis recopié. Les entités ayant leur propre intégration (usesDefaultIntegration) passent par Entity.update
+     *
+     * @param block numéro du bloc
+     */
+    private void integrateBlockInStore(int block) {
 
-            // 1-ter étape : on applique les forces globales (on le fait ici pour éviter de re-parcourir une deuxième fois la liste des entités
-            for (Force globalForce : physics.globalForces) {
-                if (!globalForce.affects(entity)) { // on évite d'appliquer la force d'un objet sur lui même
-                    globalForce.setTarget(entity);
-                    globalForce.apply();
-                }
-            }
+        BodyStore store = physics.getBodyStore();
+        int from = block * INTEGRATION_GRAIN, to = Math.min(integratedCount, from + INTEGRATION_GRAIN);
 
-            // 2ème étape : détection de collisions
-            for (Entity target : collider.getNearbyEntities(entity))
-                collider.checkForCollision(entity, target);
-        }
+        // Chargement
+        for (int i = from; i < to; ++i) {
 
-     // 3ème étape : résolution des collisions détectées
-        if (collider.preciseResolution) {
+            Entity entity = integrated[i];
+            integrationStatus[i] = UNCHANGED;
+            store.skip(i);
 
-            // TODO: do some fancy collision time calculations and resolve collisions by time order accounting for simultaneous collisions when time difference is lower than a threshold
+            if (physics.isOpenWorld() || entity.getPos().y <= physics.getHeight() && entity.getPos().y >= 0 && entity.getPos().x >= 0 && entity.getPos().x <= physics.getWidth()) {
+                if (entity.isSleeping())
+                    integrationStatus[i] = (entity.lived += integrationStep) > entity.lifespan ? REMOVED : UNCHANGED;
 
-        } else // Résout les collisions dans leur ordre de détection qui est aléatoire (rapide mais n'est pas déterministe)
-            for (Collision coll : collider.getRegisteredCollision()) {
+                else if (entity.isActivated()) {
 
-                if (collider.displayCollisionColor) {
-                    coll.getReference().setColor(Color.red);
-                    coll.getIncident().setColor(Color.red);
+                    if (entity.usesDefaultIntegration())
+                        store.gather(i, entity);
+                    else
+                        integrationStatus[i] = entity.update(integrationStep) ? UPDATED : REMOVED;
                 }
+            } else
+                integrationStatus[i] = REMOVED;
+        }
 
-                coll.resolve();
+        store.integrate(from, to, integrationStep);
 
-                // trigger collision listeners
-            }
+        // Recopie
+        for (int i = from; i < to; ++i) {
 
-            // 4ème étape : on remet à jour les Chunks
-            physics.clearChunks();
-            collider.clearCollisions();
-            physics.spatialHashing();
+            if (store.state[i] != BodyStore.SKIPPED)
+                integrationStatus[i] = store.scatter(i) ? UPDATED : REMOVED;
 
-            // 5ème on régule le délai
-            regulateDelay(baseDelay, elapsedTime);
+            Entity entity = integrated[i];
+            if (entity.isActivated() && integrationStatus[i] != UNCHANGED && !entity.isKinematic()) {
+                entity.setAcc(0, 0);
+                entity.setAngAcc(0);
+            }
+        }
     }
 
     /**
@@ -0,0 +1,131 @@
+package fr.insalyon.mxyns.collinsa.threads;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Groupe de threads de calcul (ForkJoinPool, à vol de tâches) utilisé par le ProcessingThread pour répartir les étapes parallélisables d'un tick.
+ * Le travail est découpé en blocs numérotés : chaque bloc est traité par un seul thread, ce qui permet à l'appelant de donner à chaque bloc
+ * ses propres tampons et de les fusionner ensuite dans l'ordre des blocs (le résultat ne dépend donc pas du nombre de threads)
+ */
+public class WorkerPool {
+
+    /**
+     * Nombre de threads utilisés. 1 <=> tout est exécuté sur le thread appelant
+     */
+    private int parallelism;
+
+    /**
+     * Pool de threads, null si parallelism == 1
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Crée un groupe de 'parallelism' threads
+     * @param parallelism nombre de threads
+     */
+    public WorkerPool(int parallelism) {
+
+        setParallelism(parallelism);
+    }
+
+    /**
+     * Appelle 'block' pour chaque numéro de bloc de 0 à blockCount - 1, en répartissant les blocs sur les threads du groupe.
+     * Ne rend la main qu'une fois tous les blocs traités. Exécuté sur le thread appelant s'il n'y a qu'un bloc ou qu'un thread
+     *
+     * @param blockCount nombre de blocs
+     * @param block traitement d'un bloc
+     */
+    public void forEachBlock(int blockCount, IntConsumer block) {
+
+        if (pool == null || blockCount <= 1) {
+            for (int b = 0; b < blockCount; ++b)
+                block.accept(b);
+            return;
+        }
+
+        pool.invoke(new BlockTask(0, blockCount, block));
+    }
+
+    /**
+     * Renvoie le nombre de blocs de taille 'grain' nécessaires pour couvrir 'count' éléments
+     * @param count nombre d'éléments
+     * @param grain nombre d'éléments par bloc
+     * @return nombre de blocs
+     */
+    public static int blockCount(int count, int grain) {
+
+        return (count + grain - 1) / grain;
+    }
+
+    /**
+     * Informe si le groupe utilise plusieurs threads
+     * @return true si parallelism > 1
+     */
+    public boolean isParallel() {
+
+        return pool != null;
+    }
+
+    /**
+     * Renvoie le nombre de threads utilisés
+     * @return parallelism
+     */
+    public int getParallelism() {
+
+        return parallelism;
+    }
+
+    /**
+     * Change le nombre de threads utilisés. L'ancien pool est arrêté une fois ses tâches terminées
+     * @param parallelism nouveau nombre de threads (au moins 1)
+     */
+    public void setParallelism(int parallelism) {
+
+        parallelism = Math.max(1, parallelism);
+        if (parallelism == this.parallelism)
+            return;
+
+        if (pool != null)
+            pool.shutdown();
+
+        this.parallelism = parallelism;
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    public String toString() {
+
+        return "WorkerPool[threads=" + parallelism + "]";
+    }
+
+    /**
+     * Tâche traitant les blocs [from, to[, coupée en deux tant qu'elle contient plus d'un bloc
+     */
+    private static class BlockTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+        private final IntConsumer block;
+
+        BlockTask(int from, int to, IntConsumer block) {
+
+            this.from = from;
+            this.to = to;
+            this.block = block;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from == 1) {
+                block.accept(from);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new BlockTask(from, middle, block), new BlockTask(middle, to, block));
+        }
+    }
+}
@@ -2,8 +2,8 @@ package fr.insalyon.mxyns.collinsa.ui.frames;
 
 import fr.insalyon.mxyns.collinsa.Collinsa;
 import fr.insalyon.mxyns.collinsa.physics.Physics;
-import fr.insalyon.mxyns.collinsa.physics.forces.Force;
-import fr.insalyon.mxyns.collinsa.physics.forces.PlanetGravity;
+import fr.insalyon.mxyns.collinsa.physics.forces.FieldForce;
+import fr.insalyon.mxyns.collinsa.physics.forces.GravityField;
 import fr.insalyon.mxyns.collinsa.render.Renderer;
 import fr.insalyon.mxyns.collinsa.utils.geo.Vec2d;
 import fr.insalyon.mxyns.collinsa.utils.geo.Vec2f;
@@ -15,7 +15,7 @@ import javax.swing.*;
  */
 public class Parametres extends JFrame {
 
-    PlanetGravity gravite;
+    GravityField gravite;
 
     // Ouverture d'une nouvelle fenêtre lorsqu'on clique sur le bouton paramètres qui permet de désactiver la gravité,
     // d'afficher les bounding boxes et les chunks'bounds, de changer la couleur de l'arrière plan ou encore de changer l'échelle des temps...
@@ -104,33 +104,35 @@ public class Parametres extends JFrame {
         add(world);
 
         //On peut modifier l'intensité de la gravité
-        JSlider graviteSlider = new JSlider(JSlider.HORIZONTAL, -2000, 2000, gravite == null ? 100 : (int) (100 * gravite.gFactor));
+        JSlider graviteSlider = new JSlider(JSlider.HORIZONTAL, -2000, 2000, gravite == null ? 100 : (int) (100 * gravite.getGFactor()));
         graviteSlider.setBorder(BorderFactory.createTitledBorder("Intensité de la gravité : " + graviteSlider.getValue() / 100f + "g"));
         graviteSlider.setBounds(200, 2, 200, 40);
         graviteSlider.addChangeListener(e -> {
 
             graviteSlider.setBorder(BorderFactory.createTitledBorder("Intensité de la gravité : " + graviteSlider.getValue() / 100f + "g"));
             if (gravite != null)
-                gravite.gFactor = graviteSlider.getValue() / 100f;
+                gravite.setGFactor(graviteSlider.getValue() / 100f);
+            physics.wakeUpAll();
         });
         add(graviteSlider);
 
         gravite = null;
-        // On récupère le dernier PlanetGravity global et on considère que c'est le seul présent
-        for (Force force : physics.globalForces)
-            if (force instanceof PlanetGravity)
-                gravite = (PlanetGravity) force;
+        // On récupère le dernier GravityField et on considère que c'est le seul présent
+        for (FieldForce field : physics.fieldForces)
+            if (field instanceof GravityField)
+                gravite = (GravityField) field;
 
         JCheckBox gravite = new JCheckBox("Gravité", this.gravite != null);
         gravite.setBounds(0, 5, 200, 15);
         gravite.addActionListener(e -> {
             if (this.gravite != null && !gravite.isSelected()) {
-                physics.globalForces.remove(this.gravite);
+                physics.fieldForces.remove(this.gravite);
                 this.gravite = null;
             } else {
-                physics.globalForces.add(this.gravite = new PlanetGravity(1));
+                physics.fieldForces.add(this.gravite = new GravityField(1));
                 graviteSlider.setValue(100);
             }
+            physics.wakeUpAll();
 
             graviteSlider.setEnabled(gravite.isSelected());
         });
@@ -228,6 +230,24 @@ public class Parametres extends JFrame {
         fpsd.setPaintLabels(true);
         add(fpsd);
 
+        // nombre de passes du solveur de contacts, 0 : une seule impulsion par contact
+        JSlider iterations = new JSlider(JSlider.HORIZONTAL, 0, 20, physics.getCollider().getSolverIterations());
+        iterations.setBorder(BorderFactory.createTitledBorder("Itérations du solveur de contacts : "+ iterations.getValue()));
+        iterations.setBounds(475, 350, 300, 60);
+        iterations.addChangeListener(e -> {
+            iterations.setBorder(BorderFactory.createTitledBorder("Itérations du solveur de contacts : "+ iterations.getValue()));
+            physics.getCollider().setSolverIterations(iterations.getValue());
+        });
+        iterations.setMajorTickSpacing(iterations.getMaximum() - iterations.getMinimum());
+        iterations.setPaintTicks(false);
+        iterations.setPaintLabels(true);
+        add(iterations);
+
+        JCheckBox sleeping = new JCheckBox("Endormir les entités au repos", physics.isSleepingEnabled());
+        sleeping.setBounds(475, 420, 300, 15);
+        sleeping.addActionListener(e -> physics.setSleepingEnabled(sleeping.isSelected()));
+        add(sleeping);
+
         setVisible(true);
 
         // On le fait après le setVisible puisqu'avant les Insets ne sont pas encore calculés et valent tous 0
@@ -50,6 +50,7 @@ public class EntityDragTool extends Tool {
             dragOrigin = e.getPoint();
             previousState = selected.isActivated();
             grabbedEntity = selected;
+            selected.wakeUp();
 
             if (e.getButton() == MouseEvent.BUTTON1)
                 selected.setActivated(false);
@@ -73,6 +74,9 @@ public class EntityDragTool extends Tool {
         grabbedEntity.getPos().sub((float) ((dragOrigin.getX() - e.getPoint().getX())  / renderFactor), (float) ((dragOrigin.getY() - e.getPoint().getY()) / renderFactor));
         grabbedEntity.update(0);
 
+        if (Collinsa.INSTANCE.getPhysics().getStaticEntities().contains(grabbedEntity))
+            Collinsa.INSTANCE.getPhysics().updateStaticEntities();
+
         dragOrigin = e.getPoint();
     }
 
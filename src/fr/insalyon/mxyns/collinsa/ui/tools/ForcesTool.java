@@ -117,7 +117,7 @@ public class ForcesTool extends Tool {
             return;
 
         if (entity == null)
-            addGlobalForce(new Motor(entity, torque));
+            addGlobalForce(new TorqueField(torque));
         else
             addForce(new Motor(entity, torque));
     }
@@ -133,7 +133,7 @@ public class ForcesTool extends Tool {
             return;
 
         if (target == null)
-            addGlobalForce(new Gravity(source, null));
+            addGlobalForce(new AttractionField(source));
         else
             addForce(new Gravity(source, target));
     }
@@ -160,7 +160,7 @@ public class ForcesTool extends Tool {
         gFactor = Utils.constrain(gFactor, -20, 20);
 
         if (entity == null)
-            addGlobalForce(new PlanetGravity(null, gFactor));
+            addGlobalForce(new GravityField(gFactor));
         else
             addForce(new PlanetGravity(entity, gFactor));
     }
@@ -194,7 +194,7 @@ public class ForcesTool extends Tool {
             return;
 
         if (target == null)
-            addGlobalForce(new Spring(source, null, springCst, restLength));
+            addGlobalForce(new SpringField(source, springCst, restLength));
         else
             addForce(new Spring(source, target, springCst, restLength));
     }
@@ -205,19 +205,22 @@ public class ForcesTool extends Tool {
      */
     public void addForce(Force force) {
 
+        force.wakeUp();
         Collinsa.INSTANCE.getPhysics().forces.add(force);
     }
 
     /**
-     * Ajoute une force globale (qui s'applique à toutes les entités) à la simulation
-     * @param force force globale à ajouter
+     * Ajoute une force globale (force de champ, qui s'applique à toutes les entités) à la simulation
+     * @param field force de champ à ajouter
      */
-    public void addGlobalForce(Force force) {
+    public void addGlobalForce(FieldForce field) {
 
         int reponse = JOptionPane.showConfirmDialog(Collinsa.INSTANCE.getMainFrame(), "Êtes-vous sûr de vouloir créer une force globale ?", "Création de force globale", JOptionPane.YES_NO_OPTION);
 
-        if (reponse == JOptionPane.YES_OPTION)
-            Collinsa.INSTANCE.getPhysics().globalForces.add(force);
+        if (reponse == JOptionPane.YES_OPTION) {
+            Collinsa.INSTANCE.getPhysics().fieldForces.add(field);
+            Collinsa.INSTANCE.getPhysics().wakeUpAll();
+        }
     }
 
     /**
@@ -132,6 +132,9 @@ public class Utils {
             try {
                 result = (T) Boolean.valueOf(value);
             } catch (Exception e) {caught = e;}
+        } else if (defaultValue instanceof String) {
+            @SuppressWarnings("unchecked") T string = (T) value;
+            result = string;
         } else if (defaultValue instanceof Color) {
 
             try {
@@ -181,16 +184,31 @@ public class Utils {
         Utils.applyParameter("--forceScale", 1f, args, collinsa.getRenderer()::setForceScale);
         Utils.applyParameter("--realtime", false, args, collinsa.getPhysics()::setRealtime);
         Utils.applyParameter("--dt", 10, args, collinsa.getPhysics()::setFixedDeltaTime);
+        Utils.applyParameter("--subSteps", 1, args, collinsa.getPhysics()::setSubSteps);
+        Utils.applyParameter("--threads", 1, args, collinsa.getPhysics()::setThreadCount);
+        Utils.applyParameter("--soa", false, args, collinsa.getPhysics()::setBodyStoreEnabled);
+        Utils.applyParameter("--warmStart", false, args, collinsa.getPhysics().getCollider()::setWarmStarting);
+        Utils.applyParameter("--solverIterations", 4, args, collinsa.getPhysics().getCollider()::setSolverIterations);
+        Utils.applyParameter("--constraintIterations", 8, args, collinsa.getPhysics().getConstraints()::setIterations);
+        Utils.applyParameter("--sleeping", false, args, collinsa.getPhysics()::setSleepingEnabled);
         Utils.applyParameter("--fpsp", 60, args, collinsa.getPhysics().getProcessingThread()::setRefreshRate);
         Utils.applyParameter("--fpsr", 60, args, collinsa.getRenderer().getRenderingThread()::setFramerate);
         Utils.applyParameter("--fpsd", 60, args, collinsa.getMainFrame().getSandboxPanel().getRefreshingThread()::setRefreshRate);
         Utils.applyParameter("--bgColor", Color.white, args, collinsa.getRenderer().getGraphicsBuffer()::setBackgroundColor);
         Utils.applyParameter("--worldBoundsColor", Color.black, args, collinsa.getRenderer()::setWorldBoundsColor);
         Utils.applyParameter("--useDebugColors", false, args, collinsa.getPhysics().getCollider()::setDisplayCollisionColor);
+        Utils.applyParameter("--broadphase", "grid", args, collinsa.getPhysics().getCollider()::setBroadphase);
+        Utils.applyParameter("--ccd", false, args, collinsa.getPhysics().getCollider()::setContinuousDetection);
+        Utils.applyParameter("--ccdThreshold", .5f, args, collinsa.getPhysics().getCollider().getContinuousDetection()::setMotionThreshold);
+        Utils.applyParameter("--precise", false, args, collinsa.getPhysics().getCollider()::setPreciseResolution);
+        Utils.applyParameter("--openWorld", false, args, collinsa.getPhysics()::setOpenWorld);
         Utils.applyParameter("--wireframe", false, args, collinsa.getRenderer()::setWireframeDisplay);
         Utils.applyParameter("--showForces", false, args, collinsa.getRenderer()::setRenderForces);
 
         Utils.applyParameter("--chunkCount", new Vec2f(3, 3), args, collinsa.getPhysics()::setChunkCount);
+        Utils.applyParameter("--autoChunks", false, args, collinsa.getPhysics()::setAdaptiveChunks);
+        Utils.applyParameter("--autoChunksInterval", 60, args, collinsa.getPhysics()::setChunkAdaptationInterval);
+        Utils.applyParameter("--incrementalChunks", false, args, collinsa.getPhysics()::setIncrementalChunks);
         Utils.applyParameter("--worldSize", new Vec2f(1440, 810), args, collinsa.getPhysics()::resize);
 
         float width = Utils.getParameter("--width", collinsa.getPhysics().getWidth(), args);
@@ -185,32 +185,103 @@ public class Geometry {
         return result;
     }
 
-    public static float findAxisOfLeastPenetration(int[] faceIndex, Polygon polygonA, Polygon polygonB) {
+    public static Vec2f getSupport(Vec2f[] vertices, float axisX, float axisY) {
 
-        float bestDistance = Float.NEGATIVE_INFINITY;
-        int bestIndex = -1;
+        Vec2f result = vertices[0];
+        float v = result.x * axisX + result.y * axisY, tmp;
+
+        for (int i = 1; i < vertices.length; ++i) {
+
+            if ((tmp = vertices[i].x * axisX + vertices[i].y * axisY) > v) {
+
+                v = tmp;
+                result = vertices[i];
+            }
+
+        }
+
+        return result;
+    }
 
-        for (int i = 0; i < polygonA.getVertices().length; ++i) {
+    public static float findAxisOfLeastPenetration(int[] faceIndex, Polygon polygonA, Polygon polygonB) {
 
-            Vec2f n = polygonA.getNormals()[i].copy();
-            Vec2f s = getSupport(polygonB.getVertices(), n.neg());
-            Vec2f v = polygonA.getVertices()[i];
+        faceIndex[0] = findAxisOfLeastPenetration(polygonA, polygonB);
+        return getFaceSeparation(polygonA, polygonB, faceIndex[0]);
+    }
 
-            float d = Vec2f.dot(n, s.copy().sub(v));
+    /**
+     * Renvoie l'indice de la face de A le long de laquelle B pénètre le moins A (sans allocation)
+     * @param polygonA polygone dont on teste les faces
+     * @param polygonB polygone dont on projette les points
+     * @return indice de la face, -1 si aucune distance n'est calculable
+     */
+    public static int findAxisOfLeastPenetration(Polygon polygonA, Polygon polygonB) {
+
+        float bestDistance = Float.NEGATIVE_INFINITY, d;
+        int bestIndex = -1;
 
+        for (int i = 0; i < polygonA.getVertices().length; ++i)
             // Store greatest distance
-            if (d > bestDistance) {
+            if ((d = getFaceSeparation(polygonA, polygonB, i)) > bestDistance) {
                 bestDistance = d;
                 bestIndex = i;
             }
-        }
 
-        faceIndex[0] = bestIndex;
-        return bestDistance;
+        return bestIndex;
+    }
+
+    /**
+     * Renvoie la distance signée entre la i-ème face de A et le point support de B dans la direction opposée à sa normale
+     * @param polygonA polygone dont on teste la face
+     * @param polygonB polygone dont on projette les points
+     * @param i indice de la face de A
+     * @return distance (négative si B pénètre A), -infini si i < 0
+     */
+    public static float getFaceSeparation(Polygon polygonA, Polygon polygonB, int i) {
+
+        if (i < 0)
+            return Float.NEGATIVE_INFINITY;
+
+        Vec2f n = polygonA.getNormals()[i];
+        Vec2f s = getSupport(polygonB.getVertices(), -n.x, -n.y);
+        Vec2f v = polygonA.getVertices()[i];
+
+        return -n.x * (s.x - v.x) + -n.y * (s.y - v.y);
     }
 
     public static void findIncidentFace(Vec2f[] v, Polygon reference, Polygon incident, int referenceIndex) {
 
+        int incidentFace = findIncidentFace(reference, incident, referenceIndex);
+
+        v[0] = incident.getVertices()[incidentFace];
+        incidentFace = (incidentFace + 1) % incident.getVertices().length;
+        v[1] = incident.getVertices()[incidentFace];
+    }
+
+    /**
+     * Copie les deux points de la face incidente dans des vecteurs fournis, qui peuvent ensuite être clippés sans modifier le polygone incident
+     * @param v1 premier point de la face incidente, à remplir
+     * @param v2 deuxième point de la face incidente, à remplir
+     * @param reference polygone de la face de référence
+     * @param incident polygone incident
+     * @param referenceIndex indice de la face de référence
+     * @return indice de la face incidente (et de son premier point)
+     */
+    public static int copyIncidentFace(Vec2f v1, Vec2f v2, Polygon reference, Polygon incident, int referenceIndex) {
+
+        int incidentFace = findIncidentFace(reference, incident, referenceIndex);
+
+        v1.set(incident.getVertices()[incidentFace]);
+        v2.set(incident.getVertices()[(incidentFace + 1) % incident.getVertices().length]);
+
+        return incidentFace;
+    }
+
+    /**
+     * Renvoie l'indice de la face de 'incident' la plus opposée à la face de référence
+     */
+    private static int findIncidentFace(Polygon reference, Polygon incident, int referenceIndex) {
+
         Vec2f referenceNormal = reference.getNormals()[referenceIndex];
 
         int incidentFace = 0;
@@ -225,9 +296,7 @@ public class Geometry {
             }
         }
 
-        v[0] = incident.getVertices()[incidentFace];
-        incidentFace = (incidentFace + 1) % incident.getVertices().length;
-        v[1] = incident.getVertices()[incidentFace];
+        return incidentFace;
     }
 
     /**
@@ -240,6 +309,15 @@ public class Geometry {
 
         return vertices[(i + 1) % vertices.length].copy().sub(vertices[i]);
     }
+    /**
+     * Comme getEdge(vertices, i) mais écrit le résultat dans 'result'
+     * @param result vecteur à remplir
+     * @return result
+     */
+    public static Vec2f getEdge(Vec2f[] vertices, int i, Vec2f result) {
+
+        return result.set(vertices[(i + 1) % vertices.length]).sub(vertices[i]);
+    }
 
     /**
      * Renvoie les vecteurs directeurs des côtés d'un polygone défini par les points 'vertices'
@@ -289,6 +367,19 @@ public class Geometry {
         return result;
     }
 
+    /**
+     * Calcule la normale du i-ème côté d'un polygone défini par les points 'vertices', comme getNormals mais sans allocation
+     * @param vertices points délimitant le polygone
+     * @param i indice du côté
+     * @param result vecteur à remplir
+     * @return result normalisé, null si le côté est de longueur nulle
+     */
+    public static Vec2f getNormal(Vec2f[] vertices, int i, Vec2f result) {
+
+        getEdge(vertices, i, result);
+        return result.set(result.y, -result.x).normalize();
+    }
+
     /**
      * Calcule les vecteurs directeurs des côtés d'un polygone défini par les points 'vertices' ainsi que les normales à ces côtés
      * @param vertices points délimitant le polygone
@@ -320,6 +411,73 @@ public class Geometry {
         return new Vec2f(x, y).div(vertices.length);
     }
 
+    /**
+     * Renvoie la distance signée entre le point (x, y) et le contour d'un polygone (convexe ou non) : négative si le point est à l'intérieur
+     * @param x abscisse du point
+     * @param y ordonnée du point
+     * @param vertices sommets du polygone, dans l'ordre
+     * @return distance signée, +infini si le polygone n'a pas de sommet
+     */
+    public static float signedDistanceToPolygon(float x, float y, Vec2f[] vertices) {
+
+        if (vertices.length == 0)
+            return Float.POSITIVE_INFINITY;
+
+        float minSqrdDist = Float.POSITIVE_INFINITY;
+        boolean inside = false;
+
+        for (int i = 0, j = vertices.length - 1; i < vertices.length; j = i++) {
+
+            Vec2f a = vertices[j], b = vertices[i];
+            float ex = b.x - a.x, ey = b.y - a.y;
+            float px = x - a.x, py = y - a.y;
+
+            // Projection du point sur le côté [a, b], contrainte au segment
+            float length = ex * ex + ey * ey;
+            float t = length > 0 ? Math.max(0, Math.min(1, (px * ex + py * ey) / length)) : 0;
+            float dx = px - t * ex, dy = py - t * ey;
+            minSqrdDist = Math.min(minSqrdDist, dx * dx + dy * dy);
+
+            // Test de parité : nombre de côtés croisés par la demi-droite horizontale partant du point
+            if ((a.y > y) != (b.y > y) && x < a.x + (y - a.y) * ex / ey)
+                inside = !inside;
+        }
+
+        float dist = (float) Math.sqrt(minSqrdDist);
+        return inside ? -dist : dist;
+    }
+
+    /**
+     * Trouve le point du contour d'un polygone le plus proche du point (x, y)
+     * @param x abscisse du point
+     * @param y ordonnée du point
+     * @param vertices sommets du polygone, dans l'ordre (au moins un)
+     * @param result vecteur dans lequel écrire le point le plus proche
+     * @return result
+     */
+    public static Vec2f closestPointOnPolygon(float x, float y, Vec2f[] vertices, Vec2f result) {
+
+        float minSqrdDist = Float.POSITIVE_INFINITY;
+
+        for (int i = 0, j = vertices.length - 1; i < vertices.length; j = i++) {
+
+            Vec2f a = vertices[j], b = vertices[i];
+            float ex = b.x - a.x, ey = b.y - a.y;
+
+            float length = ex * ex + ey * ey;
+            float t = length > 0 ? Math.max(0, Math.min(1, ((x - a.x) * ex + (y - a.y) * ey) / length)) : 0;
+            float cx = a.x + t * ex, cy = a.y + t * ey;
+
+            float sqrdDist = (x - cx) * (x - cx) + (y - cy) * (y - cy);
+            if (sqrdDist < minSqrdDist) {
+                minSqrdDist = sqrdDist;
+                result.set(cx, cy);
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Produit vectoriel restreint à R². 
      * @see Vec2f#cross(Vec2f, float) 
@@ -376,6 +534,37 @@ public class Geometry {
 
         return sp;
     }
+
+    /**
+     * Comme clip mais modifie directement les deux points de la face (qui ne doivent donc pas appartenir à un polygone)
+     * @param normalX coordonnée x de l'axe de clipping
+     * @param normalY coordonnée y de l'axe de clipping
+     * @param c valeur donnée par le produit scalaire (ordonnée à l'origine de l'axe)
+     * @param face1 premier point de la face, modifié
+     * @param face2 deuxième point de la face, modifié
+     * @return nombre de points clippés
+     */
+    public static int clip(float normalX, float normalY, float c, Vec2f face1, Vec2f face2) {
+
+        float x1 = face1.x, y1 = face1.y, x2 = face2.x, y2 = face2.y;
+        Vec2f out = face1;
+        int sp = 0;
+
+        float d1 = normalX * x1 + normalY * y1 - c;
+        float d2 = normalX * x2 + normalY * y2 - c;
+
+        if (d1 <= 0.0f) { out.set(x1, y1); out = face2; ++sp; }
+        if (d2 <= 0.0f) { out.set(x2, y2); out = face2; ++sp; }
+
+        if (d1 * d2 < 0.0f) {
+            float alpha = d1 / (d1 - d2);
+
+            out.set(x2, y2).sub(x1, y1).mult(alpha).add(x1, y1);
+            ++sp;
+        }
+
+        return sp;
+    }
     
     /**
      * Ces méthodes font tourner un point (P) autour d'un autre (O) selon la formule :
@@ -407,6 +596,14 @@ public class Geometry {
                          (float) (Math.sin(angle) * (point.x - center.x) + Math.cos(angle) * (point.y - center.y) + center.y));
     }
     @SuppressWarnings("DuplicatedCode")
+    public static Vec2f rotatePointAboutCenter(Vec2f point, Vec2f center, float angle, Vec2f result) {
+
+        double x = Math.cos(angle) * (point.x - center.x) - Math.sin(angle) * (point.y - center.y) + center.x;
+        double y = Math.sin(angle) * (point.x - center.x) + Math.cos(angle) * (point.y - center.y) + center.y;
+
+        return result.set((float) x, (float) y);
+    }
+    @SuppressWarnings("DuplicatedCode")
     public static Vec2f rotatePointAboutCenter(float x, float y, Vec2f center, float angle) {
 
         return new Vec2f((float)(Math.cos(angle) * (x - center.x) - Math.sin(angle) * (y - center.y) + center.x),
@@ -446,6 +643,12 @@ public class Geometry {
                          clamp(y, rect.getPos().y - rect.getSize().y * 0.5, rect.getPos().y + rect.getSize().y * 0.5));
     }
 
+    public static Vec2f clampPointToRect(Vec2f point, Rect rect, Vec2f result) {
+
+        return result.set((float) clamp((double) point.x, rect.getPos().x - rect.getSize().x * 0.5, rect.getPos().x + rect.getSize().x * 0.5),
+                          (float) clamp((double) point.y, rect.getPos().y - rect.getSize().y * 0.5, rect.getPos().y + rect.getSize().y * 0.5));
+    }
+
     /**
      * Comme clampPointToRect mais quand l'objet est à l'intérieur du Rectangle
      * @param point point à clamp
@@ -464,6 +667,21 @@ public class Geometry {
         return nearestPoint(point, possibilities);
     }
 
+    public static Vec2f clampPointInsideRect(Vec2f point, Rect rect, Vec2f result) {
+
+        double x = point.x, y = point.y;
+        double top = rect.getPos().y - rect.getSize().y * 0.5, bottom = rect.getPos().y + rect.getSize().y * 0.5;
+        double right = rect.getPos().x + rect.getSize().x * 0.5, left = rect.getPos().x - rect.getSize().x * 0.5;
+
+        // Mêmes candidats et même ordre que clampPointInsideRect(Vec2d, Rect)
+        double bestX = x, bestY = top, dist = sqrdDist(x, top, x, y), tmp;
+        if ((tmp = sqrdDist(x, bottom, x, y)) < dist) { bestY = bottom; dist = tmp; }
+        if ((tmp = sqrdDist(right, y, x, y)) < dist) { bestX = right; bestY = y; dist = tmp; }
+        if (sqrdDist(left, y, x, y) < dist) { bestX = left; bestY = y; }
+
+        return result.set((float) bestX, (float) bestY);
+    }
+
     /**
      * Renvoie quel point est le plus proche d'un point cible parmis un ensemble de points
      * @param from point cible T
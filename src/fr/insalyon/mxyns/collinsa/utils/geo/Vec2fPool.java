@@ -0,0 +1,94 @@
+package fr.insalyon.mxyns.collinsa.utils.geo;
+
+import java.util.Arrays;
+
+/**
+ * Réserve de vecteurs temporaires réutilisables, propre à chaque thread. Permet aux calculs appelés pour chaque contact (manifolds, ...)
+ * de ne pas allouer de Vec2f intermédiaires.
+ * Les vecteurs sont pris dans une pile : l'appelant note le sommet avec mark() avant de prendre ses vecteurs et le restaure avec release()
+ * quand il n'en a plus besoin. Un vecteur pris n'est pas remis à zéro et ne doit plus être utilisé après le release correspondant
+ */
+public class Vec2fPool {
+
+    /**
+     * Réserve de chaque thread
+     */
+    private static final ThreadLocal<Vec2fPool> local = ThreadLocal.withInitial(Vec2fPool::new);
+
+    /**
+     * Vecteurs de la réserve, ceux d'indice inférieur à 'top' sont pris
+     */
+    private Vec2f[] vectors = Vec2f.arrayOf(16);
+
+    /**
+     * Sommet de la pile
+     */
+    private int top;
+
+    /**
+     * Renvoie la réserve du thread courant
+     * @return réserve du thread courant
+     */
+    public static Vec2fPool get() {
+
+        return local.get();
+    }
+
+    /**
+     * Prend un vecteur dans la réserve, la réserve est agrandie si elle est vide
+     * @return vecteur temporaire (coordonnées quelconques)
+     */
+    public Vec2f take() {
+
+        if (top == vectors.length) {
+            vectors = Arrays.copyOf(vectors, 2 * vectors.length);
+            for (int i = top; i < vectors.length; ++i)
+                vectors[i] = Vec2f.zero();
+        }
+
+        return vectors[top++];
+    }
+
+    /**
+     * Prend un vecteur dans la réserve et l'initialise
+     * @param x coordonnée x
+     * @param y coordonnée y
+     * @return vecteur temporaire (x, y)
+     */
+    public Vec2f take(float x, float y) {
+
+        return take().set(x, y);
+    }
+
+    /**
+     * Renvoie le sommet actuel de la pile, à passer à release()
+     * @return sommet de la pile
+     */
+    public int mark() {
+
+        return top;
+    }
+
+    /**
+     * Rend à la réserve tous les vecteurs pris depuis mark()
+     * @param mark sommet renvoyé par mark()
+     */
+    public void release(int mark) {
+
+        top = mark;
+    }
+
+    /**
+     * Renvoie le nombre de vecteurs de la réserve
+     * @return capacité de la réserve
+     */
+    public int getCapacity() {
+
+        return vectors.length;
+    }
+
+    public String toString() {
+
+        return "Vec2fPool[taken=" + top + ", capacity=" + vectors.length + "]";
+    }
+}
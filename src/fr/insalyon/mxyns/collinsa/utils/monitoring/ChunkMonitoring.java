@@ -0,0 +1,79 @@
+package fr.insalyon.mxyns.collinsa.utils.monitoring;
+
+import java.util.ArrayDeque;
+
+/**
+ * Garde une trace des décisions de redimensionnement automatique de la grille de chunks (Physics.adaptChunks)
+ */
+public class ChunkMonitoring {
+
+    /**
+     * Nombre maximal de décisions conservées, les plus anciennes sont oubliées
+     */
+    public int maxDecisions = 256;
+
+    /**
+     * Affiche les décisions appliquées dans la console (désactivé par défaut, les décisions restent consultables dans 'decisions')
+     */
+    public boolean printApplied = false;
+
+    /**
+     * Dernières décisions, de la plus ancienne à la plus récente
+     */
+    public ArrayDeque<Decision> decisions = new ArrayDeque<>();
+
+    /**
+     * Enregistre une décision
+     * @param decision décision à enregistrer
+     */
+    public void logDecision(Decision decision) {
+
+        if (decisions.size() >= maxDecisions)
+            decisions.pollFirst();
+
+        decisions.addLast(decision);
+
+        if (printApplied && decision.applied)
+            System.out.println(decision);
+    }
+
+    /**
+     * Renvoie la dernière décision prise
+     * @return dernière décision, null si aucune
+     */
+    public Decision getLastDecision() {
+
+        return decisions.peekLast();
+    }
+
+    /**
+     * Une évaluation de la grille : statistiques mesurées, grille candidate et coûts estimés
+     */
+    public static class Decision {
+
+        public final double time;
+        public final float medianSize, meanSize;
+        public final int oldCountX, oldCountY, newCountX, newCountY;
+        public final long currentCost, candidateCost;
+        public final boolean applied;
+
+        public Decision(double time, float medianSize, float meanSize, int oldCountX, int oldCountY, int newCountX, int newCountY, long currentCost, long candidateCost, boolean applied) {
+
+            this.time = time;
+            this.medianSize = medianSize;
+            this.meanSize = meanSize;
+            this.oldCountX = oldCountX;
+            this.oldCountY = oldCountY;
+            this.newCountX = newCountX;
+            this.newCountY = newCountY;
+            this.currentCost = currentCost;
+            this.candidateCost = candidateCost;
+            this.applied = applied;
+        }
+
+        public String toString() {
+
+            return "ChunkDecision[t=" + time + "ms, median=" + medianSize + "m, mean=" + meanSize + "m, " + oldCountX + "x" + oldCountY + " (cost " + currentCost + ") -> " + newCountX + "x" + newCountY + " (cost " + candidateCost + "), " + (applied ? "applied" : "kept") + "]";
+        }
+    }
+}
@@ -5,10 +5,12 @@ import fr.insalyon.mxyns.collinsa.physics.entities.Entity;
 public class Monitoring {
 
     public EntityMonitoring entityMonitoring;
+    public ChunkMonitoring chunkMonitoring;
 
     public Monitoring() {
 
         entityMonitoring = new EntityMonitoring();
+        chunkMonitoring = new ChunkMonitoring();
     }
 
     public void monitor(Entity entity) {